@@ -0,0 +1,125 @@
+/*
+ * Copyright 2017 Keval Patel
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance wit
+ * the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for
+ *  the specific language governing permissions and limitations under the License.
+ */
+package com.kevalpatel.ringtonepicker;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.LinkedHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Building the lists of the ringtones from the cursors and merging the lists of the types.
+ * <p>
+ * - {@link #buildMusicCatalog()} is the row loop of {@link RingtoneUtils#getMusic}.
+ * - {@link #buildToneCatalog()} is the row loop of {@link RingtoneUtils#getTone}.
+ * - {@link #buildLegacyMap()} is the title to uri map the library used before
+ * {@link RingtoneEntries}, kept as the baseline.
+ * - {@link #mergeTypes()} merges the tone types and the music the way the loader does, dropping
+ * the rows which belong to more than one type and combining their type flags.
+ *
+ * @author <a href="https://github.com/kevalpatel2106">kevalpatel2106</a>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class CatalogBenchmark {
+
+    @Param({"1000", "10000", "100000"})
+    public int rows;
+
+    private SyntheticCursor mMusicCursor;
+
+    private SyntheticCursor mToneCursor;
+
+    /**
+     * Ringtone, notification and alarm lists, followed by the music list. A tenth of the rows of
+     * each tone list are also in the next tone list.
+     */
+    private RingtoneEntries[] mTypes;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        mMusicCursor = SyntheticCursor.generate(rows, 42, 1);
+
+        //Devices have far fewer tones than the music tracks.
+        final int toneRows = Math.max(100, rows / 20);
+        mToneCursor = SyntheticCursor.generate(toneRows, 7, 1);
+
+        mTypes = new RingtoneEntries[4];
+        for (int type = 0; type < 3; type++) {
+            final SyntheticCursor cursor = SyntheticCursor.generate(toneRows, type, type * toneRows * 9L / 10);
+            mTypes[type] = readTones(cursor, 1 << type);
+        }
+        mTypes[3] = readMusic(mMusicCursor.copy());
+    }
+
+    @Benchmark
+    public RingtoneEntries buildMusicCatalog() {
+        return readMusic(mMusicCursor.copy());
+    }
+
+    @Benchmark
+    public RingtoneEntries buildToneCatalog() {
+        return readTones(mToneCursor.copy(), RingtoneEntries.FLAG_RINGTONE);
+    }
+
+    @Benchmark
+    public LinkedHashMap<String, String> buildLegacyMap() {
+        final SyntheticCursor cursor = mMusicCursor.copy();
+        final LinkedHashMap<String, String> ringtones = new LinkedHashMap<>();
+        while (cursor.moveToNext()) {
+            ringtones.put(cursor.getTitle(), SyntheticCursor.MUSIC_BASE_URI + "/" + cursor.getId());
+        }
+        return ringtones;
+    }
+
+    @Benchmark
+    public RingtoneEntries mergeTypes() {
+        final RingtoneEntries merged = RingtoneEntries.merge(mTypes);
+        merged.buildIndex();
+        return merged;
+    }
+
+    private static RingtoneEntries readMusic(final SyntheticCursor cursor) {
+        final RingtoneEntries entries = new RingtoneEntries();
+        while (cursor.moveToNext()) {
+            entries.add(cursor.getTitle(), SyntheticCursor.MUSIC_BASE_URI, cursor.getId(),
+                    RingtoneEntries.FLAG_MUSIC);
+        }
+        entries.buildIndex();
+        return entries;
+    }
+
+    private static RingtoneEntries readTones(final SyntheticCursor cursor, final int typeFlag) {
+        final RingtoneEntries entries = new RingtoneEntries();
+        while (cursor.moveToNext()) {
+            entries.add(cursor.getTitle(), SyntheticCursor.TONE_BASE_URI, cursor.getId(), typeFlag);
+        }
+        entries.buildIndex();
+        return entries;
+    }
+}
@@ -0,0 +1,100 @@
+/*
+ * Copyright 2017 Keval Patel
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance wit
+ * the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for
+ *  the specific language governing permissions and limitations under the License.
+ */
+package com.kevalpatel.ringtonepicker;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Preparing the loaded list for the dialog and filtering it by the title.
+ * <p>
+ * - {@link #buildSearchIndex()} and {@link #buildSectionIndex()} run on the loading thread once
+ * the rows are loaded.
+ * - {@link #searchPrefix()}, {@link #searchSubstring()} and {@link #searchTwoWords()} run on the
+ * main thread for every key typed in the search field.
+ * - {@link #scanTitles()} filters the titles without the index, as the baseline.
+ *
+ * @author <a href="https://github.com/kevalpatel2106">kevalpatel2106</a>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class FilterBenchmark {
+
+    @Param({"1000", "10000", "100000"})
+    public int rows;
+
+    private RingtoneEntries mEntries;
+
+    private RingtoneSearchIndex mSearchIndex;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        final SyntheticCursor cursor = SyntheticCursor.generate(rows, 42, 1);
+        mEntries = new RingtoneEntries(rows);
+        while (cursor.moveToNext()) {
+            mEntries.add(cursor.getTitle(), SyntheticCursor.MUSIC_BASE_URI, cursor.getId());
+        }
+        mSearchIndex = RingtoneSearchIndex.build(mEntries);
+    }
+
+    @Benchmark
+    public RingtoneSearchIndex buildSearchIndex() {
+        return RingtoneSearchIndex.build(mEntries);
+    }
+
+    @Benchmark
+    public RingtoneSectionIndex buildSectionIndex() {
+        return RingtoneSectionIndex.build(mEntries, Locale.ENGLISH);
+    }
+
+    @Benchmark
+    public int[] searchPrefix() {
+        return mSearchIndex.search("da");
+    }
+
+    @Benchmark
+    public int[] searchSubstring() {
+        return mSearchIndex.search("ight");
+    }
+
+    @Benchmark
+    public int[] searchTwoWords() {
+        return mSearchIndex.search("summer cafe");
+    }
+
+    @Benchmark
+    public int scanTitles() {
+        int matches = 0;
+        for (int i = 0; i < mEntries.size(); i++) {
+            if (RingtoneSearchIndex.normalize(mEntries.getTitle(i)).contains("ight")) matches++;
+        }
+        return matches;
+    }
+}
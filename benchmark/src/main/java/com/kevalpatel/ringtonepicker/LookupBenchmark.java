@@ -0,0 +1,105 @@
+/*
+ * Copyright 2017 Keval Patel
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance wit
+ * the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for
+ *  the specific language governing permissions and limitations under the License.
+ */
+package com.kevalpatel.ringtonepicker;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Looking up the position of the selected ringtone in the loaded list, as the dialog does to
+ * check the current ringtone.
+ * <p>
+ * - {@link #indexOfIndexed()} uses the hash index built by {@link RingtoneEntries#buildIndex()}.
+ * - {@link #indexOfScan()} scans the list without the index.
+ * - {@link #indexOfMissing()} looks up a uri which is not in the list, which is the worst case
+ * of the scan.
+ *
+ * @author <a href="https://github.com/kevalpatel2106">kevalpatel2106</a>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class LookupBenchmark {
+
+    private static final int TARGET_COUNT = 1024;
+
+    @Param({"1000", "10000", "100000"})
+    public int rows;
+
+    private RingtoneEntries mIndexed;
+
+    private RingtoneEntries mUnindexed;
+
+    /**
+     * Uris of the random rows to look up, so the lookups don't hit the same slot every time.
+     */
+    private String[] mTargets;
+
+    private String mMissing;
+
+    private int mNext = 0;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        final SyntheticCursor cursor = SyntheticCursor.generate(rows, 42, 1);
+        mIndexed = new RingtoneEntries(rows);
+        while (cursor.moveToNext()) {
+            mIndexed.add(cursor.getTitle(), SyntheticCursor.MUSIC_BASE_URI, cursor.getId());
+        }
+        mUnindexed = mIndexed.copyOfRange(0, mIndexed.size());
+        mIndexed.buildIndex();
+
+        final Random random = new Random(1);
+        mTargets = new String[TARGET_COUNT];
+        for (int i = 0; i < TARGET_COUNT; i++) {
+            mTargets[i] = mIndexed.getUriString(random.nextInt(rows));
+        }
+        mMissing = SyntheticCursor.MUSIC_BASE_URI + "/" + (rows + 100);
+    }
+
+    @Benchmark
+    public int indexOfIndexed() {
+        return mIndexed.indexOf(nextTarget());
+    }
+
+    @Benchmark
+    public int indexOfScan() {
+        return mUnindexed.indexOf(nextTarget());
+    }
+
+    @Benchmark
+    public int indexOfMissing() {
+        return mUnindexed.indexOf(mMissing);
+    }
+
+    private String nextTarget() {
+        mNext = (mNext + 1) & (TARGET_COUNT - 1);
+        return mTargets[mNext];
+    }
+}
@@ -0,0 +1,127 @@
+/*
+ * Copyright 2017 Keval Patel
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance wit
+ * the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for
+ *  the specific language governing permissions and limitations under the License.
+ */
+package com.kevalpatel.ringtonepicker;
+
+import java.util.Arrays;
+import java.util.Locale;
+import java.util.Random;
+
+/**
+ * In-memory stand-in for the {@link android.database.Cursor} returned by the
+ * {@link android.provider.MediaStore} and the {@link android.media.RingtoneManager}. The rows are
+ * generated from a fixed seed and sorted by the title, the same as the real queries. Walking it
+ * costs about as much as walking a cursor window that is already filled, so the benchmarks measure
+ * the row processing of the library rather than the content provider.
+ *
+ * @author <a href="https://github.com/kevalpatel2106">kevalpatel2106</a>
+ */
+final class SyntheticCursor {
+
+    static final String MUSIC_BASE_URI = "content://media/external/audio/media";
+
+    static final String TONE_BASE_URI = "content://media/internal/audio/media";
+
+    private static final String[] WORDS = {
+            "love", "night", "dance", "summer", "heart", "dream", "fire", "river", "light", "road",
+            "blue", "rain", "song", "home", "time", "world", "star", "wild", "gold", "city",
+            "café", "noël", "señorita", "über", "élan", "ångström", "mañana", "déjà", "naïve", "zoë"
+    };
+
+    private final String[] mTitles;
+
+    private final long[] mIds;
+
+    private int mPosition = -1;
+
+    private SyntheticCursor(final String[] titles, final long[] ids) {
+        mTitles = titles;
+        mIds = ids;
+    }
+
+    /**
+     * Generate the rows.
+     *
+     * @param rows    number of the rows.
+     * @param seed    seed of the titles and the ids.
+     * @param firstId row id of the first generated row. The ids are unique and not in the title order.
+     * @return new cursor positioned before the first row.
+     */
+    static SyntheticCursor generate(final int rows, final long seed, final long firstId) {
+        final Random random = new Random(seed);
+        final Row[] generated = new Row[rows];
+        for (int i = 0; i < rows; i++) {
+            final StringBuilder title = new StringBuilder();
+            final int words = 1 + random.nextInt(4);
+            for (int w = 0; w < words; w++) {
+                if (w > 0) title.append(' ');
+                final String word = WORDS[random.nextInt(WORDS.length)];
+                title.append(w == 0 ? word.substring(0, 1).toUpperCase(Locale.ROOT) + word.substring(1) : word);
+            }
+            if (random.nextInt(10) == 0) title.append(" (").append(1990 + random.nextInt(30)).append(')');
+            generated[i] = new Row(title.toString(), firstId + i);
+        }
+        Arrays.sort(generated);
+
+        final String[] titles = new String[rows];
+        final long[] ids = new long[rows];
+        for (int i = 0; i < rows; i++) {
+            titles[i] = generated[i].mTitle;
+            ids[i] = generated[i].mId;
+        }
+        return new SyntheticCursor(titles, ids);
+    }
+
+    /**
+     * @return New cursor over the same rows, positioned before the first row.
+     */
+    SyntheticCursor copy() {
+        return new SyntheticCursor(mTitles, mIds);
+    }
+
+    int getCount() {
+        return mTitles.length;
+    }
+
+    boolean moveToNext() {
+        return ++mPosition < mTitles.length;
+    }
+
+    void moveToPosition(final int position) {
+        mPosition = position;
+    }
+
+    String getTitle() {
+        return mTitles[mPosition];
+    }
+
+    long getId() {
+        return mIds[mPosition];
+    }
+
+    private static final class Row implements Comparable<Row> {
+
+        private final String mTitle;
+
+        private final long mId;
+
+        private Row(final String title, final long id) {
+            mTitle = title;
+            mId = id;
+        }
+
+        @Override
+        public int compareTo(final Row other) {
+            return mTitle.compareTo(other.mTitle);
+        }
+    }
+}
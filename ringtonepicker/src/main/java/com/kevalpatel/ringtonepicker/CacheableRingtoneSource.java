@@ -0,0 +1,44 @@
+/*
+ * Copyright 2017 Keval Patel
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance wit
+ * the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for
+ *  the specific language governing permissions and limitations under the License.
+ */
+
+package com.kevalpatel.ringtonepicker;
+
+import androidx.annotation.MainThread;
+import androidx.annotation.NonNull;
+
+/**
+ * {@link RingtoneSource} whose ringtones can be kept in the memory and shared between the dialogs,
+ * the same way as the {@link RingtoneTypes}.
+ * <p>
+ * Ringtones of the source are cached under the key until the {@link android.provider.MediaStore}
+ * audio tables change or the process ends. While the source is being loaded, the other dialogs
+ * wait for the same load instead of loading the source again. If the ringtones of the source
+ * change in any other way, such as when a file is added to the application's private storage,
+ * return a new key, for example with the modification time of the directory in it.
+ *
+ * @author <a href="https://github.com/kevalpatel2106">kevalpatel2106</a>
+ */
+public interface CacheableRingtoneSource extends RingtoneSource {
+
+    /**
+     * This is called on the main thread whenever the source is requested, so don't read the disk
+     * or query the content providers here.
+     *
+     * @return Key of the ringtones of the source, starting with the package name of the application.
+     * Sources which list the same ringtones must return the same key, and the sources which list
+     * the different ringtones must return the different keys.
+     */
+    @MainThread
+    @NonNull
+    String getCacheKey();
+}
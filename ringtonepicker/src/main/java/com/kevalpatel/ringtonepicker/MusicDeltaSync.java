@@ -0,0 +1,353 @@
+/*
+ * Copyright 2017 Keval Patel
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance wit
+ * the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for
+ *  the specific language governing permissions and limitations under the License.
+ */
+
+package com.kevalpatel.ringtonepicker;
+
+import android.annotation.SuppressLint;
+import android.content.Context;
+import android.database.Cursor;
+import android.os.Build;
+import android.provider.MediaStore;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+import androidx.core.content.ContentResolverCompat;
+import androidx.core.os.CancellationSignal;
+import androidx.core.os.OperationCanceledException;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+
+/**
+ * Refreshes the stale {@link RingtonePickerDialog.Builder#TYPE_MUSIC} list by reading only the
+ * rows that changed since the list was loaded, instead of reading the whole table again.
+ * <p>
+ * Capture the marker with {@link #capture(Context)} right before the list is loaded. Once the
+ * list gets stale, {@link #apply(Context, RingtoneEntries, CancellationSignal)} reads the rows
+ * changed after the marker:
+ * - On API 30 and above, the rows whose {@link MediaStore.MediaColumns#GENERATION_MODIFIED} is
+ * above the generation of their volume.
+ * - On the older versions, the rows added or modified since the marker was captured, based on
+ * {@link MediaStore.MediaColumns#DATE_ADDED} and {@link MediaStore.MediaColumns#DATE_MODIFIED}.
+ * <p>
+ * The changed rows are read in the same SQL order as the whole list, by the title and then the row
+ * id, and merged in to the list with {@link #compareRows(String, long, String, long)}, which is
+ * the order of the SQLite's default collation. If the stale list or the changed rows are not in
+ * that order, such as when the provider sorts the titles with a localized collation, the sync
+ * gives up, so the patched list is always in the same order as a freshly loaded list.
+ * <p>
+ * Deleted rows never show up in the changed rows, so the music rows are counted after patching
+ * the list. Only if the count went down, the row ids are read to drop the deleted rows. If the
+ * list still doesn't match the count, the sync gives up and the caller should load the whole list.
+ *
+ * @author <a href="https://github.com/kevalpatel2106">kevalpatel2106</a>
+ */
+final class MusicDeltaSync {
+
+    /**
+     * Time in seconds when the marker was captured. Used below API 30.
+     */
+    private final long mCapturedAt;
+
+    /**
+     * Generation of each external volume when the marker was captured. Null below API 30.
+     */
+    @Nullable
+    private final HashMap<String, Long> mGenerations;
+
+    /**
+     * @param capturedAt  time in seconds when the marker was captured.
+     * @param generations generation of each external volume or null below API 30.
+     * @see #capture(Context)
+     */
+    MusicDeltaSync(final long capturedAt, @Nullable final HashMap<String, Long> generations) {
+        mCapturedAt = capturedAt;
+        mGenerations = generations;
+    }
+
+    /**
+     * Capture the marker of the current state of the music table. Call this before loading the
+     * list, so that the changes made while loading are read by the next sync.
+     *
+     * @param context instance of the caller.
+     * @return {@link MusicDeltaSync} of the current state.
+     */
+    @SuppressLint("NewApi")
+    @NonNull
+    static MusicDeltaSync capture(@NonNull final Context context) {
+        HashMap<String, Long> generations = null;
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.R) {
+            generations = new HashMap<>();
+            for (String volume : MediaStore.getExternalVolumeNames(context)) {
+                generations.put(volume, MediaStore.getGeneration(context, volume));
+            }
+        }
+        return new MusicDeltaSync(System.currentTimeMillis() / 1000, generations);
+    }
+
+    /**
+     * Patch the stale list with the rows changed since this marker was captured.
+     *
+     * @param context            instance of the caller.
+     * @param stale              stale list loaded after this marker was captured. It is not modified.
+     * @param cancellationSignal {@link CancellationSignal} to abort the queries.
+     * @return New {@link RingtoneEntries} with the changes applied or null if the changes cannot be
+     * applied and the whole list should be loaded.
+     * @throws OperationCanceledException if the query is cancelled.
+     */
+    @Nullable
+    RingtoneEntries apply(@NonNull final Context context,
+                          @NonNull final RingtoneEntries stale,
+                          @Nullable final CancellationSignal cancellationSignal) {
+        //No volume to compare with. Read the whole list.
+        if (mGenerations != null && mGenerations.isEmpty()) return null;
+
+        final String baseUri = MediaStore.Audio.Media.EXTERNAL_CONTENT_URI.toString();
+
+        //Every row of the music list must point to the music table.
+        for (int i = 0; i < stale.getBaseUriCount(); i++) {
+            if (!baseUri.equals(stale.getBaseUri(i))) return null;
+        }
+
+        //Read the changed rows. Rows which are no longer music are removed from the list.
+        final ArrayList<ChangedRow> changedRows = new ArrayList<>();
+        final HashSet<Long> changedIds = new HashSet<>();
+        final ArrayList<String> selectionArgs = new ArrayList<>();
+        final String selection = buildSelection(selectionArgs);
+        final Cursor cursor = ContentResolverCompat.query(context.getContentResolver(),
+                MediaStore.Audio.Media.EXTERNAL_CONTENT_URI,
+                new String[]{MediaStore.Audio.Media._ID,
+                        MediaStore.Audio.Media.TITLE,
+                        MediaStore.Audio.Media.IS_MUSIC},
+                selection,
+                selectionArgs.toArray(new String[0]),
+                RingtoneUtils.MUSIC_SORT_ORDER,
+                cancellationSignal);
+        if (cursor == null) return null;
+
+        try {
+            while (cursor.moveToNext()) {
+                if (cancellationSignal != null) cancellationSignal.throwIfCanceled();
+
+                final long id = cursor.getLong(0);
+                changedIds.add(id);
+                if (cursor.getInt(2) != 0 && cursor.getString(1) != null) {
+                    final ChangedRow row = new ChangedRow(cursor.getString(1), id);
+
+                    //Provider doesn't sort the way the rows are merged.
+                    if (!changedRows.isEmpty() && compareRows(changedRows.get(changedRows.size() - 1), row) > 0) {
+                        return null;
+                    }
+                    changedRows.add(row);
+                }
+            }
+        } finally {
+            cursor.close();
+        }
+        if (!isSorted(stale)) return null;
+
+        RingtoneEntries patched = merge(stale, changedRows, changedIds, baseUri);
+
+        //Look for the deleted rows.
+        final int count = RingtoneUtils.countRows(context,
+                MediaStore.Audio.Media.EXTERNAL_CONTENT_URI,
+                RingtoneUtils.MUSIC_SELECTION,
+                cancellationSignal);
+        if (count == patched.size()) return patched;
+
+        //Rows the changed rows missed cannot be patched in.
+        if (count > patched.size()) return null;
+
+        final long[] ids = readMusicIds(context, cancellationSignal);
+        if (ids == null) return null;
+        patched = retain(patched, ids, baseUri);
+        return patched.size() == ids.length ? patched : null;
+    }
+
+    /**
+     * Build the selection of the rows changed since the marker was captured.
+     *
+     * @param selectionArgs list to add the arguments of the selection to.
+     * @return Selection of the changed rows.
+     */
+    @SuppressLint("InlinedApi")
+    @NonNull
+    String buildSelection(@NonNull final ArrayList<String> selectionArgs) {
+        final StringBuilder selection = new StringBuilder();
+        if (mGenerations != null) {
+            //Changes on the known volumes.
+            for (Map.Entry<String, Long> volume : mGenerations.entrySet()) {
+                if (selection.length() > 0) selection.append(" OR ");
+                selection.append("(" + MediaStore.MediaColumns.VOLUME_NAME + "=? AND "
+                        + MediaStore.MediaColumns.GENERATION_MODIFIED + ">?)");
+                selectionArgs.add(volume.getKey());
+                selectionArgs.add(String.valueOf(volume.getValue()));
+            }
+
+            //All the rows of the volumes mounted after the marker was captured.
+            if (selection.length() > 0) selection.append(" OR ");
+            selection.append(MediaStore.MediaColumns.VOLUME_NAME + " NOT IN (");
+            int i = 0;
+            for (String volume : mGenerations.keySet()) {
+                selection.append(i++ == 0 ? "?" : ",?");
+                selectionArgs.add(volume);
+            }
+            selection.append(')');
+        } else {
+            selection.append(MediaStore.MediaColumns.DATE_ADDED + ">=? OR "
+                    + MediaStore.MediaColumns.DATE_MODIFIED + ">=?");
+            selectionArgs.add(String.valueOf(mCapturedAt));
+            selectionArgs.add(String.valueOf(mCapturedAt));
+        }
+        return selection.toString();
+    }
+
+    /**
+     * Compare the rows the way the SQLite sorts them by {@link RingtoneUtils#MUSIC_SORT_ORDER} with
+     * its default collation. It compares the UTF-8 bytes of the titles, which is the order of
+     * their code points, and then the row ids.
+     *
+     * @return Negative if the first row comes first, positive if the second row comes first.
+     */
+    static int compareRows(@NonNull final String title1, final long id1,
+                           @NonNull final String title2, final long id2) {
+        final int length = Math.min(title1.length(), title2.length());
+        for (int i = 0; i < length; i++) {
+            final char c1 = title1.charAt(i);
+            final char c2 = title2.charAt(i);
+            if (c1 == c2) continue;
+
+            //Surrogates encode the code points above all the other chars.
+            final boolean isSurrogate1 = Character.isSurrogate(c1);
+            if (isSurrogate1 != Character.isSurrogate(c2)) return isSurrogate1 ? 1 : -1;
+            return c1 - c2;
+        }
+        if (title1.length() != title2.length()) return title1.length() - title2.length();
+        return id1 < id2 ? -1 : (id1 == id2 ? 0 : 1);
+    }
+
+    private static int compareRows(@NonNull final ChangedRow row1, @NonNull final ChangedRow row2) {
+        return compareRows(row1.mTitle, row1.mId, row2.mTitle, row2.mId);
+    }
+
+    /**
+     * @return True if the rows of the list are in the order of
+     * {@link #compareRows(String, long, String, long)}.
+     */
+    static boolean isSorted(@NonNull final RingtoneEntries entries) {
+        for (int i = 1; i < entries.size(); i++) {
+            if (compareRows(entries.getTitle(i - 1), entries.getId(i - 1),
+                    entries.getTitle(i), entries.getId(i)) > 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Merge the changed rows into the stale list. Both must be in the order of
+     * {@link #compareRows(String, long, String, long)}.
+     */
+    @NonNull
+    static RingtoneEntries merge(@NonNull final RingtoneEntries stale,
+                                 @NonNull final ArrayList<ChangedRow> changedRows,
+                                 @NonNull final HashSet<Long> changedIds,
+                                 @NonNull final String baseUri) {
+        final RingtoneEntries merged = new RingtoneEntries(stale.size() + changedRows.size());
+        int next = 0;
+        for (int i = 0; i < stale.size(); i++) {
+            if (changedIds.contains(stale.getId(i))) continue;
+
+            final String title = stale.getTitle(i);
+            final long id = stale.getId(i);
+            while (next < changedRows.size()
+                    && compareRows(changedRows.get(next).mTitle, changedRows.get(next).mId, title, id) < 0) {
+                merged.add(changedRows.get(next).mTitle, baseUri, changedRows.get(next).mId,
+                        RingtoneEntries.FLAG_MUSIC);
+                next++;
+            }
+            merged.add(title, baseUri, id, stale.getTypeFlags(i));
+        }
+        for (; next < changedRows.size(); next++) {
+            merged.add(changedRows.get(next).mTitle, baseUri, changedRows.get(next).mId,
+                    RingtoneEntries.FLAG_MUSIC);
+        }
+        return merged;
+    }
+
+    /**
+     * Read the sorted ids of all the music rows.
+     *
+     * @return sorted row ids or null if the query fails.
+     */
+    @Nullable
+    private static long[] readMusicIds(@NonNull final Context context,
+                                       @Nullable final CancellationSignal cancellationSignal) {
+        final Cursor cursor = ContentResolverCompat.query(context.getContentResolver(),
+                MediaStore.Audio.Media.EXTERNAL_CONTENT_URI,
+                new String[]{MediaStore.Audio.Media._ID},
+                RingtoneUtils.MUSIC_SELECTION,
+                null,
+                null,
+                cancellationSignal);
+        if (cursor == null) return null;
+
+        try {
+            final long[] ids = new long[cursor.getCount()];
+            int count = 0;
+            while (cursor.moveToNext() && count < ids.length) {
+                if (cancellationSignal != null) cancellationSignal.throwIfCanceled();
+                ids[count++] = cursor.getLong(0);
+            }
+            Arrays.sort(ids, 0, count);
+            return count == ids.length ? ids : Arrays.copyOf(ids, count);
+        } finally {
+            cursor.close();
+        }
+    }
+
+    /**
+     * Copy the rows whose id is in the sorted ids.
+     */
+    @NonNull
+    private static RingtoneEntries retain(@NonNull final RingtoneEntries entries,
+                                          @NonNull final long[] sortedIds,
+                                          @NonNull final String baseUri) {
+        final RingtoneEntries retained = new RingtoneEntries(Math.min(entries.size(), sortedIds.length));
+        for (int i = 0; i < entries.size(); i++) {
+            if (Arrays.binarySearch(sortedIds, entries.getId(i)) >= 0) {
+                retained.add(entries.getTitle(i), baseUri, entries.getId(i), entries.getTypeFlags(i));
+            }
+        }
+        return retained;
+    }
+
+    /**
+     * Music row added or changed since the marker was captured.
+     */
+    static final class ChangedRow {
+
+        @NonNull
+        private final String mTitle;
+
+        private final long mId;
+
+        ChangedRow(@NonNull final String title, final long id) {
+            mTitle = title;
+            mId = id;
+        }
+    }
+}
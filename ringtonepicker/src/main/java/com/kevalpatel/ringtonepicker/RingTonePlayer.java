@@ -16,70 +16,466 @@ package com.kevalpatel.ringtonepicker;
 import android.content.Context;
 import android.media.MediaPlayer;
 import android.net.Uri;
+import android.os.Handler;
+import android.os.HandlerThread;
+import android.os.Looper;
+import android.os.Message;
 import androidx.annotation.NonNull;
 import androidx.annotation.Nullable;
+import androidx.tracing.Trace;
 import android.util.Log;
 
 import java.io.Closeable;
 import java.io.IOException;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
 
 /**
  * Created by Keval on 29-Mar-17.
  * This class plays the ringtone sample whenever user selects any ringtone from the list.
+ * <p>
+ * All the {@link MediaPlayer} calls run on the player's own thread and the ringtone is prepared
+ * asynchronously, so the caller never blocks on the media I/O. Requests are debounced: if another
+ * ringtone is requested within {@link #DEBOUNCE_DELAY_MS}, the previous one is never prepared.
+ * <p>
+ * The player keeps a small pool of the prepared {@link MediaPlayer}s. Along with the requested
+ * ringtone, the ringtones next to it in the list are prepared in advance, so moving to the adjacent
+ * ringtone starts the playback without preparing it again. At most {@link #MAX_PLAYERS} players are
+ * alive at once, the least recently used one is released first.
+ * <p>
+ * Short tones are played from the {@link ShortTonePool} instead, which decodes each tone only
+ * once. Durations are not queried here. The caller passes the duration it already knows, such as
+ * from the details loaded for the list, or {@link #UNKNOWN_SHORT_DURATION} for the notification
+ * and the alarm tones, which are short in most cases. Tones which the pool cannot decode are
+ * played with the {@link MediaPlayer}.
+ * <p>
+ * If there is a {@link RingtonePickerMetricsListener}, the time from handling the request to
+ * starting the playback is reported to it on the main thread.
  *
  * @author {@link 'https://github.com/kevalpatel2106'}
  */
 final class RingTonePlayer implements Closeable {
 
+    /**
+     * Time to wait for the next request before preparing the requested ringtone.
+     */
+    private static final long DEBOUNCE_DELAY_MS = 150;
+
+    /**
+     * Maximum number of the {@link MediaPlayer}s alive at once. This is enough for the selected
+     * ringtone and the ringtones on its both sides.
+     */
+    private static final int MAX_PLAYERS = 3;
+
+    /**
+     * Duration of the tones whose duration is not known.
+     */
+    static final long UNKNOWN_DURATION = -1;
+
+    /**
+     * Duration of the tones whose duration is not known, but which are expected to be short, such
+     * as the notification tones. They are played from the {@link ShortTonePool}, unless their file
+     * is too large for it.
+     */
+    static final long UNKNOWN_SHORT_DURATION = -2;
+
+    /**
+     * Names of the trace sections.
+     */
+    private static final String TRACE_PLAY_RINGTONE = "RingtonePicker.playRingtone";
+    private static final String TRACE_PLAY = "RingtonePicker.play";
+
+    private static final int MSG_STOP = 1;
+    private static final int MSG_PLAY = 2;
+
     @NonNull
     private final Context mContext;
 
     /**
-     * Media player for the ringtone.
+     * Thread to run the {@link MediaPlayer}s on. {@link MediaPlayer} callbacks are delivered on
+     * this thread too.
+     */
+    @NonNull
+    private final HandlerThread mPlayerThread;
+
+    /**
+     * {@link Handler} of the {@link #mPlayerThread}.
+     */
+    @NonNull
+    private final Handler mPlayerHandler;
+
+    /**
+     * Id of the latest request. Prepared ringtones of the older requests are not started.
+     */
+    private volatile int mLatestRequestId = 0;
+
+    /**
+     * Pool of the {@link MediaPlayer}s keyed by the {@link Uri} they are prepared for, in the least
+     * recently used order. Only accessed on the {@link #mPlayerThread}.
+     */
+    @NonNull
+    private final LinkedHashMap<Uri, PooledPlayer> mPlayers = new LinkedHashMap<>(MAX_PLAYERS, 0.75f, true);
+
+    /**
+     * Tones which the {@link #mShortTonePool} cannot decode. They are played with the
+     * {@link MediaPlayer}. Only accessed on the {@link #mPlayerThread}.
      */
     @NonNull
-    private final MediaPlayer mMediaPlayer;
+    private final HashSet<Uri> mUndecodableTones = new HashSet<>();
+
+    /**
+     * {@link ShortTonePool} to play the short tones. Created lazily on the {@link #mPlayerThread}.
+     */
+    @Nullable
+    private ShortTonePool mShortTonePool;
+
+    /**
+     * {@link RingtonePickerMetricsListener} to report the start latency to or null.
+     */
+    @Nullable
+    private final RingtonePickerMetricsListener mMetricsListener;
+
+    /**
+     * {@link Handler} to report the metrics on the main thread.
+     */
+    @NonNull
+    private final Handler mMainHandler = new Handler(Looper.getMainLooper());
 
     /**
      * Public constructor.
+     *
+     * @param context         instance of the caller.
+     * @param metricsListener {@link RingtonePickerMetricsListener} to report the start latency to
+     *                        or null.
      */
-    RingTonePlayer(@NonNull final Context context) {
+    RingTonePlayer(@NonNull final Context context,
+                   @Nullable final RingtonePickerMetricsListener metricsListener) {
         mContext = context;
-        mMediaPlayer = new MediaPlayer();
+        mMetricsListener = metricsListener;
+
+        mPlayerThread = new HandlerThread(RingTonePlayer.class.getSimpleName());
+        mPlayerThread.start();
+        mPlayerHandler = new Handler(mPlayerThread.getLooper(), new Handler.Callback() {
+            @Override
+            public boolean handleMessage(Message msg) {
+                switch (msg.what) {
+                    case MSG_STOP:
+                        stopPlayback();
+                        return true;
+                    case MSG_PLAY:
+                        Trace.beginSection(TRACE_PLAY);
+                        try {
+                            final PlayRequest request = (PlayRequest) msg.obj;
+                            play(request.mUris[0], request.mDurations[0], msg.arg1, System.nanoTime());
+
+                            //Prepare the neighbours in advance.
+                            for (int i = 1; i < request.mUris.length; i++) {
+                                prefetch(request.mUris[i], request.mDurations[i]);
+                            }
+                        } finally {
+                            Trace.endSection();
+                        }
+                        return true;
+                    default:
+                        return false;
+                }
+            }
+        });
     }
 
     /**
-     * Play the ringtone for the given uri.
+     * Play the first ringtone of the given uris. This method returns immediately. The current
+     * ringtone stops right away and the new one starts once it is prepared, unless another
+     * ringtone is requested in between. Call it on the main thread.
      *
-     * @param uri uri of the ringtone to play.
-     * @throws IOException if it cannot play the ringtone.
+     * @param uris      uri of the ringtone to play, followed by the uris of the ringtones which
+     *                  are likely to be played next. They are prepared in advance, as long as the
+     *                  pool has room for them. Any of them can be null.
+     * @param durations duration of each of the uris in milliseconds, {@link #UNKNOWN_DURATION} or
+     *                  {@link #UNKNOWN_SHORT_DURATION}.
      */
-    void playRingtone(@Nullable final Uri uri) throws IOException,
-            IllegalArgumentException,
-            SecurityException,
-            IllegalStateException {
+    void playRingtone(@NonNull final Uri[] uris, @NonNull final long[] durations) {
+        Trace.beginSection(TRACE_PLAY_RINGTONE);
+        try {
+            final int requestId = ++mLatestRequestId;
+            final PlayRequest request = new PlayRequest(uris.clone(), durations.clone());
 
-        if (mMediaPlayer.isPlaying()) {
-            mMediaPlayer.stop();
+            mPlayerHandler.removeMessages(MSG_PLAY);
+            mPlayerHandler.sendEmptyMessage(MSG_STOP);
+            mPlayerHandler.sendMessageDelayed(mPlayerHandler.obtainMessage(MSG_PLAY, requestId, 0, request),
+                    DEBOUNCE_DELAY_MS);
+        } finally {
+            Trace.endSection();
         }
-        mMediaPlayer.reset();
+    }
+
+    /**
+     * Pause the ringtone if it is playing. Paused players stay prepared, so they can start again
+     * without preparing. Runs on the {@link #mPlayerThread}.
+     */
+    private void stopPlayback() {
+        if (mShortTonePool != null) mShortTonePool.stop();
+
+        for (PooledPlayer pooledPlayer : mPlayers.values()) {
+            pooledPlayer.mStartRequestId = -1;
+            if (pooledPlayer.isPrepared && pooledPlayer.mPlayer.isPlaying()) {
+                pooledPlayer.mPlayer.pause();
+                pooledPlayer.mPlayer.seekTo(0);
+            }
+        }
+    }
 
+    /**
+     * Start the ringtone from the pool, or prepare it and start once it is prepared. Runs on the
+     * {@link #mPlayerThread}.
+     *
+     * @param uri          uri of the ringtone to play.
+     * @param duration     duration of the ringtone in milliseconds, {@link #UNKNOWN_DURATION} or
+     *                     {@link #UNKNOWN_SHORT_DURATION}.
+     * @param requestId    id of the request.
+     * @param requestNanos {@link System#nanoTime()} when the request was handled.
+     */
+    private void play(@Nullable final Uri uri,
+                      final long duration,
+                      final int requestId,
+                      final long requestNanos) {
         if (uri == null || uri == Uri.EMPTY) {
             Log.w(RingTonePlayer.class.getName(), "playRingtone: Uri is null or empty.");
             return;
         }
 
-        mMediaPlayer.setDataSource(mContext, uri);
-        mMediaPlayer.prepare();
-        mMediaPlayer.start();
+        if (isShortTone(uri, duration)) {
+            getShortTonePool().play(uri, toPoolDuration(duration), requestNanos);
+            return;
+        }
+        playWithMediaPlayer(uri, requestId, requestNanos);
+    }
+
+    /**
+     * Start the ringtone from the pool of the {@link MediaPlayer}s, or prepare it and start once it
+     * is prepared. Runs on the {@link #mPlayerThread}.
+     *
+     * @param uri          uri of the ringtone to play.
+     * @param requestId    id of the request.
+     * @param requestNanos {@link System#nanoTime()} when the request was handled.
+     */
+    private void playWithMediaPlayer(@NonNull final Uri uri, final int requestId, final long requestNanos) {
+        PooledPlayer pooledPlayer = mPlayers.get(uri);
+        if (pooledPlayer == null) {
+            pooledPlayer = prepare(uri);
+            if (pooledPlayer == null) return;
+        }
+
+        if (pooledPlayer.isPrepared) {
+            pooledPlayer.mPlayer.seekTo(0);
+            pooledPlayer.mPlayer.start();
+            reportPreviewStarted(uri, requestNanos, true);
+        } else {
+            pooledPlayer.mStartRequestId = requestId;
+            pooledPlayer.mStartRequestNanos = requestNanos;
+        }
+    }
+
+    /**
+     * Prepare the ringtone in advance, without starting it. Runs on the {@link #mPlayerThread}.
+     *
+     * @param uri      uri of the ringtone to prepare.
+     * @param duration duration of the ringtone in milliseconds, {@link #UNKNOWN_DURATION} or
+     *                 {@link #UNKNOWN_SHORT_DURATION}.
+     */
+    private void prefetch(@Nullable final Uri uri, final long duration) {
+        if (uri == null || uri == Uri.EMPTY || mPlayers.containsKey(uri)) return;
+
+        if (isShortTone(uri, duration)) {
+            getShortTonePool().preload(uri, toPoolDuration(duration));
+        } else {
+            prepare(uri);
+        }
+    }
+
+    private boolean isShortTone(@NonNull final Uri uri, final long duration) {
+        final boolean isShort = duration == UNKNOWN_SHORT_DURATION
+                || (duration >= 0 && duration <= ShortTonePool.MAX_DURATION_MS);
+        return isShort && !mUndecodableTones.contains(uri);
+    }
+
+    private static long toPoolDuration(final long duration) {
+        return duration == UNKNOWN_SHORT_DURATION ? ShortTonePool.UNKNOWN_DURATION : duration;
+    }
+
+    @NonNull
+    private ShortTonePool getShortTonePool() {
+        if (mShortTonePool == null) {
+            mShortTonePool = new ShortTonePool(mContext, new ShortTonePool.Listener() {
+                @Override
+                public void onStarted(@NonNull Uri uri, long requestNanos, boolean wasLoaded) {
+                    reportPreviewStarted(uri, requestNanos, wasLoaded);
+                }
+
+                @Override
+                public void onLoadFailed(@NonNull Uri uri, boolean wasStartPending, long requestNanos) {
+                    mUndecodableTones.add(uri);
+
+                    //Pending starts are cancelled by the newer requests, so this is still the latest one.
+                    if (wasStartPending) playWithMediaPlayer(uri, mLatestRequestId, requestNanos);
+                }
+            });
+        }
+        return mShortTonePool;
+    }
+
+    /**
+     * Report the start of the playback to the {@link #mMetricsListener} on the main thread.
+     *
+     * @param uri          uri of the started ringtone.
+     * @param requestNanos {@link System#nanoTime()} when the request was handled.
+     * @param wasPrepared  true if the ringtone was prepared before the request.
+     */
+    private void reportPreviewStarted(@NonNull final Uri uri,
+                                      final long requestNanos,
+                                      final boolean wasPrepared) {
+        if (mMetricsListener == null) return;
+
+        final long latencyMs = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - requestNanos);
+        mMainHandler.post(new Runnable() {
+            @Override
+            public void run() {
+                mMetricsListener.onPreviewStarted(uri, latencyMs, wasPrepared);
+            }
+        });
+    }
+
+    /**
+     * Add a new {@link MediaPlayer} to the pool and prepare it asynchronously. The least recently
+     * used player is released if the pool is full. Runs on the {@link #mPlayerThread}.
+     *
+     * @param uri uri of the ringtone to prepare.
+     * @return {@link PooledPlayer} for the uri or null if the ringtone cannot be played.
+     */
+    @Nullable
+    private PooledPlayer prepare(@NonNull final Uri uri) {
+        //Make room in the pool.
+        final Iterator<Map.Entry<Uri, PooledPlayer>> iterator = mPlayers.entrySet().iterator();
+        while (mPlayers.size() >= MAX_PLAYERS && iterator.hasNext()) {
+            iterator.next().getValue().mPlayer.release();
+            iterator.remove();
+        }
+
+        final PooledPlayer pooledPlayer = new PooledPlayer(new MediaPlayer());
+        try {
+            pooledPlayer.mPlayer.setDataSource(mContext, uri);
+            pooledPlayer.mPlayer.setOnPreparedListener(new MediaPlayer.OnPreparedListener() {
+                @Override
+                public void onPrepared(MediaPlayer mp) {
+                    pooledPlayer.isPrepared = true;
+
+                    //Don't start if the user has selected another ringtone meanwhile.
+                    if (pooledPlayer.mStartRequestId == mLatestRequestId) {
+                        mp.start();
+                        reportPreviewStarted(uri, pooledPlayer.mStartRequestNanos, false);
+                    }
+                }
+            });
+            pooledPlayer.mPlayer.setOnErrorListener(new MediaPlayer.OnErrorListener() {
+                @Override
+                public boolean onError(MediaPlayer mp, int what, int extra) {
+                    Log.e(RingTonePlayer.class.getName(), "Cannot play " + uri + ". Error: " + what);
+                    if (mPlayers.get(uri) == pooledPlayer) mPlayers.remove(uri);
+                    mp.release();
+                    return true;
+                }
+            });
+            pooledPlayer.mPlayer.prepareAsync();
+        } catch (IOException | IllegalArgumentException | SecurityException | IllegalStateException e) {
+            //Cannot play ringtone
+            Log.e(RingTonePlayer.class.getName(), "Cannot play " + uri, e);
+            pooledPlayer.mPlayer.release();
+            return null;
+        }
+
+        mPlayers.put(uri, pooledPlayer);
+        return pooledPlayer;
     }
 
     /**
-     * Release the {@link MediaPlayer} instance. Remember to call this method in on destroy.
+     * Release all the players and stop the player thread. Remember to call this
+     * method in on destroy.
      */
     @Override
     public void close() {
-        if (mMediaPlayer.isPlaying()) mMediaPlayer.stop();
-        mMediaPlayer.release();
+        mLatestRequestId++;
+        mPlayerHandler.removeCallbacksAndMessages(null);
+        mPlayerHandler.post(new Runnable() {
+            @Override
+            public void run() {
+                for (PooledPlayer pooledPlayer : mPlayers.values()) {
+                    pooledPlayer.mPlayer.release();
+                }
+                mPlayers.clear();
+
+                if (mShortTonePool != null) {
+                    mShortTonePool.release();
+                    mShortTonePool = null;
+                }
+                mPlayerThread.quit();
+            }
+        });
+    }
+
+    /**
+     * Uris to play and prefetch with their durations, from the main thread to the
+     * {@link #mPlayerThread}.
+     */
+    private static final class PlayRequest {
+
+        /**
+         * Uri to play followed by the uris to prefetch.
+         */
+        @NonNull
+        private final Uri[] mUris;
+
+        /**
+         * Durations of the {@link #mUris} in milliseconds, {@link #UNKNOWN_DURATION} or
+         * {@link #UNKNOWN_SHORT_DURATION}.
+         */
+        @NonNull
+        private final long[] mDurations;
+
+        private PlayRequest(@NonNull final Uri[] uris, @NonNull final long[] durations) {
+            mUris = uris;
+            mDurations = durations;
+        }
+    }
+
+    /**
+     * {@link MediaPlayer} in the pool with its state.
+     */
+    private static final class PooledPlayer {
+
+        @NonNull
+        private final MediaPlayer mPlayer;
+
+        /**
+         * True once the {@link #mPlayer} is prepared.
+         */
+        private boolean isPrepared = false;
+
+        /**
+         * Id of the request to start the player for, once it is prepared. -1 if the player is
+         * only prefetched.
+         */
+        private int mStartRequestId = -1;
+
+        /**
+         * {@link System#nanoTime()} when the start was requested.
+         */
+        private long mStartRequestNanos;
+
+        private PooledPlayer(@NonNull final MediaPlayer player) {
+            mPlayer = player;
+        }
     }
 }
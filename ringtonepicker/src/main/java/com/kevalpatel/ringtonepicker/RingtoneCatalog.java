@@ -0,0 +1,286 @@
+/*
+ * Copyright 2017 Keval Patel
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance wit
+ * the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for
+ *  the specific language governing permissions and limitations under the License.
+ */
+
+package com.kevalpatel.ringtonepicker;
+
+import android.content.Context;
+import android.os.Handler;
+import android.os.Looper;
+
+import androidx.annotation.MainThread;
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+import androidx.annotation.WorkerThread;
+
+import java.util.ArrayList;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Loads the ringtones of the {@link RingtoneTypes} without the {@link RingtonePickerDialog}, for
+ * the applications which display them in their own UI or need them in a background job.
+ * <p>
+ * The ringtones are loaded the same way as in the dialog. Loaded types are kept until the media
+ * store changes and are shared with the dialog, a type which is already being loaded is waited
+ * for instead of queried again, and the ringtones are listed in the order of the types with every
+ * ringtone listed once.
+ * <p>
+ * <pre>
+ * RingtoneCatalog.load(context, new RingtoneCatalog.Callback() {
+ *     public void onRingtonesLoaded(RingtoneList ringtones) {
+ *         //Display the ringtones...
+ *     }
+ *
+ *     public void onLoadFailed(Throwable error) {
+ *         //Handle the error...
+ *     }
+ * }, RingtonePickerDialog.Builder.TYPE_RINGTONE, RingtonePickerDialog.Builder.TYPE_ALARM);
+ * </pre>
+ *
+ * @author <a href="https://github.com/kevalpatel2106">kevalpatel2106</a>
+ */
+public final class RingtoneCatalog {
+
+    private RingtoneCatalog() {
+        //Only static methods.
+    }
+
+    /**
+     * Start loading the ringtones of the types on the background, without delivering them. Later
+     * loads of the same types, by the {@link RingtoneCatalog} or by the {@link RingtonePickerDialog},
+     * get the ringtones right away or wait for this load instead of starting a new one. Loading
+     * errors are ignored, so the types which need the storage permission are loaded only if the
+     * permission is granted.
+     *
+     * @param context Instance of the caller.
+     * @param types   {@link RingtoneTypes} to load.
+     * @throws IllegalArgumentException if any type is invalid.
+     */
+    public static void preload(@NonNull final Context context, @RingtoneTypes final int... types) {
+        if (types.length == 0) return;
+        RingtoneLoaderTask.preload(context, toSources(types));
+    }
+
+    /**
+     * Load the ringtones of the types on the background.
+     *
+     * @param context Instance of the caller.
+     * @param types   {@link RingtoneTypes} to load.
+     * @return {@link Future} of the {@link RingtoneList}. {@link Future#get()} throws the
+     * {@link ExecutionException} if the ringtones cannot be loaded. Cancel the future to stop the
+     * queries which are running.
+     * @throws IllegalArgumentException if no type is given or any type is invalid.
+     */
+    @NonNull
+    public static Future<RingtoneList> load(@NonNull final Context context,
+                                            @RingtoneTypes final int... types) {
+        return start(context, types, null);
+    }
+
+    /**
+     * Load the ringtones of the types on the background and deliver them to the {@link Callback}
+     * on the main thread.
+     *
+     * @param context  Instance of the caller.
+     * @param callback {@link Callback} to get the ringtones.
+     * @param types    {@link RingtoneTypes} to load.
+     * @return {@link Future} of the {@link RingtoneList}. Cancel the future on the main thread to
+     * stop the load. The callback won't get notified after that.
+     * @throws IllegalArgumentException if no type is given or any type is invalid.
+     */
+    @NonNull
+    public static Future<RingtoneList> load(@NonNull final Context context,
+                                            @NonNull final Callback callback,
+                                            @RingtoneTypes final int... types) {
+        return start(context, types, callback);
+    }
+
+    /**
+     * Load the ringtones of the types on the calling thread. The types which are not loaded yet
+     * are queried one after another, so don't call this on the main thread.
+     *
+     * @param context Instance of the caller.
+     * @param types   {@link RingtoneTypes} to load.
+     * @return {@link RingtoneList} of the types.
+     * @throws IllegalArgumentException if no type is given or any type is invalid.
+     * @throws IllegalStateException    if {@link RingtonePickerDialog.Builder#TYPE_MUSIC} is
+     *                                  requested without the storage permission.
+     */
+    @WorkerThread
+    @NonNull
+    public static RingtoneList loadBlocking(@NonNull final Context context,
+                                            @RingtoneTypes final int... types) {
+        final ArrayList<RingtoneTypeSource> sources = toSources(types);
+        return new RingtoneList(RingtoneLoaderTask.newHeadlessTask(context).loadTypes(sources));
+    }
+
+    @NonNull
+    private static Future<RingtoneList> start(@NonNull final Context context,
+                                              @NonNull final int[] types,
+                                              @Nullable final Callback callback) {
+        final ArrayList<RingtoneTypeSource> sources = toSources(types);
+        final RingtoneLoaderTask task = RingtoneLoaderTask.newHeadlessTask(context);
+        final LoadFuture future = new LoadFuture(task, callback);
+        task.loadTypes(sources, future);
+        return future;
+    }
+
+    @NonNull
+    private static ArrayList<RingtoneTypeSource> toSources(@NonNull final int[] types) {
+        if (types.length == 0) {
+            throw new IllegalArgumentException("Select at least one ringtone type.");
+        }
+
+        final ArrayList<RingtoneTypeSource> sources = new ArrayList<>(types.length);
+        for (int type : types) sources.add(new RingtoneTypeSource(type));
+        return sources;
+    }
+
+    /**
+     * {@link Future} which gets the result from the {@link RingtoneLoaderTask}, cancels the
+     * queries of the task when it is cancelled and delivers the result to the {@link Callback}.
+     * The result is held by a private {@link FutureTask}, which is never run, so it doesn't hold a
+     * thread while the task waits for the types loaded by the others and only the task can
+     * complete it.
+     */
+    private static final class LoadFuture implements Future<RingtoneList>, RingtoneLoaderTask.TypesCallback {
+
+        @NonNull
+        private final RingtoneLoaderTask mTask;
+
+        @Nullable
+        private final Callback mCallback;
+
+        @NonNull
+        private final Result mResult = new Result();
+
+        private LoadFuture(@NonNull final RingtoneLoaderTask task, @Nullable final Callback callback) {
+            mTask = task;
+            mCallback = callback;
+        }
+
+        @Override
+        public void onTypesLoaded(@NonNull final RingtoneEntries ringtones) {
+            mResult.setResult(new RingtoneList(ringtones));
+        }
+
+        @Override
+        public void onTypesFailed(@NonNull final RuntimeException error) {
+            mResult.setError(error);
+        }
+
+        @Override
+        public boolean cancel(final boolean mayInterruptIfRunning) {
+            //Cancel the task even if the load is done, so the callback which is posted already is dropped.
+            mTask.cancel();
+            return mResult.cancel(mayInterruptIfRunning);
+        }
+
+        @Override
+        public boolean isCancelled() {
+            return mResult.isCancelled();
+        }
+
+        @Override
+        public boolean isDone() {
+            return mResult.isDone();
+        }
+
+        @Override
+        public RingtoneList get() throws InterruptedException, ExecutionException {
+            return mResult.get();
+        }
+
+        @Override
+        public RingtoneList get(final long timeout, @NonNull final TimeUnit unit)
+                throws InterruptedException, ExecutionException, TimeoutException {
+            return mResult.get(timeout, unit);
+        }
+
+        /**
+         * Result of the load, set by the callbacks of the task.
+         */
+        private final class Result extends FutureTask<RingtoneList> {
+
+            private Result() {
+                super(new Runnable() {
+                    @Override
+                    public void run() {
+                        //Do nothing. The result is set by the task.
+                    }
+                }, null);
+            }
+
+            private void setResult(@NonNull final RingtoneList ringtones) {
+                set(ringtones);
+            }
+
+            private void setError(@NonNull final Throwable error) {
+                setException(error);
+            }
+
+            @Override
+            protected void done() {
+                if (mCallback == null || isCancelled()) return;
+
+                new Handler(Looper.getMainLooper()).post(new Runnable() {
+                    @Override
+                    public void run() {
+                        if (mTask.isCancelled()) return;
+
+                        final RingtoneList ringtones;
+                        try {
+                            ringtones = get();
+                        } catch (ExecutionException e) {
+                            mCallback.onLoadFailed(e.getCause());
+                            return;
+                        } catch (InterruptedException e) {
+                            //Cannot happen. The load is already done.
+                            Thread.currentThread().interrupt();
+                            return;
+                        }
+                        mCallback.onRingtonesLoaded(ringtones);
+                    }
+                });
+            }
+        }
+    }
+
+    /**
+     * Callback to get the ringtones loaded by
+     * {@link #load(Context, Callback, int...)}.
+     */
+    public interface Callback {
+
+        /**
+         * Called on the main thread when the ringtones are loaded.
+         *
+         * @param ringtones {@link RingtoneList} of the types.
+         */
+        @MainThread
+        void onRingtonesLoaded(@NonNull RingtoneList ringtones);
+
+        /**
+         * Called on the main thread when the ringtones cannot be loaded, such as when
+         * {@link RingtonePickerDialog.Builder#TYPE_MUSIC} is requested without the storage
+         * permission.
+         *
+         * @param error cause of the failure.
+         */
+        @MainThread
+        void onLoadFailed(@NonNull Throwable error);
+    }
+}
@@ -0,0 +1,389 @@
+/*
+ * Copyright 2017 Keval Patel
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance wit
+ * the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for
+ *  the specific language governing permissions and limitations under the License.
+ */
+
+package com.kevalpatel.ringtonepicker;
+
+import android.content.ContentResolver;
+import android.content.Context;
+import android.database.ContentObserver;
+import android.net.Uri;
+import android.provider.MediaStore;
+import android.util.LruCache;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * Process wide cache of the ringtones loaded for each {@link CacheableRingtoneSource}, such as the
+ * {@link RingtoneTypes}, keyed by {@link CacheableRingtoneSource#getCacheKey()}. The cache outlives
+ * the {@link RingtonePickerDialog} instances, so only the first dialog pays the cost of walking
+ * the {@link android.database.Cursor}s.
+ * <p>
+ * It also caches the titles resolved by {@link RingtoneUtils#getRingtoneName(Context, Uri)}, once
+ * the cache is created by the {@link RingtonePickerDialog} or the {@link RingtoneCatalog}.
+ * <p>
+ * Cached lists are dropped whenever the {@link MediaStore} audio tables change. Those tables back
+ * both the {@link android.media.RingtoneManager} and the music list, so a {@link ContentObserver}
+ * on them is enough to keep the cache fresh. The music is listed only from the external table, so
+ * a change of the internal table keeps the music list and the music load which is running. Every
+ * other list is dropped on any change, as the custom sources may read either table. The dropped
+ * lists which have a {@link MusicDeltaSync} marker are kept as stale lists, so that the next load
+ * can patch them instead of reading the whole table again. The other lists are loaded again.
+ * <p>
+ * Only one load of a source runs at a time. A load claims the source with
+ * {@link #beginLoad(String, Runnable)}, so the other loads of the same source, such as a dialog
+ * opened while the type is being preloaded, continue once it ends instead of querying again. They
+ * leave a continuation behind instead of blocking a thread, so the waiting loads never hold the
+ * threads the running load needs.
+ * <p>
+ * {@link ChangeListener}s get notified after every invalidation, so an open list can be refreshed.
+ *
+ * @author <a href="https://github.com/kevalpatel2106">kevalpatel2106</a>
+ */
+final class RingtoneCatalogCache {
+
+    /**
+     * Number of the titles to keep in {@link #mTitles}.
+     */
+    private static final int MAX_TITLES = 256;
+
+    @Nullable
+    private static RingtoneCatalogCache sInstance;
+
+    /**
+     * Loaded ringtones keyed by the cache key of the source. The cached {@link RingtoneEntries}
+     * are shared between the callers, so they must never be modified.
+     */
+    @NonNull
+    private final HashMap<String, RingtoneEntries> mCatalogs = new HashMap<>();
+
+    /**
+     * Lists dropped by the last invalidation, keyed by the cache key of the source.
+     *
+     * @see #getStale(String)
+     */
+    @NonNull
+    private final HashMap<String, RingtoneEntries> mStaleCatalogs = new HashMap<>();
+
+    /**
+     * {@link MusicDeltaSync} markers captured before loading the lists in {@link #mCatalogs} or
+     * {@link #mStaleCatalogs}, keyed by the cache key of the source.
+     */
+    @NonNull
+    private final HashMap<String, MusicDeltaSync> mSyncMarkers = new HashMap<>();
+
+    /**
+     * Titles of the ringtones keyed by the uri of the ringtone.
+     */
+    @NonNull
+    private final LruCache<String, String> mTitles = new LruCache<>(MAX_TITLES);
+
+    /**
+     * Continuations waiting for the sources being loaded, keyed by the cache key of the source.
+     * Run when the load ends.
+     *
+     * @see #beginLoad(String, Runnable)
+     */
+    @NonNull
+    private final HashMap<String, ArrayList<Runnable>> mRunningLoads = new HashMap<>();
+
+    /**
+     * Incremented on every invalidation of the internal and the external audio table. Loads that
+     * started before the last invalidation of a table they read are not stored in the cache as
+     * they may contain stale data.
+     *
+     * @see #getGeneration(String)
+     * @see #put(String, RingtoneEntries, int)
+     */
+    private int mInternalGeneration = 0;
+    private int mExternalGeneration = 0;
+
+    /**
+     * {@link ChangeListener}s to notify after the cache is invalidated by the {@link ContentObserver}.
+     */
+    @NonNull
+    private final CopyOnWriteArrayList<ChangeListener> mChangeListeners = new CopyOnWriteArrayList<>();
+
+    private RingtoneCatalogCache(@NonNull final Context application) {
+        final ContentResolver contentResolver = application.getContentResolver();
+        contentResolver.registerContentObserver(MediaStore.Audio.Media.INTERNAL_CONTENT_URI,
+                true,
+                newObserver(false));
+        contentResolver.registerContentObserver(MediaStore.Audio.Media.EXTERNAL_CONTENT_URI,
+                true,
+                newObserver(true));
+    }
+
+    /**
+     * @param isExternal true to observe the external audio table, false for the internal one.
+     * @return {@link ContentObserver} which invalidates the sources which may list the table.
+     */
+    @NonNull
+    private ContentObserver newObserver(final boolean isExternal) {
+        return new ContentObserver(null) {
+            @Override
+            public void onChange(boolean selfChange) {
+                invalidate(isExternal);
+                for (ChangeListener listener : mChangeListeners) listener.onCatalogChanged();
+            }
+        };
+    }
+
+    /**
+     * Get the single instance of the cache. The {@link ContentObserver}s are registered with the
+     * application context the first time this method is called.
+     *
+     * @param context instance of the caller.
+     * @return {@link RingtoneCatalogCache}
+     */
+    @NonNull
+    static synchronized RingtoneCatalogCache getInstance(@NonNull final Context context) {
+        if (sInstance == null) {
+            sInstance = new RingtoneCatalogCache(context.getApplicationContext());
+        }
+        return sInstance;
+    }
+
+    /**
+     * Get the single instance of the cache without creating it, so no {@link ContentObserver} is
+     * registered.
+     *
+     * @return {@link RingtoneCatalogCache} or null if {@link #getInstance(Context)} was never called.
+     */
+    @Nullable
+    static synchronized RingtoneCatalogCache peekInstance() {
+        return sInstance;
+    }
+
+    /**
+     * Get the cached ringtones of the source.
+     *
+     * @param key cache key of the source to look for.
+     * @return {@link RingtoneEntries} of the source or null if the source is not cached yet. Do not
+     * modify the returned list.
+     */
+    @Nullable
+    synchronized RingtoneEntries get(@NonNull final String key) {
+        return mCatalogs.get(key);
+    }
+
+    /**
+     * @return Current generation of the whole cache, which changes when any audio table changes.
+     * Read it before reading the titles and pass it to {@link #putTitle(Uri, String, int)}.
+     */
+    synchronized int getGeneration() {
+        //Both the counters only grow, so the sum changes whenever any of them does.
+        return mInternalGeneration + mExternalGeneration;
+    }
+
+    /**
+     * @param key cache key of the source.
+     * @return Current generation of the tables the source may list. Read it before starting the
+     * load and pass it to {@link #put(String, RingtoneEntries, int)} once the load completes.
+     */
+    synchronized int getGeneration(@NonNull final String key) {
+        //Music is listed only from the external table.
+        return isMusic(key) ? mExternalGeneration : getGeneration();
+    }
+
+    /**
+     * Store the loaded ringtones of the source. The list is ignored if the cache got invalidated
+     * after the load was started.
+     *
+     * @param key        cache key of the source.
+     * @param ringtones  {@link RingtoneEntries} of the source.
+     * @param generation generation of the cache when the load was started.
+     */
+    synchronized void put(@NonNull final String key,
+                          @NonNull final RingtoneEntries ringtones,
+                          final int generation) {
+        put(key, ringtones, generation, null);
+    }
+
+    /**
+     * Store the loaded ringtones of the source along with the {@link MusicDeltaSync} marker
+     * captured before they were loaded. The list is ignored if the cache got invalidated after the
+     * load was started.
+     *
+     * @param key        cache key of the source.
+     * @param ringtones  {@link RingtoneEntries} of the source.
+     * @param generation generation of the cache when the load was started.
+     * @param syncMarker {@link MusicDeltaSync} marker of the list or null if the list cannot be
+     *                   patched later.
+     */
+    synchronized void put(@NonNull final String key,
+                          @NonNull final RingtoneEntries ringtones,
+                          final int generation,
+                          @Nullable final MusicDeltaSync syncMarker) {
+        if (generation != getGeneration(key)) return;
+
+        mCatalogs.put(key, ringtones);
+        mStaleCatalogs.remove(key);
+        if (syncMarker == null) {
+            mSyncMarkers.remove(key);
+        } else {
+            mSyncMarkers.put(key, syncMarker);
+        }
+    }
+
+    /**
+     * Claim the load of the source, unless it is already being loaded.
+     *
+     * @param key          cache key of the source to load.
+     * @param continuation {@link Runnable} to run when the running load ends or null to not wait
+     *                     for it. It runs on the thread which ended the load, so it should only
+     *                     schedule the work. Look for the source in the cache then and claim the
+     *                     load again if it is not there, as the running load may have failed.
+     * @return True if the caller claimed the load. The caller must call {@link #endLoad(String)}
+     * once the load ends, even if it fails. False if the source is already being loaded.
+     */
+    synchronized boolean beginLoad(@NonNull final String key, @Nullable final Runnable continuation) {
+        final ArrayList<Runnable> continuations = mRunningLoads.get(key);
+        if (continuations != null) {
+            if (continuation != null) continuations.add(continuation);
+            return false;
+        }
+
+        mRunningLoads.put(key, new ArrayList<Runnable>());
+        return true;
+    }
+
+    /**
+     * Release the load of the source claimed by {@link #beginLoad(String, Runnable)} and run the
+     * continuations waiting for it.
+     *
+     * @param key cache key of the source which was loaded.
+     */
+    void endLoad(@NonNull final String key) {
+        final ArrayList<Runnable> continuations;
+        synchronized (this) {
+            continuations = mRunningLoads.remove(key);
+            if (continuations == null) return;
+        }
+
+        //Outside the lock, so the continuations can claim the source again.
+        for (Runnable continuation : continuations) continuation.run();
+    }
+
+    /**
+     * Get the list of the source which was dropped by the last invalidation.
+     *
+     * @param key cache key of the source to look for.
+     * @return Stale {@link RingtoneEntries} of the source or null. Do not modify the returned list.
+     * @see #getSyncMarker(String)
+     */
+    @Nullable
+    synchronized RingtoneEntries getStale(@NonNull final String key) {
+        return mStaleCatalogs.get(key);
+    }
+
+    /**
+     * @param key cache key of the source to look for.
+     * @return {@link MusicDeltaSync} marker captured before the list of the source was loaded or
+     * null.
+     */
+    @Nullable
+    synchronized MusicDeltaSync getSyncMarker(@NonNull final String key) {
+        return mSyncMarkers.get(key);
+    }
+
+    /**
+     * Get the cached title of the ringtone.
+     *
+     * @param uri {@link Uri} of the ringtone.
+     * @return title of the ringtone or null if it is not cached.
+     */
+    @Nullable
+    synchronized String getTitle(@NonNull final Uri uri) {
+        return mTitles.get(uri.toString());
+    }
+
+    /**
+     * Store the title of the ringtone. The title is ignored if the cache got invalidated after the
+     * title was read.
+     *
+     * @param uri        {@link Uri} of the ringtone.
+     * @param title      title of the ringtone.
+     * @param generation generation of the cache when the title was read.
+     */
+    synchronized void putTitle(@NonNull final Uri uri,
+                               @NonNull final String title,
+                               final int generation) {
+        if (generation == getGeneration()) mTitles.put(uri.toString(), title);
+    }
+
+    /**
+     * @param listener {@link ChangeListener} to notify when the media store changes.
+     */
+    void addChangeListener(@NonNull final ChangeListener listener) {
+        mChangeListeners.addIfAbsent(listener);
+    }
+
+    /**
+     * @param listener {@link ChangeListener} added by {@link #addChangeListener(ChangeListener)}.
+     */
+    void removeChangeListener(@NonNull final ChangeListener listener) {
+        mChangeListeners.remove(listener);
+    }
+
+    /**
+     * Drop the cached ringtones of the sources which may list the changed table and all the cached
+     * titles. Only the lists with a {@link MusicDeltaSync} marker are kept as the stale lists.
+     *
+     * @param isExternal true if the external audio table changed, false if the internal one did.
+     */
+    synchronized void invalidate(final boolean isExternal) {
+        if (isExternal) {
+            mExternalGeneration++;
+        } else {
+            mInternalGeneration++;
+        }
+
+        final Iterator<Map.Entry<String, RingtoneEntries>> iterator = mCatalogs.entrySet().iterator();
+        while (iterator.hasNext()) {
+            final Map.Entry<String, RingtoneEntries> catalog = iterator.next();
+
+            //Music is not listed from the internal table.
+            if (!isExternal && isMusic(catalog.getKey())) continue;
+
+            if (mSyncMarkers.get(catalog.getKey()) != null) {
+                mStaleCatalogs.put(catalog.getKey(), catalog.getValue());
+            }
+            iterator.remove();
+        }
+        mTitles.evictAll();
+    }
+
+    private static boolean isMusic(@NonNull final String key) {
+        return RingtoneTypeSource.cacheKeyOf(RingtonePickerDialog.Builder.TYPE_MUSIC).equals(key);
+    }
+
+    /**
+     * Listener to get notified when the {@link MediaStore} audio tables change.
+     */
+    interface ChangeListener {
+
+        /**
+         * Called on the binder thread of the {@link ContentObserver}, after the cache is
+         * invalidated. Loads started after this call read the changed tables. The media store
+         * notifies for every changed row, so expect many calls in a row.
+         */
+        void onCatalogChanged();
+    }
+}
@@ -0,0 +1,565 @@
+/*
+ * Copyright 2017 Keval Patel
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance wit
+ * the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for
+ *  the specific language governing permissions and limitations under the License.
+ */
+
+package com.kevalpatel.ringtonepicker;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+
+/**
+ * Compact list of the ringtones. Instead of holding a {@link android.net.Uri} for every row, it
+ * holds the row id of the content provider and an index into the small list of the base uris
+ * (e.g. {@link android.provider.MediaStore.Audio.Media#EXTERNAL_CONTENT_URI}). The uri of the row
+ * is built only when it is needed by {@link #getUriString(int)}.
+ * <p>
+ * Rows are kept in the parallel arrays, so a row costs a title, a row id, a base index and the
+ * type flags, without any per row object. Rows with the same title are different rows.
+ * <p>
+ * Every row has the type flags, such as {@link #FLAG_RINGTONE}, of the {@link RingtoneTypes} it
+ * was listed by. A ringtone listed by more than one type has all of their flags once the lists
+ * are combined with {@link #merge(RingtoneEntries[])}. Rows of the custom
+ * {@link RingtoneSource}s have no flags.
+ * <p>
+ * The position of a uri can be looked up in constant time once {@link #buildIndex()} is called.
+ * Build the index on the loading thread, before handing the list over to the main thread.
+ * <p>
+ * This class doesn't depend on the Android framework. Once the list is handed over to other
+ * threads it must not be modified.
+ *
+ * @author <a href="https://github.com/kevalpatel2106">kevalpatel2106</a>
+ */
+final class RingtoneEntries {
+
+    /**
+     * Id of the rows whose uri doesn't end with the row id. The whole uri is stored as the base
+     * uri of such rows.
+     */
+    static final long NO_ID = -1;
+
+    /**
+     * Type flags of the rows, one for each {@link RingtoneTypes}. The flags of the ringtone, the
+     * notification and the alarm types have the same values as the types.
+     *
+     * @see RingtoneTypeSource#typeFlagOf(int)
+     */
+    static final int FLAG_RINGTONE = 1;
+    static final int FLAG_NOTIFICATION = 2;
+    static final int FLAG_ALARM = 4;
+    static final int FLAG_MUSIC = 8;
+
+    private static final int DEFAULT_CAPACITY = 16;
+
+    /**
+     * Number of the low bits of the index key that hold the row id. The base index is stored in
+     * the remaining high bits.
+     */
+    private static final int ID_BITS = 40;
+
+    /**
+     * Row id stored in the index key for {@link #NO_ID}.
+     */
+    private static final long NO_ID_KEY = (1L << ID_BITS) - 1;
+
+    /**
+     * Largest number of the base uris which {@link #indexOf(String)} compares one by one. Longer
+     * lists are looked up in the hash map instead.
+     */
+    private static final int MAX_SCANNED_BASES = 8;
+
+    /**
+     * Base uris used by the rows. There are only a few of them for the media store tables, but
+     * every row without an id has a base uri of its own.
+     */
+    @NonNull
+    private final ArrayList<String> mBaseUris = new ArrayList<>();
+
+    /**
+     * Index of each base uri in the {@link #mBaseUris}.
+     */
+    @NonNull
+    private final HashMap<String, Integer> mBaseIndexByUri = new HashMap<>();
+
+    @NonNull
+    private String[] mTitles;
+
+    @NonNull
+    private long[] mIds;
+
+    @NonNull
+    private int[] mBaseIndexes;
+
+    /**
+     * Type flags of each row, such as {@link #FLAG_RINGTONE}.
+     */
+    @NonNull
+    private int[] mTypeFlags;
+
+    private int mSize = 0;
+
+    /**
+     * Keys of the open addressing hash table from the uri to the position. The key combines the
+     * base index and the row id. Null if the index is not built.
+     *
+     * @see #buildIndex()
+     */
+    @Nullable
+    private long[] mIndexKeys;
+
+    /**
+     * Positions of the {@link #mIndexKeys} or -1 for the empty slots.
+     */
+    @Nullable
+    private int[] mIndexPositions;
+
+    RingtoneEntries() {
+        this(DEFAULT_CAPACITY);
+    }
+
+    RingtoneEntries(final int capacity) {
+        final int initialCapacity = Math.max(capacity, 1);
+        mTitles = new String[initialCapacity];
+        mIds = new long[initialCapacity];
+        mBaseIndexes = new int[initialCapacity];
+        mTypeFlags = new int[initialCapacity];
+    }
+
+    /**
+     * Create the list from the arrays of the rows. The arrays are used as they are, without copying.
+     *
+     * @param baseUris    base uris used by the rows.
+     * @param titles      titles of the rows.
+     * @param ids         row ids of the rows or {@link #NO_ID}.
+     * @param baseIndexes index of the base uri of each row in the baseUris.
+     * @param typeFlags   type flags of the rows.
+     * @return {@link RingtoneEntries} of the rows.
+     */
+    @NonNull
+    static RingtoneEntries of(@NonNull final List<String> baseUris,
+                              @NonNull final String[] titles,
+                              @NonNull final long[] ids,
+                              @NonNull final int[] baseIndexes,
+                              @NonNull final int[] typeFlags) {
+        if (titles.length != ids.length || titles.length != baseIndexes.length
+                || titles.length != typeFlags.length) {
+            throw new IllegalArgumentException("Length of the arrays must be the same.");
+        }
+
+        final RingtoneEntries entries = new RingtoneEntries(0);
+        for (String baseUri : baseUris) entries.addBase(baseUri);
+        entries.mTitles = titles;
+        entries.mIds = ids;
+        entries.mBaseIndexes = baseIndexes;
+        entries.mTypeFlags = typeFlags;
+        entries.mSize = titles.length;
+        return entries;
+    }
+
+    /**
+     * Add the row without any type flags at the end of the list.
+     *
+     * @param title   title of the ringtone.
+     * @param baseUri uri of the table the row belongs to.
+     * @param id      id of the row in the table.
+     */
+    void add(@NonNull final String title, @NonNull final String baseUri, final long id) {
+        add(title, baseUri, id, 0);
+    }
+
+    /**
+     * Add the row at the end of the list.
+     *
+     * @param title     title of the ringtone.
+     * @param baseUri   uri of the table the row belongs to.
+     * @param id        id of the row in the table.
+     * @param typeFlags type flags of the row, such as {@link #FLAG_RINGTONE}.
+     */
+    void add(@NonNull final String title, @NonNull final String baseUri, final long id, final int typeFlags) {
+        dropIndex();
+        ensureCapacity(mSize + 1);
+        mTitles[mSize] = title;
+        mIds[mSize] = id;
+        mBaseIndexes[mSize] = indexOfBase(baseUri, true);
+        mTypeFlags[mSize] = typeFlags;
+        mSize++;
+    }
+
+    /**
+     * Add the row at the end of the list. If the uri ends with the row id, it is split into the base
+     * uri and the id. Otherwise the whole uri is stored with {@link #NO_ID}.
+     *
+     * @param title     title of the ringtone.
+     * @param uriString uri of the ringtone.
+     */
+    void add(@NonNull final String title, @NonNull final String uriString) {
+        final int separator = uriString.lastIndexOf('/');
+        final long id = separator < 0 ? NO_ID : parseId(uriString, separator + 1);
+        if (id == NO_ID) {
+            add(title, uriString, NO_ID);
+        } else {
+            add(title, uriString.substring(0, separator), id);
+        }
+    }
+
+    /**
+     * Add all the rows of the other list at the end of this list.
+     *
+     * @param other {@link RingtoneEntries} to add.
+     */
+    void addAll(@NonNull final RingtoneEntries other) {
+        dropIndex();
+        ensureCapacity(mSize + other.mSize);
+
+        //Map the base uris of other list to the base uris of this list.
+        final int[] baseMapping = new int[other.mBaseUris.size()];
+        for (int i = 0; i < baseMapping.length; i++) {
+            baseMapping[i] = indexOfBase(other.mBaseUris.get(i), true);
+        }
+
+        System.arraycopy(other.mTitles, 0, mTitles, mSize, other.mSize);
+        System.arraycopy(other.mIds, 0, mIds, mSize, other.mSize);
+        System.arraycopy(other.mTypeFlags, 0, mTypeFlags, mSize, other.mSize);
+        for (int i = 0; i < other.mSize; i++) {
+            mBaseIndexes[mSize + i] = baseMapping[other.mBaseIndexes[i]];
+        }
+        mSize += other.mSize;
+    }
+
+    /**
+     * Copy the rows between the given positions in to the new list.
+     *
+     * @param from position of the first row, inclusive.
+     * @param to   position of the last row, exclusive.
+     * @return New {@link RingtoneEntries} with the rows.
+     */
+    @NonNull
+    RingtoneEntries copyOfRange(final int from, final int to) {
+        final RingtoneEntries copy = new RingtoneEntries(to - from);
+        System.arraycopy(mTitles, from, copy.mTitles, 0, to - from);
+        System.arraycopy(mIds, from, copy.mIds, 0, to - from);
+        System.arraycopy(mTypeFlags, from, copy.mTypeFlags, 0, to - from);
+
+        //Copy only the base uris used by the rows in the range.
+        final int[] baseMapping = new int[mBaseUris.size()];
+        Arrays.fill(baseMapping, -1);
+        for (int i = from; i < to; i++) {
+            final int baseIndex = mBaseIndexes[i];
+            if (baseMapping[baseIndex] == -1) baseMapping[baseIndex] = copy.addBase(mBaseUris.get(baseIndex));
+            copy.mBaseIndexes[i - from] = baseMapping[baseIndex];
+        }
+        copy.mSize = to - from;
+        return copy;
+    }
+
+    /**
+     * Drop the rows which are already seen in the other lists, such as the ringtones which belong
+     * to more than one {@link RingtoneTypes}. The rows are compared by their base uri and row id.
+     *
+     * @param seenRows {@link RowSet} of the rows seen so far. The kept rows are added to it.
+     * @return This list if all the rows are new, otherwise a copy without the seen rows.
+     */
+    @NonNull
+    RingtoneEntries withoutSeen(@NonNull final RowSet seenRows) {
+        RingtoneEntries unique = null;
+        for (int i = 0; i < mSize; i++) {
+            final boolean isNew = seenRows.addIfAbsent(mBaseUris.get(mBaseIndexes[i]), mIds[i], 0) == -1;
+
+            //Copy the rows only once the first seen row is found.
+            if (!isNew && unique == null) unique = copyOfRange(0, i);
+            if (isNew && unique != null) {
+                unique.add(mTitles[i], mBaseUris.get(mBaseIndexes[i]), mIds[i], mTypeFlags[i]);
+            }
+        }
+        return unique == null ? this : unique;
+    }
+
+    /**
+     * Combine the lists in to a new list, keeping only the first row of every ringtone. The rows
+     * are compared by their base uri and row id. The type flags of the dropped rows are added to
+     * the kept row, so a tone listed as both a ringtone and a notification has both the flags.
+     *
+     * @param lists {@link RingtoneEntries} to combine, in order.
+     * @return New {@link RingtoneEntries} with the unique rows.
+     */
+    @NonNull
+    static RingtoneEntries merge(@NonNull final RingtoneEntries[] lists) {
+        int size = 0;
+        for (RingtoneEntries list : lists) size += list.mSize;
+
+        final RingtoneEntries merged = new RingtoneEntries(size);
+        final RowSet positions = new RowSet();
+        for (RingtoneEntries list : lists) {
+            for (int i = 0; i < list.mSize; i++) {
+                final String baseUri = list.mBaseUris.get(list.mBaseIndexes[i]);
+                final int position = positions.addIfAbsent(baseUri, list.mIds[i], merged.mSize);
+                if (position != -1) {
+                    merged.mTypeFlags[position] |= list.mTypeFlags[i];
+                } else {
+                    merged.add(list.mTitles[i], baseUri, list.mIds[i], list.mTypeFlags[i]);
+                }
+            }
+        }
+        return merged;
+    }
+
+    int size() {
+        return mSize;
+    }
+
+    boolean isEmpty() {
+        return mSize == 0;
+    }
+
+    @NonNull
+    String getTitle(final int position) {
+        return mTitles[position];
+    }
+
+    long getId(final int position) {
+        return mIds[position];
+    }
+
+    /**
+     * @return Type flags of the row, such as {@link #FLAG_RINGTONE}.
+     */
+    int getTypeFlags(final int position) {
+        return mTypeFlags[position];
+    }
+
+    /**
+     * @param position      position of the row in this list.
+     * @param other         {@link RingtoneEntries} of the other row.
+     * @param otherPosition position of the other row in the other list.
+     * @return True if both the rows have the same uri.
+     */
+    boolean isSameRow(final int position, @NonNull final RingtoneEntries other, final int otherPosition) {
+        if (mIds[position] != other.mIds[otherPosition]) return false;
+
+        final String baseUri = mBaseUris.get(mBaseIndexes[position]);
+        return baseUri.equals(other.mBaseUris.get(other.mBaseIndexes[otherPosition]));
+    }
+
+    /**
+     * @return Index of the base uri of the row.
+     * @see #getBaseUri(int)
+     */
+    int getBaseIndex(final int position) {
+        return mBaseIndexes[position];
+    }
+
+    int getBaseUriCount() {
+        return mBaseUris.size();
+    }
+
+    @NonNull
+    String getBaseUri(final int baseIndex) {
+        return mBaseUris.get(baseIndex);
+    }
+
+    /**
+     * Build the uri of the row.
+     *
+     * @param position position of the row.
+     * @return uri of the row as string.
+     */
+    @NonNull
+    String getUriString(final int position) {
+        final String baseUri = mBaseUris.get(mBaseIndexes[position]);
+        return mIds[position] == NO_ID ? baseUri : baseUri + "/" + mIds[position];
+    }
+
+    /**
+     * Build the hash index of the rows, so that {@link #indexOf(String)} doesn't scan the list.
+     * Call this on the loading thread, before the list is handed over to other threads. Adding
+     * rows drops the index.
+     */
+    void buildIndex() {
+        if (mIndexKeys != null) return;
+
+        //Keep the table at most half full.
+        final int capacity = Integer.highestOneBit(Math.max(mSize, 1) * 2 - 1) << 1;
+        final long[] keys = new long[capacity];
+        final int[] positions = new int[capacity];
+        Arrays.fill(positions, -1);
+
+        for (int i = 0; i < mSize; i++) {
+            //Ids too large for the key cannot be indexed. Keep scanning the list instead.
+            if (mIds[i] >= NO_ID_KEY) return;
+
+            final long key = toKey(mBaseIndexes[i], mIds[i]);
+            int slot = slotOf(key, capacity);
+            while (positions[slot] != -1 && keys[slot] != key) slot = (slot + 1) & (capacity - 1);
+
+            //Keep the first row with the uri.
+            if (positions[slot] == -1) {
+                keys[slot] = key;
+                positions[slot] = i;
+            }
+        }
+
+        mIndexKeys = keys;
+        mIndexPositions = positions;
+    }
+
+    /**
+     * Find the position of the uri in the list, without building the uri of every row. This is
+     * a constant time lookup if the index is built by {@link #buildIndex()}.
+     *
+     * @param uriString uri to look for.
+     * @return position of the first row with the uri or -1 if not found.
+     */
+    int indexOf(@NonNull final String uriString) {
+        final int separator = uriString.lastIndexOf('/');
+        final long id = separator < 0 ? NO_ID : parseId(uriString, separator + 1);
+        final int baseIndex = findBase(uriString, id == NO_ID ? uriString.length() : separator);
+        if (baseIndex < 0) return -1;
+
+        final long[] keys = mIndexKeys;
+        final int[] positions = mIndexPositions;
+        if (keys != null && positions != null) {
+            final long key = toKey(baseIndex, id);
+            int slot = slotOf(key, keys.length);
+            while (positions[slot] != -1) {
+                if (keys[slot] == key) return positions[slot];
+                slot = (slot + 1) & (keys.length - 1);
+            }
+            return -1;
+        }
+
+        for (int i = 0; i < mSize; i++) {
+            if (mIds[i] == id && mBaseIndexes[i] == baseIndex) return i;
+        }
+        return -1;
+    }
+
+    /**
+     * Find the base uri which is equal to the first characters of the uri. A few base uris are
+     * compared in place, without creating a substring. Otherwise they are looked up in the
+     * {@link #mBaseIndexByUri}.
+     *
+     * @param uriString uri to look for.
+     * @param length    length of the base uri in the uri.
+     * @return index of the base uri or -1 if not found.
+     */
+    private int findBase(@NonNull final String uriString, final int length) {
+        if (mBaseUris.size() > MAX_SCANNED_BASES) {
+            final Integer index = mBaseIndexByUri.get(uriString.substring(0, length));
+            return index == null ? -1 : index;
+        }
+
+        for (int i = 0; i < mBaseUris.size(); i++) {
+            final String baseUri = mBaseUris.get(i);
+            if (baseUri.length() == length && uriString.regionMatches(0, baseUri, 0, length)) return i;
+        }
+        return -1;
+    }
+
+    private void dropIndex() {
+        mIndexKeys = null;
+        mIndexPositions = null;
+    }
+
+    private static long toKey(final int baseIndex, final long id) {
+        return ((long) baseIndex << ID_BITS) | (id == NO_ID ? NO_ID_KEY : id);
+    }
+
+    private static int slotOf(final long key, final int capacity) {
+        //Fibonacci hashing spreads the sequential row ids over the table.
+        return (int) ((key * 0x9E3779B97F4A7C15L) >>> 32) & (capacity - 1);
+    }
+
+    private int indexOfBase(@NonNull final String baseUri, final boolean add) {
+        final Integer index = mBaseIndexByUri.get(baseUri);
+        if (index != null) return index;
+        return add ? addBase(baseUri) : -1;
+    }
+
+    /**
+     * Add the base uri, which must not be in the list yet.
+     *
+     * @return index of the added base uri.
+     */
+    private int addBase(@NonNull final String baseUri) {
+        mBaseUris.add(baseUri);
+        mBaseIndexByUri.put(baseUri, mBaseUris.size() - 1);
+        return mBaseUris.size() - 1;
+    }
+
+    private void ensureCapacity(final int capacity) {
+        if (capacity <= mTitles.length) return;
+
+        final int newCapacity = Math.max(capacity, mTitles.length + (mTitles.length >> 1));
+        mTitles = Arrays.copyOf(mTitles, newCapacity);
+        mIds = Arrays.copyOf(mIds, newCapacity);
+        mBaseIndexes = Arrays.copyOf(mBaseIndexes, newCapacity);
+        mTypeFlags = Arrays.copyOf(mTypeFlags, newCapacity);
+    }
+
+    /**
+     * Parse the row id from the last segment of the uri. Only the canonical decimal form is
+     * accepted, so that {@link #getUriString(int)} gives back the exact same uri.
+     *
+     * @return row id or {@link #NO_ID} if the segment is not a row id.
+     */
+    private static long parseId(@NonNull final String uriString, final int start) {
+        final int length = uriString.length();
+        if (start >= length || length - start > 18) return NO_ID;
+        if (uriString.charAt(start) == '0' && length - start > 1) return NO_ID;
+
+        long id = 0;
+        for (int i = start; i < length; i++) {
+            final char c = uriString.charAt(i);
+            if (c < '0' || c > '9') return NO_ID;
+            id = id * 10 + (c - '0');
+        }
+        return id;
+    }
+
+    /**
+     * Positions of the rows keyed by their base uri and row id, to find the rows listed more than
+     * once without building their uris.
+     */
+    static final class RowSet {
+
+        /**
+         * Positions by the row id, for each base uri. There are only a few base uris.
+         */
+        @NonNull
+        private final HashMap<String, HashMap<Long, Integer>> mPositions = new HashMap<>();
+
+        /**
+         * Add the row, unless it is already in the set.
+         *
+         * @param baseUri  base uri of the row.
+         * @param id       row id or {@link #NO_ID}.
+         * @param position position to store for the row.
+         * @return Position stored for the row if it is already in the set, otherwise -1.
+         */
+        int addIfAbsent(@NonNull final String baseUri, final long id, final int position) {
+            HashMap<Long, Integer> positions = mPositions.get(baseUri);
+            if (positions == null) {
+                positions = new HashMap<>();
+                mPositions.put(baseUri, positions);
+            }
+
+            final Integer existing = positions.get(id);
+            if (existing != null) return existing;
+            positions.put(id, position);
+            return -1;
+        }
+    }
+}
@@ -0,0 +1,239 @@
+/*
+ * Copyright 2017 Keval Patel
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance wit
+ * the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for
+ *  the specific language governing permissions and limitations under the License.
+ */
+
+package com.kevalpatel.ringtonepicker;
+
+import android.annotation.SuppressLint;
+import android.content.Context;
+import android.content.res.TypedArray;
+import android.graphics.Canvas;
+import android.graphics.Paint;
+import android.graphics.Typeface;
+import android.os.Build;
+import android.util.TypedValue;
+import android.view.MotionEvent;
+import android.view.View;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+import androidx.recyclerview.widget.LinearLayoutManager;
+import androidx.recyclerview.widget.RecyclerView;
+
+/**
+ * Vertical rail of the {@link RingtoneSectionIndex} labels displayed next to the ringtone list.
+ * Touching or dragging on the rail jumps the list to the first row of the section under the
+ * finger. The jump uses {@link LinearLayoutManager#scrollToPositionWithOffset(int, int)}, so only
+ * the rows around the target position are bound, not the rows in between.
+ * <p>
+ * The rail is hidden when there are too few rows to scroll or there is only one section. If there
+ * are more sections than the rail can fit, only some of the labels are drawn but every section can
+ * still be reached by dragging.
+ *
+ * @author <a href="https://github.com/kevalpatel2106">kevalpatel2106</a>
+ */
+@SuppressLint("ViewConstructor")
+final class RingtoneFastScroller extends View {
+
+    /**
+     * Minimum number of the rows to display the rail.
+     */
+    private static final int MIN_ROWS = 100;
+
+    /**
+     * Height of the slot of each label, relative to the text size.
+     */
+    private static final float SLOT_HEIGHT_RATIO = 1.5f;
+
+    @NonNull
+    private final RecyclerView mRecyclerView;
+
+    @NonNull
+    private final Paint mTextPaint = new Paint(Paint.ANTI_ALIAS_FLAG);
+
+    private final int mTextColor;
+
+    private final int mHighlightColor;
+
+    @Nullable
+    private RingtoneSectionIndex mSections;
+
+    /**
+     * Position of the first row of the sections in the list, to skip the fixed items.
+     */
+    private int mOffset;
+
+    /**
+     * Section of the first visible row or the section under the finger while dragging.
+     */
+    private int mCurrentSection = -1;
+
+    private boolean isDragging = false;
+
+    RingtoneFastScroller(@NonNull final Context context, @NonNull final RecyclerView recyclerView) {
+        super(context);
+        mRecyclerView = recyclerView;
+
+        final float density = context.getResources().getDisplayMetrics().density;
+        final int horizontalPadding = (int) (8 * density);
+        setPadding(horizontalPadding, (int) (4 * density), horizontalPadding, (int) (4 * density));
+
+        mTextPaint.setTextSize(TypedValue.applyDimension(TypedValue.COMPLEX_UNIT_SP,
+                11,
+                context.getResources().getDisplayMetrics()));
+        mTextPaint.setTextAlign(Paint.Align.CENTER);
+        mTextPaint.setTypeface(Typeface.DEFAULT_BOLD);
+
+        final int highlightAttr = Build.VERSION.SDK_INT >= Build.VERSION_CODES.LOLLIPOP
+                ? android.R.attr.colorAccent
+                : android.R.attr.textColorPrimary;
+        final TypedArray colors = context.obtainStyledAttributes(
+                new int[]{android.R.attr.textColorSecondary, highlightAttr});
+        mTextColor = colors.getColor(0, 0xFF757575);
+        mHighlightColor = colors.getColor(1, 0xFF000000);
+        colors.recycle();
+
+        recyclerView.addOnScrollListener(new RecyclerView.OnScrollListener() {
+            @Override
+            public void onScrolled(@NonNull RecyclerView recyclerView, int dx, int dy) {
+                if (!isDragging) updateCurrentSection();
+            }
+        });
+
+        setVisibility(GONE);
+    }
+
+    /**
+     * Set the sections to display on the rail.
+     *
+     * @param sections {@link RingtoneSectionIndex} of the rows or null to hide the rail, such as
+     *                 while the list is filtered.
+     * @param offset   position of the first row of the sections in the list.
+     */
+    void setSections(@Nullable final RingtoneSectionIndex sections, final int offset) {
+        mSections = sections;
+        mOffset = offset;
+
+        final boolean isVisible = sections != null
+                && sections.getSectionCount() > 1
+                && sections.getRowCount() >= MIN_ROWS;
+        setVisibility(isVisible ? VISIBLE : GONE);
+        updateCurrentSection();
+        invalidate();
+    }
+
+    @Override
+    protected void onMeasure(int widthMeasureSpec, int heightMeasureSpec) {
+        //Wide enough for the widest letter.
+        final int width = (int) (mTextPaint.measureText("W") + 0.5f) + getPaddingLeft() + getPaddingRight();
+        setMeasuredDimension(resolveSize(width, widthMeasureSpec),
+                getDefaultSize(getSuggestedMinimumHeight(), heightMeasureSpec));
+    }
+
+    @Override
+    protected void onDraw(Canvas canvas) {
+        super.onDraw(canvas);
+        if (mSections == null || mSections.getSectionCount() == 0) return;
+
+        final int sectionCount = mSections.getSectionCount();
+        final float railHeight = getHeight() - getPaddingTop() - getPaddingBottom();
+        final float slotHeight = mTextPaint.getTextSize() * SLOT_HEIGHT_RATIO;
+        final int slotCount = Math.max(1, (int) (railHeight / slotHeight));
+
+        //Skip the labels if they don't fit. Draw the current section in place of the skipped one.
+        final int step = (sectionCount + slotCount - 1) / slotCount;
+        final int drawnCount = (sectionCount + step - 1) / step;
+        final float drawnSlotHeight = railHeight / drawnCount;
+        final float x = getPaddingLeft() + (getWidth() - getPaddingLeft() - getPaddingRight()) / 2f;
+        final float baselineOffset = (drawnSlotHeight - mTextPaint.ascent() - mTextPaint.descent()) / 2f;
+
+        for (int slot = 0; slot < drawnCount; slot++) {
+            int section = slot * step;
+            if (mCurrentSection >= section && mCurrentSection < section + step) section = mCurrentSection;
+
+            mTextPaint.setColor(section == mCurrentSection ? mHighlightColor : mTextColor);
+            canvas.drawText(mSections.getLabel(section),
+                    x,
+                    getPaddingTop() + slot * drawnSlotHeight + baselineOffset,
+                    mTextPaint);
+        }
+    }
+
+    @SuppressLint("ClickableViewAccessibility")
+    @Override
+    public boolean onTouchEvent(MotionEvent event) {
+        if (mSections == null) return false;
+
+        switch (event.getActionMasked()) {
+            case MotionEvent.ACTION_DOWN:
+                isDragging = true;
+                //Don't let the dialog or the list steal the drag.
+                if (getParent() != null) getParent().requestDisallowInterceptTouchEvent(true);
+                jumpTo(event.getY());
+                return true;
+            case MotionEvent.ACTION_MOVE:
+                jumpTo(event.getY());
+                return true;
+            case MotionEvent.ACTION_UP:
+            case MotionEvent.ACTION_CANCEL:
+                isDragging = false;
+                updateCurrentSection();
+                return true;
+            default:
+                return super.onTouchEvent(event);
+        }
+    }
+
+    /**
+     * Jump the list to the section under the given y coordinate.
+     */
+    private void jumpTo(final float y) {
+        if (mSections == null || mSections.getSectionCount() == 0) return;
+
+        final float railHeight = getHeight() - getPaddingTop() - getPaddingBottom();
+        final float fraction = Math.max(0f, Math.min(1f, (y - getPaddingTop()) / railHeight));
+        final int sectionCount = mSections.getSectionCount();
+        final int section = Math.min(sectionCount - 1, (int) (fraction * sectionCount));
+        if (section == mCurrentSection) return;
+
+        mCurrentSection = section;
+        invalidate();
+
+        final RecyclerView.LayoutManager layoutManager = mRecyclerView.getLayoutManager();
+        final int position = mOffset + mSections.getPosition(section);
+        if (layoutManager instanceof LinearLayoutManager) {
+            mRecyclerView.stopScroll();
+            ((LinearLayoutManager) layoutManager).scrollToPositionWithOffset(position, 0);
+        } else {
+            mRecyclerView.scrollToPosition(position);
+        }
+    }
+
+    /**
+     * Highlight the section of the first visible row.
+     */
+    private void updateCurrentSection() {
+        int section = -1;
+        final RecyclerView.LayoutManager layoutManager = mRecyclerView.getLayoutManager();
+        if (mSections != null && layoutManager instanceof LinearLayoutManager) {
+            final int position = ((LinearLayoutManager) layoutManager).findFirstVisibleItemPosition();
+            if (position != RecyclerView.NO_POSITION) {
+                section = mSections.getSectionForPosition(Math.max(0, position - mOffset));
+            }
+        }
+
+        if (section != mCurrentSection) {
+            mCurrentSection = section;
+            invalidate();
+        }
+    }
+}
@@ -0,0 +1,161 @@
+/*
+ * Copyright 2017 Keval Patel
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance wit
+ * the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for
+ *  the specific language governing permissions and limitations under the License.
+ */
+
+package com.kevalpatel.ringtonepicker;
+
+import android.net.Uri;
+
+import androidx.annotation.NonNull;
+
+import java.util.AbstractList;
+import java.util.RandomAccess;
+
+/**
+ * Read only list of the ringtones loaded by the {@link RingtoneCatalog}. Ringtones are in the
+ * order of the {@link RingtoneTypes} they were loaded for, and every ringtone is listed once even
+ * if it belongs to more than one type.
+ * <p>
+ * The list keeps the ringtones in the same compact form as the {@link RingtonePickerDialog}, so
+ * the {@link Item}s and the {@link Uri}s are created only when they are read. Use
+ * {@link #getTitle(int)} and {@link #getUri(int)} to read a single value without the {@link Item}.
+ *
+ * @author <a href="https://github.com/kevalpatel2106">kevalpatel2106</a>
+ */
+public final class RingtoneList extends AbstractList<RingtoneList.Item> implements RandomAccess {
+
+    @NonNull
+    private final RingtoneEntries mEntries;
+
+    /**
+     * @param entries {@link RingtoneEntries} with the index built. They must not change anymore.
+     */
+    RingtoneList(@NonNull final RingtoneEntries entries) {
+        mEntries = entries;
+    }
+
+    @NonNull
+    @Override
+    public Item get(final int position) {
+        checkPosition(position);
+        return new Item(mEntries.getTitle(position),
+                mEntries.getUriString(position),
+                mEntries.getTypeFlags(position));
+    }
+
+    @Override
+    public int size() {
+        return mEntries.size();
+    }
+
+    /**
+     * @param position position of the ringtone.
+     * @return Title of the ringtone.
+     */
+    @NonNull
+    public String getTitle(final int position) {
+        checkPosition(position);
+        return mEntries.getTitle(position);
+    }
+
+    /**
+     * @param position position of the ringtone.
+     * @return {@link Uri} of the ringtone.
+     */
+    @NonNull
+    public Uri getUri(final int position) {
+        checkPosition(position);
+        return Uri.parse(mEntries.getUriString(position));
+    }
+
+    /**
+     * Find the ringtone by its {@link Uri} without going through the whole list.
+     *
+     * @param uri {@link Uri} of the ringtone.
+     * @return Position of the ringtone or -1 if it is not in the list.
+     */
+    public int indexOfUri(@NonNull final Uri uri) {
+        return mEntries.indexOf(uri.toString());
+    }
+
+    private void checkPosition(final int position) {
+        if (position < 0 || position >= mEntries.size()) {
+            throw new IndexOutOfBoundsException("Invalid position " + position + ", size is " + mEntries.size());
+        }
+    }
+
+    /**
+     * Single ringtone of the {@link RingtoneList}.
+     */
+    public static final class Item {
+
+        @NonNull
+        private final String mTitle;
+
+        @NonNull
+        private final String mUriString;
+
+        private final int mTypeFlags;
+
+        private Item(@NonNull final String title, @NonNull final String uriString, final int typeFlags) {
+            mTitle = title;
+            mUriString = uriString;
+            mTypeFlags = typeFlags;
+        }
+
+        /**
+         * @return Title of the ringtone.
+         */
+        @NonNull
+        public String getTitle() {
+            return mTitle;
+        }
+
+        /**
+         * @return {@link Uri} of the ringtone.
+         */
+        @NonNull
+        public Uri getUri() {
+            return Uri.parse(mUriString);
+        }
+
+        /**
+         * @param type {@link RingtoneTypes} to check.
+         * @return True if the ringtone was listed by the type. A ringtone can belong to more than
+         * one type. Ringtones of a {@link RingtoneSource} don't belong to any type.
+         * @throws IllegalArgumentException if the type is invalid.
+         */
+        public boolean isType(@RingtoneTypes final int type) {
+            return (mTypeFlags & RingtoneTypeSource.typeFlagOf(type)) != 0;
+        }
+
+        @Override
+        public boolean equals(final Object o) {
+            if (this == o) return true;
+            if (!(o instanceof Item)) return false;
+            final Item item = (Item) o;
+            return mTypeFlags == item.mTypeFlags
+                    && mTitle.equals(item.mTitle)
+                    && mUriString.equals(item.mUriString);
+        }
+
+        @Override
+        public int hashCode() {
+            return 31 * (31 * mTitle.hashCode() + mUriString.hashCode()) + mTypeFlags;
+        }
+
+        @Override
+        public String toString() {
+            return mTitle + " (" + mUriString + ")";
+        }
+    }
+}
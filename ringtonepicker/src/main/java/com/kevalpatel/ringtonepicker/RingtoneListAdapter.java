@@ -0,0 +1,705 @@
+/*
+ * Copyright 2017 Keval Patel
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance wit
+ * the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for
+ *  the specific language governing permissions and limitations under the License.
+ */
+
+package com.kevalpatel.ringtonepicker;
+
+import android.content.Context;
+import android.net.Uri;
+import android.os.Handler;
+import android.os.Looper;
+import android.util.TypedValue;
+import android.view.LayoutInflater;
+import android.view.View;
+import android.view.ViewGroup;
+import android.widget.Checkable;
+import android.widget.TextView;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+import androidx.recyclerview.widget.DiffUtil;
+import androidx.recyclerview.widget.RecyclerView;
+import androidx.tracing.Trace;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Executor;
+
+/**
+ * {@link RecyclerView.Adapter} for the list of ringtones in {@link RingtonePickerDialog}. The list
+ * starts with the fixed items such as "Default" and "Silent", followed by the loaded
+ * {@link RingtoneEntries}. Rows are bound straight from the {@link RingtoneEntries} and the
+ * {@link Uri} of a row is built only when that row is selected.
+ * <p>
+ * Every row has a stable id. The adapter numbers every ringtone it sees by its base uri and row
+ * id, so a ringtone keeps its id across the reloaded lists and no two rows share an id. The fixed
+ * items use the negative ids. The changes are applied as the item level updates instead of
+ * rebinding the whole list:
+ * - Loaded rows are appended with {@link #append(RingtoneEntries)}.
+ * - A reloaded list is applied with {@link #submitEntries(RingtoneEntries, int[], Executor, Runnable)},
+ * which computes the {@link DiffUtil} result of the visible rows on the background.
+ * - The list can be narrowed down to the rows found by the {@link RingtoneSearchIndex} with
+ * {@link #setFilter(int[])}. The old and the new rows are in the same order, so the difference is
+ * found by walking both of them once.
+ * <p>
+ * The fixed items are hidden while the filter is set. The unfiltered position of a row doesn't
+ * change with the filter, so use it to remember the rows.
+ * <p>
+ * If the adapter has a {@link RingtoneMetadataLoader}, rows display the details of the ringtone
+ * below the title. The rows bound in a frame are requested together, with a few rows around
+ * them, and are rebound once their details are loaded.
+ *
+ * @author <a href="https://github.com/kevalpatel2106">kevalpatel2106</a>
+ */
+final class RingtoneListAdapter extends RecyclerView.Adapter<RingtoneListAdapter.RingtoneViewHolder> {
+
+    /**
+     * Payload of the updates which only change the checked state of the row.
+     */
+    private static final Object PAYLOAD_CHECKED = new Object();
+
+    /**
+     * Payload of the updates which only change the details of the row.
+     */
+    private static final Object PAYLOAD_METADATA = new Object();
+
+    /**
+     * Number of the rows before and after the bound rows to load the details of, so the details
+     * are ready when the list is scrolled a little.
+     */
+    private static final int METADATA_PREFETCH_ROWS = 20;
+
+    /**
+     * Names of the trace sections.
+     */
+    private static final String TRACE_DIFF = "RingtonePicker.diffEntries";
+    private static final String TRACE_APPLY_DIFF = "RingtonePicker.applyEntries";
+
+    @NonNull
+    private final OnRingtoneClickListener mClickListener;
+
+    @NonNull
+    private final Handler mMainHandler = new Handler(Looper.getMainLooper());
+
+    /**
+     * {@link RingtoneMetadataLoader} to load the details of the rows or null to display only the
+     * titles.
+     */
+    @Nullable
+    private final RingtoneMetadataLoader mMetadataLoader;
+
+    /**
+     * Requests the details of the rows bound since the last frame.
+     */
+    @NonNull
+    private final Runnable mMetadataRequest = new Runnable() {
+        @Override
+        public void run() {
+            requestMetadata();
+        }
+    };
+
+    /**
+     * Titles of the items displayed before the loaded ringtones.
+     */
+    @NonNull
+    private final ArrayList<String> mTopTitles = new ArrayList<>();
+
+    /**
+     * {@link Uri}s of the items displayed before the loaded ringtones.
+     */
+    @NonNull
+    private final ArrayList<Uri> mTopUris = new ArrayList<>();
+
+    /**
+     * Loaded ringtones.
+     */
+    @NonNull
+    private RingtoneEntries mEntries = new RingtoneEntries();
+
+    /**
+     * Item ids of the rows in {@link #mEntries}. It may be longer than the list.
+     */
+    @NonNull
+    private long[] mItemIds = new long[0];
+
+    /**
+     * Item id of every ringtone seen by the adapter, keyed by its base uri and row id. The ids of
+     * a submitted list are assigned on the executor, so access it only while holding its lock.
+     */
+    @NonNull
+    private final RingtoneEntries.RowSet mItemIdsByRow = new RingtoneEntries.RowSet();
+
+    /**
+     * Item id for the next new ringtone. Guarded by the {@link #mItemIdsByRow}.
+     */
+    private int mNextItemId = 0;
+
+    /**
+     * Sorted positions of the visible rows in {@link #mEntries} or null to display all the rows.
+     */
+    @Nullable
+    private int[] mFilter;
+
+    /**
+     * Unfiltered position of the checked row or -1.
+     */
+    private int mCheckedPosition = -1;
+
+    /**
+     * Incremented on every {@link #submitEntries(RingtoneEntries, int[], Executor, Runnable)}, so only
+     * the latest difference is applied.
+     */
+    private int mSubmitCount = 0;
+
+    /**
+     * First and last position of the rows bound without their details since the last request.
+     */
+    private int mFirstBoundPosition = Integer.MAX_VALUE;
+    private int mLastBoundPosition = -1;
+
+    /**
+     * Create the adapter. The adapter doesn't hold any {@link Context}, so it can outlive the
+     * dialog view. Rows are inflated with the {@link Context} of the {@link RecyclerView}.
+     *
+     * @param clickListener  {@link OnRingtoneClickListener} to get notified when a row is clicked.
+     * @param metadataLoader {@link RingtoneMetadataLoader} to display the details of the rows or
+     *                       null to display only the titles.
+     */
+    RingtoneListAdapter(@NonNull final OnRingtoneClickListener clickListener,
+                        @Nullable final RingtoneMetadataLoader metadataLoader) {
+        mClickListener = clickListener;
+        mMetadataLoader = metadataLoader;
+        setHasStableIds(true);
+
+        if (metadataLoader != null) {
+            metadataLoader.setListener(new RingtoneMetadataLoader.Listener() {
+                @Override
+                public void onMetadataLoaded() {
+                    //Only the rows on the screen are rebound.
+                    if (getItemCount() > 0) notifyItemRangeChanged(0, getItemCount(), PAYLOAD_METADATA);
+                }
+            });
+        }
+    }
+
+    /**
+     * Add the item which is displayed before all the loaded ringtones.
+     *
+     * @param title title of the item.
+     * @param uri   {@link Uri} of the item.
+     */
+    void addTopItem(@NonNull final String title, @Nullable final Uri uri) {
+        mTopTitles.add(title);
+        mTopUris.add(uri);
+        if (mFilter == null) notifyItemInserted(mTopTitles.size() - 1);
+    }
+
+    /**
+     * Add the loaded ringtones at the end of the list.
+     *
+     * @param entries {@link RingtoneEntries} to add.
+     */
+    void append(@NonNull final RingtoneEntries entries) {
+        final int start = getUnfilteredCount();
+        final int oldSize = mEntries.size();
+        mEntries.addAll(entries);
+        if (mItemIds.length < mEntries.size()) {
+            mItemIds = Arrays.copyOf(mItemIds, Math.max(mEntries.size(), mItemIds.length + (mItemIds.length >> 1)));
+        }
+        assignItemIds(mEntries, oldSize, mItemIds);
+        if (mFilter == null) notifyItemRangeInserted(start, entries.size());
+    }
+
+    /**
+     * Replace the loaded ringtones and the filter. The difference between the visible rows of the
+     * lists is computed on the executor and dispatched on the main thread as the item level
+     * updates, so the rows hidden by the filter are never displayed in between. The checked row
+     * stays checked if it is in the new list.
+     * <p>
+     * If the filter is changed while the difference is computed, the difference no longer matches
+     * the displayed rows and the whole list is rebound instead.
+     * <p>
+     * Do not {@link #append(RingtoneEntries)} the rows until the new list is applied.
+     *
+     * @param entries  New {@link RingtoneEntries} to display, with the index built. Do not modify
+     *                 it later.
+     * @param filter   Sorted positions of the rows to display in the new list, such as the current
+     *                 search in the {@link RingtoneSearchIndex} of the new list, or null to display
+     *                 all the rows.
+     * @param executor {@link Executor} to compute the difference on.
+     * @param callback {@link Runnable} to run on the main thread after the new list is applied.
+     */
+    void submitEntries(@NonNull final RingtoneEntries entries,
+                       @Nullable final int[] filter,
+                       @NonNull final Executor executor,
+                       @Nullable final Runnable callback) {
+        final int submitCount = ++mSubmitCount;
+        final RingtoneEntries oldEntries = mEntries;
+        final int[] oldFilter = mFilter;
+        final int oldSize = oldEntries.size();
+        final int topCount = mTopTitles.size();
+
+        executor.execute(new Runnable() {
+            @Override
+            public void run() {
+                final DiffUtil.DiffResult result;
+                Trace.beginSection(TRACE_DIFF);
+                try {
+                    result = DiffUtil.calculateDiff(new EntriesDiffCallback(oldEntries,
+                            oldFilter,
+                            entries,
+                            filter,
+                            topCount), false);
+                } finally {
+                    Trace.endSection();
+                }
+                final long[] itemIds = assignItemIds(entries, 0, new long[entries.size()]);
+
+                mMainHandler.post(new Runnable() {
+                    @Override
+                    public void run() {
+                        //Newer list is submitted or rows are appended meanwhile.
+                        if (submitCount != mSubmitCount || oldEntries != mEntries
+                                || oldSize != mEntries.size()) {
+                            return;
+                        }
+
+                        Trace.beginSection(TRACE_APPLY_DIFF);
+                        try {
+                            //Move the check to the same ringtone in the new list.
+                            if (mCheckedPosition >= topCount) {
+                                final String checkedUri = oldEntries.getUriString(mCheckedPosition - topCount);
+                                final int row = entries.indexOf(checkedUri);
+                                mCheckedPosition = row == -1 ? -1 : topCount + row;
+                            }
+
+                            final boolean isFilterChanged = mFilter != oldFilter;
+                            mEntries = entries;
+                            mItemIds = itemIds;
+                            mFilter = filter;
+                            if (isFilterChanged) {
+                                notifyDataSetChanged();
+                            } else {
+                                result.dispatchUpdatesTo(RingtoneListAdapter.this);
+                            }
+                            if (callback != null) callback.run();
+                        } finally {
+                            Trace.endSection();
+                        }
+                    }
+                });
+            }
+        });
+    }
+
+    /**
+     * Display only the given rows of the loaded ringtones.
+     *
+     * @param entryRows sorted positions of the rows in the loaded ringtones, as returned by
+     *                  {@link RingtoneSearchIndex#search(String)}, or null to display all the rows.
+     */
+    void setFilter(@Nullable final int[] entryRows) {
+        final int[] oldFilter = mFilter;
+        if (oldFilter == null && entryRows == null) return;
+
+        final int oldCount = getCount();
+        mFilter = entryRows;
+        final int newCount = getCount();
+
+        //Both lists are sorted by the unfiltered position. Walk them together and dispatch each
+        //run of the removed or the inserted rows as a single update.
+        int oldIndex = 0;
+        int newIndex = 0;
+        int position = 0;
+        while (oldIndex < oldCount || newIndex < newCount) {
+            final int oldRow = oldIndex < oldCount ? toUnfiltered(oldFilter, oldIndex) : Integer.MAX_VALUE;
+            final int newRow = newIndex < newCount ? toUnfiltered(entryRows, newIndex) : Integer.MAX_VALUE;
+
+            if (oldRow == newRow) {
+                oldIndex++;
+                newIndex++;
+                position++;
+            } else if (oldRow < newRow) {
+                final int start = oldIndex;
+                while (oldIndex < oldCount && toUnfiltered(oldFilter, oldIndex) < newRow) oldIndex++;
+                notifyItemRangeRemoved(position, oldIndex - start);
+            } else {
+                final int start = newIndex;
+                while (newIndex < newCount && toUnfiltered(entryRows, newIndex) < oldRow) newIndex++;
+                notifyItemRangeInserted(position, newIndex - start);
+                position += newIndex - start;
+            }
+        }
+    }
+
+    /**
+     * Check the row and uncheck the previously checked row.
+     *
+     * @param unfilteredPosition unfiltered position of the row or -1 to uncheck all the rows.
+     */
+    void setCheckedPosition(final int unfilteredPosition) {
+        if (unfilteredPosition == mCheckedPosition) return;
+
+        final int oldPosition = getPosition(mCheckedPosition);
+        mCheckedPosition = unfilteredPosition;
+
+        if (oldPosition != -1) notifyItemChanged(oldPosition, PAYLOAD_CHECKED);
+        final int newPosition = getPosition(unfilteredPosition);
+        if (newPosition != -1) notifyItemChanged(newPosition, PAYLOAD_CHECKED);
+    }
+
+    /**
+     * @return Unfiltered position of the checked row or -1.
+     */
+    int getCheckedPosition() {
+        return mCheckedPosition;
+    }
+
+    /**
+     * Get the title of the row.
+     *
+     * @param position position of the row.
+     * @return title of the ringtone.
+     */
+    @NonNull
+    String getItem(final int position) {
+        final int unfilteredPosition = getUnfilteredPosition(position);
+        if (unfilteredPosition < mTopTitles.size()) return mTopTitles.get(unfilteredPosition);
+        return mEntries.getTitle(unfilteredPosition - mTopTitles.size());
+    }
+
+    /**
+     * Get the {@link Uri} of the row.
+     *
+     * @param position position of the row.
+     * @return {@link Uri} of the ringtone.
+     */
+    @Nullable
+    Uri getUri(final int position) {
+        final int unfilteredPosition = getUnfilteredPosition(position);
+        if (unfilteredPosition < mTopUris.size()) return mTopUris.get(unfilteredPosition);
+        return Uri.parse(mEntries.getUriString(unfilteredPosition - mTopUris.size()));
+    }
+
+    /**
+     * @return Loaded ringtones displayed after the fixed items. Do not modify the returned list.
+     */
+    @NonNull
+    RingtoneEntries getEntries() {
+        return mEntries;
+    }
+
+    /**
+     * @param position position of the row in the list.
+     * @return Position of the row when there is no filter.
+     */
+    int getUnfilteredPosition(final int position) {
+        return toUnfiltered(mFilter, position);
+    }
+
+    /**
+     * @param unfilteredPosition position of the row when there is no filter.
+     * @return Position of the row in the list or -1 if the row is hidden by the filter.
+     */
+    int getPosition(final int unfilteredPosition) {
+        if (mFilter == null || unfilteredPosition < 0) return unfilteredPosition;
+        if (unfilteredPosition < mTopTitles.size()) return -1;
+
+        final int index = Arrays.binarySearch(mFilter, unfilteredPosition - mTopTitles.size());
+        return index >= 0 ? index : -1;
+    }
+
+    /**
+     * @return Number of the rows when there is no filter.
+     */
+    int getUnfilteredCount() {
+        return mTopTitles.size() + mEntries.size();
+    }
+
+    /**
+     * @return Number of the visible rows.
+     */
+    int getCount() {
+        return mFilter == null ? getUnfilteredCount() : mFilter.length;
+    }
+
+    /**
+     * Find the position of the {@link Uri} in the fixed items.
+     *
+     * @param uri {@link Uri} to look for.
+     * @return position of the item or -1 if not found.
+     */
+    int indexOfTopItem(@NonNull final Uri uri) {
+        return mTopUris.indexOf(uri);
+    }
+
+    /**
+     * @return Number of the fixed items displayed before the loaded ringtones.
+     */
+    int getTopItemCount() {
+        return mTopTitles.size();
+    }
+
+    @Override
+    public int getItemCount() {
+        return getCount();
+    }
+
+    @Override
+    public long getItemId(final int position) {
+        final int unfilteredPosition = getUnfilteredPosition(position);
+
+        //Fixed items use the negative ids. -1 is RecyclerView.NO_ID.
+        if (unfilteredPosition < mTopTitles.size()) return -2 - unfilteredPosition;
+        return mItemIds[unfilteredPosition - mTopTitles.size()];
+    }
+
+    /**
+     * Look up the item ids of the rows, giving the next id to the ringtones not seen before.
+     *
+     * @param entries {@link RingtoneEntries} of the rows.
+     * @param from    position of the first row to look up.
+     * @param itemIds array to store the ids in, at the positions of the rows.
+     * @return The itemIds.
+     */
+    @NonNull
+    private long[] assignItemIds(@NonNull final RingtoneEntries entries,
+                                 final int from,
+                                 @NonNull final long[] itemIds) {
+        synchronized (mItemIdsByRow) {
+            for (int i = from; i < entries.size(); i++) {
+                final String baseUri = entries.getBaseUri(entries.getBaseIndex(i));
+                final int itemId = mItemIdsByRow.addIfAbsent(baseUri, entries.getId(i), mNextItemId);
+                itemIds[i] = itemId == -1 ? mNextItemId++ : itemId;
+            }
+        }
+        return itemIds;
+    }
+
+    @NonNull
+    @Override
+    public RingtoneViewHolder onCreateViewHolder(@NonNull final ViewGroup parent, final int viewType) {
+        final Context context = parent.getContext();
+        final View view = LayoutInflater.from(context).inflate(mMetadataLoader == null
+                ? android.R.layout.select_dialog_singlechoice
+                : R.layout.layout_ringtone_row, parent, false);
+
+        //Display the touch feedback of the theme.
+        final TypedValue background = new TypedValue();
+        if (context.getTheme().resolveAttribute(android.R.attr.selectableItemBackground, background, true)
+                && background.resourceId != 0) {
+            view.setBackgroundResource(background.resourceId);
+        }
+        return new RingtoneViewHolder(view);
+    }
+
+    @Override
+    public void onBindViewHolder(@NonNull final RingtoneViewHolder holder, final int position) {
+        holder.mTitle.setText(getItem(position));
+        holder.setChecked(getUnfilteredPosition(position) == mCheckedPosition);
+        bindMetadata(holder, position);
+    }
+
+    @Override
+    public void onBindViewHolder(@NonNull final RingtoneViewHolder holder,
+                                 final int position,
+                                 @NonNull final List<Object> payloads) {
+        if (payloads.isEmpty()) {
+            onBindViewHolder(holder, position);
+            return;
+        }
+
+        for (Object payload : payloads) {
+            if (payload == PAYLOAD_CHECKED) {
+                holder.setChecked(getUnfilteredPosition(position) == mCheckedPosition);
+            } else if (payload == PAYLOAD_METADATA) {
+                bindMetadata(holder, position);
+            }
+        }
+    }
+
+    /**
+     * Display the details of the row. If they are not loaded yet, the line is left empty, so the
+     * row doesn't change its height, and the row is requested from the {@link #mMetadataLoader}.
+     */
+    private void bindMetadata(@NonNull final RingtoneViewHolder holder, final int position) {
+        if (mMetadataLoader == null || holder.mDetails == null) return;
+
+        final int entryRow = getUnfilteredPosition(position) - mTopTitles.size();
+        if (entryRow < 0 || !mMetadataLoader.hasMetadata(mEntries, entryRow)) {
+            holder.mDetails.setVisibility(View.GONE);
+            return;
+        }
+
+        holder.mDetails.setVisibility(View.VISIBLE);
+        final RingtoneMetadata metadata = mMetadataLoader.get(mEntries.getUriString(entryRow));
+        if (metadata != null) {
+            holder.mDetails.setText(metadata.format(holder.mDetails.getContext()));
+            return;
+        }
+
+        holder.mDetails.setText(null);
+        mFirstBoundPosition = Math.min(mFirstBoundPosition, position);
+        mLastBoundPosition = Math.max(mLastBoundPosition, position);
+
+        //Rows of a frame are bound one after another. Request them together after the frame.
+        mMainHandler.removeCallbacks(mMetadataRequest);
+        mMainHandler.post(mMetadataRequest);
+    }
+
+    /**
+     * Request the details of the rows bound since the last request and the rows around them.
+     */
+    private void requestMetadata() {
+        final int from = Math.max(0, mFirstBoundPosition - METADATA_PREFETCH_ROWS);
+        final int to = Math.min(getCount(), mLastBoundPosition + 1 + METADATA_PREFETCH_ROWS);
+        mFirstBoundPosition = Integer.MAX_VALUE;
+        mLastBoundPosition = -1;
+        if (mMetadataLoader == null || from >= to) return;
+
+        final int[] entryRows = new int[to - from];
+        int count = 0;
+        for (int position = from; position < to; position++) {
+            final int entryRow = getUnfilteredPosition(position) - mTopTitles.size();
+            if (entryRow >= 0) entryRows[count++] = entryRow;
+        }
+        mMetadataLoader.request(mEntries, entryRows, count);
+    }
+
+    private int toUnfiltered(@Nullable final int[] filter, final int position) {
+        return filter == null ? position : mTopTitles.size() + filter[position];
+    }
+
+    /**
+     * {@link RecyclerView.ViewHolder} of a single ringtone row.
+     */
+    final class RingtoneViewHolder extends RecyclerView.ViewHolder {
+
+        @NonNull
+        private final TextView mTitle;
+
+        /**
+         * View which displays the checked state. Same as the {@link #mTitle} if the row has no
+         * details.
+         */
+        @NonNull
+        private final View mCheck;
+
+        /**
+         * Details below the title or null if the row has no details.
+         */
+        @Nullable
+        private final TextView mDetails;
+
+        private RingtoneViewHolder(@NonNull final View itemView) {
+            super(itemView);
+            if (itemView instanceof TextView) {
+                mTitle = (TextView) itemView;
+                mCheck = itemView;
+                mDetails = null;
+            } else {
+                mTitle = itemView.findViewById(R.id.ringtone_title);
+                mCheck = itemView.findViewById(R.id.ringtone_check);
+                mDetails = itemView.findViewById(R.id.ringtone_details);
+            }
+            itemView.setOnClickListener(new View.OnClickListener() {
+                @Override
+                public void onClick(View view) {
+                    final int position = getAdapterPosition();
+                    if (position != RecyclerView.NO_POSITION) mClickListener.onRingtoneClick(position);
+                }
+            });
+        }
+
+        private void setChecked(final boolean isChecked) {
+            if (mCheck instanceof Checkable) ((Checkable) mCheck).setChecked(isChecked);
+        }
+    }
+
+    /**
+     * Compares the rows of two {@link RingtoneEntries} by their uris and titles. The fixed
+     * items are the same in both lists.
+     */
+    private static final class EntriesDiffCallback extends DiffUtil.Callback {
+
+        @NonNull
+        private final RingtoneEntries mOldEntries;
+
+        @Nullable
+        private final int[] mOldFilter;
+
+        @NonNull
+        private final RingtoneEntries mNewEntries;
+
+        @Nullable
+        private final int[] mNewFilter;
+
+        private final int mTopCount;
+
+        private EntriesDiffCallback(@NonNull final RingtoneEntries oldEntries,
+                                    @Nullable final int[] oldFilter,
+                                    @NonNull final RingtoneEntries newEntries,
+                                    @Nullable final int[] newFilter,
+                                    final int topCount) {
+            mOldEntries = oldEntries;
+            mOldFilter = oldFilter;
+            mNewEntries = newEntries;
+            mNewFilter = newFilter;
+            mTopCount = topCount;
+        }
+
+        @Override
+        public int getOldListSize() {
+            return mOldFilter == null ? mTopCount + mOldEntries.size() : mOldFilter.length;
+        }
+
+        @Override
+        public int getNewListSize() {
+            return mNewFilter == null ? mTopCount + mNewEntries.size() : mNewFilter.length;
+        }
+
+        @Override
+        public boolean areItemsTheSame(final int oldItemPosition, final int newItemPosition) {
+            final int oldRow = toUnfiltered(mOldFilter, oldItemPosition);
+            final int newRow = toUnfiltered(mNewFilter, newItemPosition);
+            if (oldRow < mTopCount || newRow < mTopCount) return oldRow == newRow;
+            return mOldEntries.isSameRow(oldRow - mTopCount, mNewEntries, newRow - mTopCount);
+        }
+
+        @Override
+        public boolean areContentsTheSame(final int oldItemPosition, final int newItemPosition) {
+            final int oldRow = toUnfiltered(mOldFilter, oldItemPosition);
+            if (oldRow < mTopCount) return true;
+            return mOldEntries.getTitle(oldRow - mTopCount)
+                    .equals(mNewEntries.getTitle(toUnfiltered(mNewFilter, newItemPosition) - mTopCount));
+        }
+
+        private int toUnfiltered(@Nullable final int[] filter, final int position) {
+            return filter == null ? position : mTopCount + filter[position];
+        }
+    }
+
+    /**
+     * Listener to get notified when a row is clicked.
+     */
+    interface OnRingtoneClickListener {
+
+        /**
+         * Called when the row is clicked.
+         *
+         * @param position position of the row in the list.
+         */
+        void onRingtoneClick(final int position);
+    }
+}
@@ -16,72 +16,1135 @@ package com.kevalpatel.ringtonepicker;
 import android.annotation.SuppressLint;
 import android.content.Context;
 import android.net.Uri;
-import android.os.AsyncTask;
+import android.os.Handler;
+import android.os.Looper;
+import android.os.Process;
+
 import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+import androidx.core.os.CancellationSignal;
+import androidx.core.os.OperationCanceledException;
+import androidx.tracing.Trace;
 
 import java.util.ArrayList;
-import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /**
  * Created by Kevalpatel2106 on 30-Mar-18.
+ * Loads the list of ringtones on the background. Every requested {@link RingtoneSource} is loaded
+ * as a separate task on the {@link Executor}, and the results are merged in the order of the
+ * sources before they are delivered on the main thread. The {@link RingtoneTypes} are loaded by
+ * the {@link RingtoneTypeSource}s.
+ * <p>
+ * The {@link CacheableRingtoneSource}s, including the {@link RingtoneTypeSource}s, are read from
+ * and kept in the {@link RingtoneCatalogCache}, and a source which is already being loaded by the
+ * other task is not loaded again. The other sources are loaded every time.
+ * <p>
+ * In the progressive mode, the {@link RingtonePickerDialog.Builder#TYPE_MUSIC} rows and the rows
+ * of the custom sources are delivered in chunks while they are still being read. Chunks are still
+ * delivered in the order of the sources, so the rows of a source are held back until all the
+ * sources before it are delivered.
+ * <p>
+ * A ringtone which belongs to more than one source is delivered only once, with the first source.
+ * So every delivered row has a unique uri. If the list is
+ * delivered at once, the delivered row also has the type flags of all the sources listing it. In
+ * the progressive mode, it keeps the flags of the first source.
+ * <p>
+ * The {@link RingtoneSectionIndex} of every chunk is built on the background along with the
+ * chunk, so the fast scroller never walks the titles on the main thread.
+ * <p>
+ * If requested, the {@link RingtoneSearchIndex} of the whole list is built on the background once
+ * all the sources are loaded, and delivered along with the completion.
+ * <p>
+ * If there is a {@link RingtonePickerMetricsListener}, the load of every source is timed and reported
+ * on the main thread. Nothing is timed without the listener.
+ * <p>
+ * If all the sources are already cached, for example by
+ * {@link #preload(Context, List)}, the rows are merged on the calling thread and posted to the
+ * main thread right away, without waiting for a free thread of the {@link Executor}. Like the
+ * other results, they are never delivered before {@link #execute(List, Uri)} returns.
  *
  * @author <a href="https://github.com/kevalpatel2106">kevalpatel2106</a>
  */
-class RingtoneLoaderTask extends AsyncTask<ArrayList<Integer>, Void, HashMap<String, Uri>> {
+final class RingtoneLoaderTask {
+
+    /**
+     * Maximum number of the ringtone sources to load at the same time. There are only four
+     * {@link RingtoneTypes}, so this is enough to load all of them concurrently. More custom
+     * {@link RingtoneSource}s wait for a free thread.
+     */
+    private static final int MAX_PARALLEL_LOADS = 4;
+
+    /**
+     * Number of the music or custom source rows to deliver at once in the progressive mode.
+     */
+    private static final int CHUNK_SIZE = 200;
+
+    /**
+     * Maximum number of the cached rows to merge on the calling thread. Larger lists are merged on
+     * the background, so the main thread never walks them.
+     */
+    private static final int MAX_IMMEDIATE_ROWS = 5000;
+
+    /**
+     * How often to check for the cancellation while {@link #loadTypes(List)} waits for the load
+     * of the other task.
+     */
+    private static final long WAIT_POLL_MS = 50;
+
+    /**
+     * Names of the trace sections.
+     */
+    private static final String TRACE_MERGE = "RingtonePicker.merge";
+    private static final String TRACE_SEARCH_INDEX = "RingtonePicker.buildSearchIndex";
+
+    /**
+     * Default {@link Executor} for loading the ringtones.
+     *
+     * @see #getDefaultExecutor()
+     */
+    @Nullable
+    private static Executor sDefaultExecutor;
 
     @NonNull
-    private final LoadCompleteListener mListener;
+    private final LoadListener mListener;
 
     @SuppressLint("StaticFieldLeak")
     @NonNull
     private final Context mApplication;
 
+    @NonNull
+    private final Executor mExecutor;
+
+    /**
+     * True to deliver the rows while they are being loaded.
+     */
+    private final boolean isProgressive;
+
+    /**
+     * True to build the {@link RingtoneSearchIndex} of the loaded ringtones.
+     */
+    private final boolean isSearchable;
+
+    /**
+     * {@link RingtonePickerMetricsListener} to report the load timings to or null.
+     */
+    @Nullable
+    private final RingtonePickerMetricsListener mMetricsListener;
+
+    /**
+     * {@link Handler} to deliver the result on the main thread.
+     */
+    @NonNull
+    private final Handler mMainHandler = new Handler(Looper.getMainLooper());
+
+    /**
+     * {@link CancellationSignal} to abort the running queries when the task gets cancelled.
+     */
+    @NonNull
+    private final CancellationSignal mCancellationSignal = new CancellationSignal();
+
     RingtoneLoaderTask(@NonNull final Context application,
-                       @NonNull final LoadCompleteListener loadCompleteListener) {
-        mListener = loadCompleteListener;
+                       @Nullable final Executor executor,
+                       final boolean progressive,
+                       final boolean searchable,
+                       @Nullable final RingtonePickerMetricsListener metricsListener,
+                       @NonNull final LoadListener loadListener) {
+        mListener = loadListener;
         mApplication = application;
+        mExecutor = executor == null ? getDefaultExecutor() : executor;
+        isProgressive = progressive;
+        isSearchable = searchable;
+        mMetricsListener = metricsListener;
+    }
+
+    /**
+     * @return Shared {@link Executor} to load the ringtones. It runs the queries on the
+     * background priority threads, so they don't compete with the UI thread. Idle threads are
+     * released after some time.
+     */
+    @NonNull
+    static synchronized Executor getDefaultExecutor() {
+        if (sDefaultExecutor == null) {
+            final ThreadPoolExecutor executor = new ThreadPoolExecutor(MAX_PARALLEL_LOADS,
+                    MAX_PARALLEL_LOADS,
+                    30, TimeUnit.SECONDS,
+                    new LinkedBlockingQueue<Runnable>(),
+                    new ThreadFactory() {
+                        private final AtomicInteger mCount = new AtomicInteger(1);
+
+                        @Override
+                        public Thread newThread(@NonNull final Runnable runnable) {
+                            return new Thread(new Runnable() {
+                                @Override
+                                public void run() {
+                                    Process.setThreadPriority(Process.THREAD_PRIORITY_BACKGROUND);
+                                    runnable.run();
+                                }
+                            }, "RingtoneLoader #" + mCount.getAndIncrement());
+                        }
+                    });
+            executor.allowCoreThreadTimeOut(true);
+            sDefaultExecutor = executor;
+        }
+        return sDefaultExecutor;
+    }
+
+    /**
+     * Load the ringtones of the types in to the {@link RingtoneCatalogCache} on the default
+     * {@link Executor}, without delivering them. A task which needs the same types later waits for
+     * these loads instead of querying again. Types which are already being loaded are skipped.
+     * Errors, such as the missing storage permission, are ignored. The task which needs the type
+     * gets them when it loads the type.
+     *
+     * @param context instance of the caller.
+     * @param sources {@link RingtoneTypeSource}s of the types to load.
+     */
+    static void preload(@NonNull final Context context, @NonNull final List<RingtoneTypeSource> sources) {
+        final RingtoneLoaderTask task = newHeadlessTask(context);
+        for (final RingtoneTypeSource source : sources) {
+            task.mExecutor.execute(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        task.getRingtones(source, source.getCacheKey(), null, null, null);
+                    } catch (RuntimeException e) {
+                        //Loaded again when the type is needed.
+                    }
+                }
+            });
+        }
+    }
+
+    /**
+     * Create the task which is used without the {@link LoadListener}, such as by
+     * {@link #loadTypes(List)} and {@link #loadTypes(List, TypesCallback)}.
+     *
+     * @param context instance of the caller.
+     * @return {@link RingtoneLoaderTask} on the default {@link Executor}.
+     */
+    @NonNull
+    static RingtoneLoaderTask newHeadlessTask(@NonNull final Context context) {
+        return new RingtoneLoaderTask(context.getApplicationContext(),
+                null,
+                false,
+                false,
+                null,
+                new LoadListener() {
+                    @Override
+                    public void onLoadProgress(@NonNull RingtoneEntries ringtone,
+                                               @NonNull RingtoneSectionIndex sections) {
+                        //Do nothing.
+                    }
+
+                    @Override
+                    public void onLoadComplete(@Nullable RingtoneSearchIndex searchIndex) {
+                        //Do nothing.
+                    }
+
+                    @Override
+                    public void onCurrentRingtoneLoaded(@NonNull Uri uri, @Nullable String title) {
+                        //Do nothing.
+                    }
+                });
+    }
+
+    /**
+     * Load the ringtones of the types on the calling thread, one type after another, and merge
+     * them in the order of the types. The types go through the same cache, snapshot and running
+     * loads as {@link #execute(List, Uri)}. If a type is being loaded by the other task, the
+     * calling thread waits for it. The listener is not notified.
+     *
+     * @param sources {@link RingtoneTypeSource}s of the types to load.
+     * @return New {@link RingtoneEntries} of the unique ringtones of all the types.
+     * @throws OperationCanceledException if the task is cancelled while loading.
+     * @throws IllegalStateException      if the music is requested without the storage permission.
+     */
+    @NonNull
+    RingtoneEntries loadTypes(@NonNull final List<RingtoneTypeSource> sources) {
+        final RingtoneEntries[] results = new RingtoneEntries[sources.size()];
+        for (int i = 0; i < results.length; i++) {
+            RingtoneEntries tones;
+            do {
+                final CountDownLatch loadEnded = new CountDownLatch(1);
+                tones = getRingtones(sources.get(i), sources.get(i).getCacheKey(), null, null, new Runnable() {
+                    @Override
+                    public void run() {
+                        loadEnded.countDown();
+                    }
+                });
+                if (tones == null) awaitLoad(loadEnded);
+            } while (tones == null);
+            results[i] = tones;
+        }
+        return mergeTypes(results);
+    }
+
+    /**
+     * Load the ringtones of the types on the {@link Executor}, each type as a separate task same as
+     * {@link #execute(List, Uri)}, and merge them in the order of the types, same as
+     * {@link #loadTypes(List)}. If a type is being loaded by the other task, that type continues
+     * once the other load ends, without holding a thread meanwhile.
+     *
+     * @param sources  {@link RingtoneTypeSource}s of the types to load.
+     * @param callback {@link TypesCallback} to get the result on the background thread.
+     */
+    void loadTypes(@NonNull final List<RingtoneTypeSource> sources, @NonNull final TypesCallback callback) {
+        final TypesJoin join = new TypesJoin(sources.size(), callback);
+
+        //Nothing to wait for.
+        if (sources.isEmpty()) {
+            mExecutor.execute(new Runnable() {
+                @Override
+                public void run() {
+                    join.complete();
+                }
+            });
+            return;
+        }
+
+        for (int i = 0; i < sources.size(); i++) {
+            final int index = i;
+            final RingtoneTypeSource source = sources.get(i);
+
+            mExecutor.execute(new Runnable() {
+                @Override
+                public void run() {
+                    final RingtoneEntries ringtones;
+                    try {
+                        mCancellationSignal.throwIfCanceled();
+                        ringtones = getRingtones(source,
+                                source.getCacheKey(),
+                                null,
+                                null,
+                                continueOnExecutor(this));
+                    } catch (RuntimeException e) {
+                        join.onTypeFailed(e);
+                        return;
+                    }
+
+                    //Type is being loaded by the other task. This runs again once that load ends.
+                    if (ringtones == null) return;
+                    if (join.onTypeLoaded(index, ringtones)) join.complete();
+                }
+            });
+        }
+    }
+
+    /**
+     * Merge the ringtones of the types in to a single indexed list.
+     */
+    @NonNull
+    private static RingtoneEntries mergeTypes(@NonNull final RingtoneEntries[] results) {
+        final RingtoneEntries ringtones;
+        Trace.beginSection(TRACE_MERGE);
+        try {
+            ringtones = RingtoneEntries.merge(results);
+            ringtones.buildIndex();
+        } finally {
+            Trace.endSection();
+        }
+        return ringtones;
+    }
+
+    /**
+     * Start loading the ringtones of the given sources. The listener will be notified on the main
+     * thread as the sources are loaded, unless the task is cancelled before that. The listener is
+     * never notified before this method returns, even if all the sources are cached. Call it on
+     * the main thread.
+     *
+     * @param sources    List of {@link RingtoneSource}s to load, in the order to display them.
+     * @param currentUri {@link Uri} of the pre selected ringtone to resolve the title of or null.
+     */
+    void execute(@NonNull final List<RingtoneSource> sources, @Nullable final Uri currentUri) {
+        if (currentUri != null && currentUri != Uri.EMPTY) loadCurrentRingtone(currentUri);
+
+        //Nothing to wait for.
+        if (sources.isEmpty()) {
+            deliverComplete(isSearchable ? RingtoneSearchIndex.build(new RingtoneEntries()) : null);
+            return;
+        }
+        final String[] cacheKeys = new String[sources.size()];
+        for (int i = 0; i < cacheKeys.length; i++) {
+            if (sources.get(i) instanceof CacheableRingtoneSource) {
+                cacheKeys[i] = ((CacheableRingtoneSource) sources.get(i)).getCacheKey();
+            }
+        }
+        if (deliverCached(sources, cacheKeys)) return;
+
+        final ResultMerger merger = new ResultMerger(sources.size());
+
+        for (int i = 0; i < sources.size(); i++) {
+            final int index = i;
+            final RingtoneSource source = sources.get(i);
+            final String cacheKey = cacheKeys[i];
+
+            mExecutor.execute(new Runnable() {
+
+                /**
+                 * Timings of the source, kept while waiting for the other task to load the source.
+                 */
+                @Nullable
+                private TypeMetrics mMetrics;
+
+                @Override
+                public void run() {
+                    if (isCancelled()) return;
+
+                    final RingtoneUtils.ChunkListener chunkListener = isProgressive
+                            ? new RingtoneUtils.ChunkListener() {
+                        @Override
+                        public void onChunkLoaded(@NonNull RingtoneEntries chunk) {
+                            merger.onChunkLoaded(index, chunk);
+                        }
+                    } : null;
+
+                    try {
+                        if (mMetrics == null && mMetricsListener != null) mMetrics = new TypeMetrics();
+                        final RingtoneEntries ringtones;
+                        if (cacheKey != null) {
+                            ringtones = getRingtones(source,
+                                    cacheKey,
+                                    chunkListener,
+                                    mMetrics,
+                                    continueOnExecutor(this));
+
+                            //Source is being loaded by the other task. This runs again once that load ends.
+                            if (ringtones == null) return;
+                        } else {
+                            ringtones = loadSource(source, chunkListener, mMetrics);
+                        }
+                        if (mMetrics != null) reportTypeLoaded(source, ringtones.size(), mMetrics);
+
+                        if (merger.onTypeLoaded(index, ringtones)) {
+                            //Last source is loaded. Index the whole list on this thread.
+                            deliverComplete(isSearchable && !isCancelled()
+                                    ? buildSearchIndex(merger.getDelivered())
+                                    : null);
+                        }
+                    } catch (OperationCanceledException e) {
+                        //Task is cancelled. Nobody is waiting for the result.
+                    } catch (final RuntimeException e) {
+                        //Throw on the main thread, same as if the list was loaded there.
+                        mCancellationSignal.cancel();
+                        mMainHandler.post(new Runnable() {
+                            @Override
+                            public void run() {
+                                throw e;
+                            }
+                        });
+                    }
+                }
+            });
+        }
+    }
+
+    /**
+     * Post the ringtones to the main thread right away if all the sources are cached and there are
+     * not too many rows to merge on the calling thread. The metrics are posted before the
+     * ringtones. The search index is still built on the background.
+     *
+     * @param sources   List of {@link RingtoneSource}s to load.
+     * @param cacheKeys cache keys of the sources. Null for the sources which are not cached.
+     * @return True if the ringtones are posted.
+     */
+    private boolean deliverCached(@NonNull final List<RingtoneSource> sources,
+                                  @NonNull final String[] cacheKeys) {
+        final RingtoneCatalogCache cache = RingtoneCatalogCache.getInstance(mApplication);
+        final RingtoneEntries[] cached = new RingtoneEntries[sources.size()];
+        int size = 0;
+        for (int i = 0; i < sources.size(); i++) {
+            if (cacheKeys[i] == null) return false;
+
+            cached[i] = cache.get(cacheKeys[i]);
+            if (cached[i] == null) return false;
+
+            size += cached[i].size();
+            if (size > MAX_IMMEDIATE_ROWS) return false;
+        }
+
+        if (mMetricsListener != null) {
+            for (int i = 0; i < sources.size(); i++) {
+                reportTypeLoaded(sources.get(i), cached[i].size(), new TypeMetrics());
+            }
+        }
+
+        final RingtoneEntries ringtones;
+        Trace.beginSection(TRACE_MERGE);
+        try {
+            ringtones = RingtoneEntries.merge(cached);
+            ringtones.buildIndex();
+        } finally {
+            Trace.endSection();
+        }
+        final RingtoneSectionIndex sections = RingtoneSectionIndex.build(ringtones, Locale.getDefault());
+        mMainHandler.post(new Runnable() {
+            @Override
+            public void run() {
+                if (!isCancelled()) mListener.onLoadProgress(ringtones, sections);
+            }
+        });
+
+        if (isSearchable) {
+            mExecutor.execute(new Runnable() {
+                @Override
+                public void run() {
+                    if (!isCancelled()) deliverComplete(buildSearchIndex(ringtones));
+                }
+            });
+        } else {
+            deliverComplete(null);
+        }
+        return true;
+    }
+
+    /**
+     * Resolve the title of the pre selected ringtone as a separate task, so that it doesn't wait
+     * for the list to load.
+     *
+     * @param uri {@link Uri} of the pre selected ringtone.
+     */
+    private void loadCurrentRingtone(@NonNull final Uri uri) {
+        mExecutor.execute(new Runnable() {
+            @Override
+            public void run() {
+                if (isCancelled()) return;
+
+                String title;
+                try {
+                    title = RingtoneUtils.getRingtoneName(mApplication, uri);
+                } catch (RuntimeException e) {
+                    //Title is not available. Caller will get the title from the list if the user
+                    //selects the ringtone.
+                    title = null;
+                }
+
+                final String resolvedTitle = title;
+                mMainHandler.post(new Runnable() {
+                    @Override
+                    public void run() {
+                        if (!isCancelled()) mListener.onCurrentRingtoneLoaded(uri, resolvedTitle);
+                    }
+                });
+            }
+        });
+    }
+
+    /**
+     * @param task {@link Runnable} to continue.
+     * @return {@link Runnable} which runs the task on the {@link Executor} again.
+     */
+    @NonNull
+    private Runnable continueOnExecutor(@NonNull final Runnable task) {
+        return new Runnable() {
+            @Override
+            public void run() {
+                mExecutor.execute(task);
+            }
+        };
+    }
+
+    /**
+     * Cancel the task. This will abort the queries that are running and the listener won't get
+     * notified.
+     */
+    void cancel() {
+        mCancellationSignal.cancel();
     }
 
-    @Override
-    protected void onPreExecute() {
-        super.onPreExecute();
+    /**
+     * @return True if the task is cancelled.
+     */
+    boolean isCancelled() {
+        return mCancellationSignal.isCanceled();
     }
 
-    @SafeVarargs
-    @SuppressLint("MissingPermission")
-    @Override
     @NonNull
-    protected final HashMap<String, Uri> doInBackground(ArrayList<Integer>... voids) {
-        HashMap<String, Uri> ringTones = new HashMap<>();
-
-        for (int type : voids[0]) {
-            switch (type) {
-                case RingtonePickerDialog.Builder.TYPE_RINGTONE:
-                    ringTones.putAll(RingtoneUtils.getRingTone(mApplication));
-                    break;
-                case RingtonePickerDialog.Builder.TYPE_ALARM:
-                    ringTones.putAll(RingtoneUtils.getAlarmTones(mApplication));
-                    break;
-                case RingtonePickerDialog.Builder.TYPE_MUSIC:
-                    ringTones.putAll(RingtoneUtils.getMusic(mApplication));
-                    break;
-                case RingtonePickerDialog.Builder.TYPE_NOTIFICATION:
-                    ringTones.putAll(RingtoneUtils.getNotificationTones(mApplication));
-                    break;
-                default:
-                    throw new IllegalArgumentException("Invalid ringtone type.");
-            }
-        }
-        return ringTones;
-    }
-
-    @Override
-    protected void onPostExecute(HashMap<String, Uri> ringtone) {
-        super.onPostExecute(ringtone);
-        mListener.onLoadComplete(ringtone);
-    }
-
-    interface LoadCompleteListener {
-        void onLoadComplete(@NonNull final HashMap<String, Uri> ringtone);
+    private static RingtoneSearchIndex buildSearchIndex(@NonNull final RingtoneEntries ringTones) {
+        Trace.beginSection(TRACE_SEARCH_INDEX);
+        try {
+            return RingtoneSearchIndex.build(ringTones);
+        } finally {
+            Trace.endSection();
+        }
+    }
+
+    private void deliverProgress(@NonNull final RingtoneEntries ringTones) {
+        //Index the rows here, so the main thread can find the selected ringtone without a scan.
+        ringTones.buildIndex();
+        final RingtoneSectionIndex sections = RingtoneSectionIndex.build(ringTones, Locale.getDefault());
+
+        mMainHandler.post(new Runnable() {
+            @Override
+            public void run() {
+                if (!isCancelled()) mListener.onLoadProgress(ringTones, sections);
+            }
+        });
+    }
+
+    private void reportTypeLoaded(@NonNull final RingtoneSource source,
+                                  final int rowCount,
+                                  @NonNull final TypeMetrics metrics) {
+        final int type = source instanceof RingtoneTypeSource
+                ? ((RingtoneTypeSource) source).getType()
+                : RingtonePickerMetricsListener.TYPE_CUSTOM_SOURCE;
+        final long loadNanos = System.nanoTime() - metrics.mStartNanos;
+        mMainHandler.post(new Runnable() {
+            @Override
+            public void run() {
+                if (isCancelled() || mMetricsListener == null) return;
+                mMetricsListener.onRingtoneTypeLoaded(type,
+                        metrics.mSource,
+                        rowCount,
+                        TimeUnit.NANOSECONDS.toMillis(loadNanos),
+                        TimeUnit.NANOSECONDS.toMillis(metrics.mTimings.mQueryNanos),
+                        TimeUnit.NANOSECONDS.toMillis(metrics.mTimings.mWalkNanos));
+            }
+        });
+    }
+
+    private void deliverComplete(@Nullable final RingtoneSearchIndex searchIndex) {
+        mMainHandler.post(new Runnable() {
+            @Override
+            public void run() {
+                if (!isCancelled()) mListener.onLoadComplete(searchIndex);
+            }
+        });
+    }
+
+    /**
+     * Get the ringtones of the {@link CacheableRingtoneSource} from the {@link RingtoneCatalogCache}.
+     * If the source is not cached yet, it is loaded with {@link #loadRingtones(RingtoneSource,
+     * String, RingtoneCatalogCache, RingtoneUtils.ChunkListener, TypeMetrics)} and cached.
+     * <p>
+     * If the source is being loaded by the other task, such as {@link #preload(Context, List)},
+     * this returns right away and the continuation is run once that load ends, instead of loading
+     * the source again. Call this again from the continuation to get the ringtones.
+     *
+     * @param source        {@link RingtoneSource} to load.
+     * @param cacheKey      {@link CacheableRingtoneSource#getCacheKey()} of the source.
+     * @param chunkListener {@link RingtoneUtils.ChunkListener} to get the rows while loading or
+     *                      null. It is not called if the source is cached or loaded by the other task.
+     * @param metrics       {@link TypeMetrics} to record where the rows came from or null.
+     * @param continuation  {@link Runnable} to run when the load of the other task ends or null to
+     *                      not wait for it. It should only schedule the work, see
+     *                      {@link RingtoneCatalogCache#beginLoad(String, Runnable)}.
+     * @return {@link RingtoneEntries} of all the ringtones of the source or null if the source is
+     * being loaded by the other task.
+     * @throws OperationCanceledException if the task is cancelled while loading.
+     */
+    @Nullable
+    private RingtoneEntries getRingtones(@NonNull final RingtoneSource source,
+                                         @NonNull final String cacheKey,
+                                         @Nullable final RingtoneUtils.ChunkListener chunkListener,
+                                         @Nullable final TypeMetrics metrics,
+                                         @Nullable final Runnable continuation) {
+        final RingtoneCatalogCache cache = RingtoneCatalogCache.getInstance(mApplication);
+
+        RingtoneEntries tones = cache.get(cacheKey);
+        if (tones != null) return tones;
+
+        //Continue once the running load of the source ends. If it fails, the source is loaded then.
+        if (!cache.beginLoad(cacheKey, continuation)) return null;
+
+        try {
+            //The running load may have ended just before this task claimed the source.
+            tones = cache.get(cacheKey);
+            return tones != null ? tones : loadRingtones(source, cacheKey, cache, chunkListener, metrics);
+        } finally {
+            cache.endLoad(cacheKey);
+        }
+    }
+
+    /**
+     * Load the ringtones of the source claimed with
+     * {@link RingtoneCatalogCache#beginLoad(String, Runnable)} and cache them. The types are read
+     * with {@link #loadType(RingtoneTypeSource, String, RingtoneCatalogCache,
+     * RingtoneUtils.ChunkListener, TypeMetrics)}, the other sources through their
+     * {@link RingtoneSource.Collector}.
+     *
+     * @param source        {@link RingtoneSource} to load.
+     * @param cacheKey      {@link CacheableRingtoneSource#getCacheKey()} of the source.
+     * @param cache         {@link RingtoneCatalogCache} to cache the ringtones in.
+     * @param chunkListener {@link RingtoneUtils.ChunkListener} to get the rows while loading or null.
+     * @param metrics       {@link TypeMetrics} to record where the rows came from or null.
+     * @return {@link RingtoneEntries} of all the ringtones of the source.
+     * @throws OperationCanceledException if the task is cancelled while loading.
+     */
+    @NonNull
+    private RingtoneEntries loadRingtones(@NonNull final RingtoneSource source,
+                                          @NonNull final String cacheKey,
+                                          @NonNull final RingtoneCatalogCache cache,
+                                          @Nullable final RingtoneUtils.ChunkListener chunkListener,
+                                          @Nullable final TypeMetrics metrics) {
+        if (source instanceof RingtoneTypeSource) {
+            return loadType((RingtoneTypeSource) source, cacheKey, cache, chunkListener, metrics);
+        }
+
+        final int generation = cache.getGeneration(cacheKey);
+        final RingtoneEntries tones = loadSource(source, chunkListener, metrics);
+        tones.buildIndex();
+        cache.put(cacheKey, tones, generation, null);
+        return tones;
+    }
+
+    /**
+     * Load the ringtones of the type from the {@link RingtoneSnapshot} of the type. If there is no
+     * snapshot or the {@link android.provider.MediaStore} changed since the snapshot was written,
+     * it will query the content provider and cache the result in the memory and on the disk.
+     * <p>
+     * If the {@link RingtonePickerDialog.Builder#TYPE_MUSIC} list got stale while the process was
+     * running, only the changed rows are read with {@link MusicDeltaSync}.
+     *
+     * @param source        {@link RingtoneTypeSource} of the type to load.
+     * @param cacheKey      {@link CacheableRingtoneSource#getCacheKey()} of the type.
+     * @param cache         {@link RingtoneCatalogCache} to cache the ringtones in.
+     * @param chunkListener {@link RingtoneUtils.ChunkListener} to get the rows while querying or null.
+     * @param metrics       {@link TypeMetrics} to record where the rows came from or null.
+     * @return {@link RingtoneEntries} of all the ringtone of given type.
+     * @throws OperationCanceledException if the task is cancelled while querying.
+     */
+    @NonNull
+    private RingtoneEntries loadType(@NonNull final RingtoneTypeSource source,
+                                     @NonNull final String cacheKey,
+                                     @NonNull final RingtoneCatalogCache cache,
+                                     @Nullable final RingtoneUtils.ChunkListener chunkListener,
+                                     @Nullable final TypeMetrics metrics) {
+        final int type = source.getType();
+        RingtoneEntries tones = null;
+
+        //Not cached yet. Look for the snapshot written by the earlier process.
+        final int generation = cache.getGeneration(cacheKey);
+        final String stamp = RingtoneSnapshot.getStamp(mApplication, type, cache.getGeneration());
+        final RingtoneSnapshot snapshot = new RingtoneSnapshot(mApplication);
+        if (stamp != null) {
+            tones = snapshot.read(type, stamp);
+        } else if (type == RingtonePickerDialog.Builder.TYPE_MUSIC
+                && !RingtoneUtils.checkForStorageReadPermission(mApplication)) {
+            //Permission is revoked. Don't keep the rows which are no longer readable on the disk.
+            snapshot.delete(type);
+        }
+        if (tones != null && metrics != null) metrics.mSource = RingtonePickerMetricsListener.SOURCE_SNAPSHOT;
+
+        MusicDeltaSync syncMarker = null;
+        if (tones == null) {
+            //Capture the marker before querying, so the changes made while querying are not lost.
+            if (type == RingtonePickerDialog.Builder.TYPE_MUSIC) {
+                syncMarker = MusicDeltaSync.capture(mApplication);
+                tones = syncMusic(cacheKey, cache);
+                if (tones != null && metrics != null) {
+                    metrics.mSource = RingtonePickerMetricsListener.SOURCE_DELTA_SYNC;
+                }
+            }
+
+            //No valid snapshot or stale list. Query the content provider.
+            if (tones == null) {
+                if (metrics != null) metrics.mSource = RingtonePickerMetricsListener.SOURCE_QUERY;
+                tones = source.load(mApplication,
+                        mCancellationSignal,
+                        chunkListener,
+                        CHUNK_SIZE,
+                        metrics == null ? null : metrics.mTimings);
+            }
+            if (stamp != null) snapshot.write(type, tones, stamp);
+        }
+
+        tones.buildIndex();
+        cache.put(cacheKey, tones, generation, syncMarker);
+        return tones;
+    }
+
+    /**
+     * Block the calling thread until the load of the other task ends.
+     *
+     * @param loadEnded {@link CountDownLatch} released when the load ends.
+     * @throws OperationCanceledException if the task is cancelled while waiting.
+     */
+    private void awaitLoad(@NonNull final CountDownLatch loadEnded) {
+        try {
+            while (!loadEnded.await(WAIT_POLL_MS, TimeUnit.MILLISECONDS)) {
+                mCancellationSignal.throwIfCanceled();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new OperationCanceledException();
+        }
+    }
+
+    /**
+     * Patch the stale {@link RingtonePickerDialog.Builder#TYPE_MUSIC} list with the rows changed
+     * since it was loaded.
+     *
+     * @param cacheKey {@link CacheableRingtoneSource#getCacheKey()} of the music type.
+     * @param cache    {@link RingtoneCatalogCache} holding the stale list.
+     * @return Up to date {@link RingtoneEntries} or null if there is no stale list or the changes
+     * cannot be applied.
+     * @throws OperationCanceledException if the task is cancelled while querying.
+     */
+    @Nullable
+    private RingtoneEntries syncMusic(@NonNull final String cacheKey,
+                                      @NonNull final RingtoneCatalogCache cache) {
+        final RingtoneEntries stale = cache.getStale(cacheKey);
+        final MusicDeltaSync lastMarker = cache.getSyncMarker(cacheKey);
+        if (stale == null || lastMarker == null) return null;
+
+        try {
+            return lastMarker.apply(mApplication, stale, mCancellationSignal);
+        } catch (SecurityException | IllegalArgumentException | IllegalStateException e) {
+            //Columns or volumes are not available or the rows cannot be counted. Read the whole list instead.
+            return null;
+        }
+    }
+
+    /**
+     * Load the ringtones of the custom {@link RingtoneSource}.
+     *
+     * @param source        {@link RingtoneSource} to load.
+     * @param chunkListener {@link RingtoneUtils.ChunkListener} to get the rows while loading or null.
+     * @param metrics       {@link TypeMetrics} to record where the rows came from or null.
+     * @return {@link RingtoneEntries} of all the ringtones of the source.
+     * @throws OperationCanceledException if the task is cancelled while loading.
+     */
+    @NonNull
+    private RingtoneEntries loadSource(@NonNull final RingtoneSource source,
+                                       @Nullable final RingtoneUtils.ChunkListener chunkListener,
+                                       @Nullable final TypeMetrics metrics) {
+        if (metrics != null) metrics.mSource = RingtonePickerMetricsListener.SOURCE_CUSTOM;
+
+        final EntriesCollector collector = new EntriesCollector(chunkListener);
+        source.loadRingtones(mApplication, collector);
+        mCancellationSignal.throwIfCanceled();
+        return collector.finish();
+    }
+
+    /**
+     * {@link RingtoneSource.Collector} which adds the rows to {@link RingtoneEntries} and delivers
+     * them in chunks in the progressive mode.
+     */
+    private final class EntriesCollector implements RingtoneSource.Collector {
+
+        @NonNull
+        private final RingtoneEntries mEntries = new RingtoneEntries();
+
+        @Nullable
+        private final RingtoneUtils.ChunkListener mChunkListener;
+
+        /**
+         * Number of the rows delivered to the {@link #mChunkListener}.
+         */
+        private int mDelivered = 0;
+
+        private EntriesCollector(@Nullable final RingtoneUtils.ChunkListener chunkListener) {
+            mChunkListener = chunkListener;
+        }
+
+        @Override
+        public void add(@NonNull final String title, @NonNull final Uri uri) {
+            mCancellationSignal.throwIfCanceled();
+            mEntries.add(title, uri.toString());
+
+            if (mChunkListener != null && mEntries.size() - mDelivered >= CHUNK_SIZE) {
+                mChunkListener.onChunkLoaded(mEntries.copyOfRange(mDelivered, mEntries.size()));
+                mDelivered = mEntries.size();
+            }
+        }
+
+        @Override
+        public boolean isCancelled() {
+            return mCancellationSignal.isCanceled();
+        }
+
+        /**
+         * Deliver the remaining rows.
+         *
+         * @return {@link RingtoneEntries} of all the added rows.
+         */
+        @NonNull
+        private RingtoneEntries finish() {
+            if (mChunkListener != null && mEntries.size() > mDelivered) {
+                mChunkListener.onChunkLoaded(mEntries.copyOfRange(mDelivered, mEntries.size()));
+                mDelivered = mEntries.size();
+            }
+            mEntries.buildIndex();
+            return mEntries;
+        }
+    }
+
+    /**
+     * Timings of loading a single type, for the {@link RingtonePickerMetricsListener}.
+     */
+    private static final class TypeMetrics {
+
+        private final long mStartNanos = System.nanoTime();
+
+        @NonNull
+        private final RingtoneUtils.QueryTimings mTimings = new RingtoneUtils.QueryTimings();
+
+        @RingtonePickerMetricsListener.CatalogSource
+        private int mSource = RingtonePickerMetricsListener.SOURCE_MEMORY_CACHE;
+    }
+
+    /**
+     * Merges the results of the sources in the order of the sources. Results and chunks may arrive
+     * from any thread, in any order.
+     */
+    private final class ResultMerger {
+
+        /**
+         * Loaded ringtones of each source. Null until the source is loaded.
+         */
+        @NonNull
+        private final RingtoneEntries[] mResults;
+
+        /**
+         * Chunks of the sources that cannot be delivered yet, because the sources before them are
+         * still loading. Used only in the progressive mode.
+         */
+        @NonNull
+        private final ArrayList<RingtoneEntries>[] mPendingChunks;
+
+        /**
+         * True for the sources which delivered their rows in chunks.
+         */
+        @NonNull
+        private final boolean[] isChunked;
+
+        /**
+         * Delivered rows, to drop the ringtones which belong to more than one source. Null if only
+         * one source is loaded or the list is delivered at once.
+         */
+        @Nullable
+        private final RingtoneEntries.RowSet mDeliveredRows;
+
+        /**
+         * All the delivered rows, in the order they were delivered. Kept only to build the
+         * {@link RingtoneSearchIndex}.
+         */
+        @Nullable
+        private final RingtoneEntries mDelivered;
+
+        /**
+         * Index of the first source that is not loaded yet.
+         */
+        private int mHead = 0;
+
+        @SuppressWarnings("unchecked")
+        private ResultMerger(final int count) {
+            mResults = new RingtoneEntries[count];
+            mPendingChunks = new ArrayList[count];
+            isChunked = new boolean[count];
+            mDeliveredRows = isProgressive && count > 1 ? new RingtoneEntries.RowSet() : null;
+            mDelivered = isSearchable ? new RingtoneEntries() : null;
+        }
+
+        private synchronized void onChunkLoaded(final int index,
+                                                @NonNull final RingtoneEntries chunk) {
+            isChunked[index] = true;
+
+            Trace.beginSection(TRACE_MERGE);
+            try {
+                publishOrHold(index, chunk);
+            } finally {
+                Trace.endSection();
+            }
+        }
+
+        /**
+         * @return True if this was the last source to load. The caller must deliver the completion.
+         */
+        private synchronized boolean onTypeLoaded(final int index,
+                                                  @NonNull final RingtoneEntries result) {
+            mResults[index] = result;
+
+            Trace.beginSection(TRACE_MERGE);
+            try {
+                //Sources loaded from the cache or without chunks are delivered as a single chunk.
+                if (isProgressive && !isChunked[index]) publishOrHold(index, result);
+
+                //Move to the next source which is still loading.
+                while (mHead < mResults.length && mResults[mHead] != null) {
+                    mHead++;
+
+                    if (mHead < mResults.length && mPendingChunks[mHead] != null) {
+                        for (RingtoneEntries chunk : mPendingChunks[mHead]) {
+                            publish(chunk);
+                        }
+                        mPendingChunks[mHead] = null;
+                    }
+                }
+
+                if (mHead == mResults.length) {
+                    if (!isProgressive) deliver(RingtoneEntries.merge(mResults));
+                    return true;
+                }
+                return false;
+            } finally {
+                Trace.endSection();
+            }
+        }
+
+        /**
+         * @return All the delivered ringtones in the order they were delivered. Call it only after
+         * all the sources are loaded, if the task is searchable.
+         */
+        @NonNull
+        private synchronized RingtoneEntries getDelivered() {
+            if (mDelivered == null) throw new IllegalStateException("Delivered rows are not kept.");
+            return mDelivered;
+        }
+
+        private void publishOrHold(final int index, @NonNull final RingtoneEntries chunk) {
+            if (index == mHead) {
+                publish(chunk);
+            } else {
+                if (mPendingChunks[index] == null) mPendingChunks[index] = new ArrayList<>();
+                mPendingChunks[index].add(chunk);
+            }
+        }
+
+        /**
+         * Deliver the rows which are not delivered yet.
+         */
+        private void publish(@NonNull final RingtoneEntries chunk) {
+            deliver(mDeliveredRows == null ? chunk : chunk.withoutSeen(mDeliveredRows));
+        }
+
+        /**
+         * Deliver the rows which are known to be unique.
+         */
+        private void deliver(@NonNull final RingtoneEntries rows) {
+            if (mDelivered != null) mDelivered.addAll(rows);
+            deliverProgress(rows);
+        }
+    }
+
+    /**
+     * Joins the ringtones of the types loaded by {@link #loadTypes(List, TypesCallback)}. Results
+     * may arrive from any thread, in any order. The callback is notified only once.
+     */
+    private static final class TypesJoin {
+
+        /**
+         * Loaded ringtones of each type. Null until the type is loaded.
+         */
+        @NonNull
+        private final RingtoneEntries[] mResults;
+
+        @NonNull
+        private final TypesCallback mCallback;
+
+        /**
+         * Number of the types which are still loading.
+         */
+        private int mRemaining;
+
+        /**
+         * True once the callback is notified or is about to be.
+         */
+        private boolean isDone = false;
+
+        private TypesJoin(final int count, @NonNull final TypesCallback callback) {
+            mResults = new RingtoneEntries[count];
+            mCallback = callback;
+            mRemaining = count;
+        }
+
+        /**
+         * @return True if this was the last type to load. The caller must call {@link #complete()}.
+         */
+        private synchronized boolean onTypeLoaded(final int index, @NonNull final RingtoneEntries result) {
+            mResults[index] = result;
+            mRemaining--;
+            if (mRemaining > 0 || isDone) return false;
+
+            isDone = true;
+            return true;
+        }
+
+        /**
+         * Notify the failure, unless the callback is already notified. Results of the other types
+         * are ignored.
+         */
+        private void onTypeFailed(@NonNull final RuntimeException error) {
+            synchronized (this) {
+                if (isDone) return;
+                isDone = true;
+            }
+            mCallback.onTypesFailed(error);
+        }
+
+        /**
+         * Merge the results and notify the callback. Call it once all the types are loaded.
+         */
+        private void complete() {
+            final RingtoneEntries ringtones;
+            try {
+                ringtones = mergeTypes(mResults);
+            } catch (RuntimeException e) {
+                mCallback.onTypesFailed(e);
+                return;
+            }
+            mCallback.onTypesLoaded(ringtones);
+        }
+    }
+
+    /**
+     * Callback of {@link #loadTypes(List, TypesCallback)}.
+     */
+    interface TypesCallback {
+
+        /**
+         * Called on the background thread when all the types are loaded.
+         *
+         * @param ringtones {@link RingtoneEntries} of the unique ringtones of all the types.
+         */
+        void onTypesLoaded(@NonNull final RingtoneEntries ringtones);
+
+        /**
+         * Called on the background thread when a type cannot be loaded or the task is cancelled.
+         *
+         * @param error cause of the failure. {@link OperationCanceledException} if the task is
+         *              cancelled.
+         */
+        void onTypesFailed(@NonNull final RuntimeException error);
+    }
+
+    interface LoadListener {
+
+        /**
+         * Called on the main thread when the ringtones are loaded. In the progressive mode, this
+         * is called multiple times with the next rows of the list. Otherwise this is called once
+         * with the whole list.
+         *
+         * @param ringtone {@link RingtoneEntries} to add to the list.
+         * @param sections {@link RingtoneSectionIndex} of the rows in the ringtone.
+         */
+        void onLoadProgress(@NonNull final RingtoneEntries ringtone,
+                            @NonNull final RingtoneSectionIndex sections);
+
+        /**
+         * Called on the main thread once all the ringtones are delivered.
+         *
+         * @param searchIndex {@link RingtoneSearchIndex} of all the delivered ringtones, in the
+         *                    order they were delivered, or null if the index is not requested.
+         */
+        void onLoadComplete(@Nullable final RingtoneSearchIndex searchIndex);
+
+        /**
+         * Called on the main thread when the title of the pre selected ringtone is resolved. This
+         * may be called before or after the ringtones are delivered.
+         *
+         * @param uri   {@link Uri} of the pre selected ringtone.
+         * @param title title of the ringtone or null if the ringtone is not found.
+         */
+        void onCurrentRingtoneLoaded(@NonNull final Uri uri, @Nullable final String title);
     }
 }
@@ -0,0 +1,94 @@
+/*
+ * Copyright 2017 Keval Patel
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance wit
+ * the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for
+ *  the specific language governing permissions and limitations under the License.
+ */
+
+package com.kevalpatel.ringtonepicker;
+
+import android.content.Context;
+import android.text.format.DateUtils;
+import android.text.format.Formatter;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+/**
+ * Details of a ringtone which are not needed to list it, such as the duration, the artist and the
+ * size. These are loaded by {@link RingtoneMetadataLoader} only for the rows on the screen.
+ *
+ * @author <a href="https://github.com/kevalpatel2106">kevalpatel2106</a>
+ */
+final class RingtoneMetadata {
+
+    /**
+     * Value of the duration or the size if it is not known.
+     */
+    static final long UNKNOWN = -1;
+
+    /**
+     * Metadata of the ringtones which are not found or don't have any details.
+     */
+    static final RingtoneMetadata EMPTY = new RingtoneMetadata(UNKNOWN, null, UNKNOWN);
+
+    private static final String SEPARATOR = " · ";
+
+    private final long mDurationMs;
+
+    @Nullable
+    private final String mArtist;
+
+    private final long mSizeBytes;
+
+    /**
+     * @param durationMs duration of the ringtone in milliseconds or {@link #UNKNOWN}.
+     * @param artist     name of the artist or null.
+     * @param sizeBytes  size of the file in bytes or {@link #UNKNOWN}.
+     */
+    RingtoneMetadata(final long durationMs, @Nullable final String artist, final long sizeBytes) {
+        mDurationMs = durationMs > 0 ? durationMs : UNKNOWN;
+        mArtist = artist == null || artist.isEmpty() ? null : artist;
+        mSizeBytes = sizeBytes > 0 ? sizeBytes : UNKNOWN;
+    }
+
+    long getDurationMs() {
+        return mDurationMs;
+    }
+
+    @Nullable
+    String getArtist() {
+        return mArtist;
+    }
+
+    long getSizeBytes() {
+        return mSizeBytes;
+    }
+
+    /**
+     * Format the details to display below the title, such as "Artist · 0:32 · 1.2 MB".
+     *
+     * @param context {@link Context} to format the size with.
+     * @return Formatted details. Empty if no detail is known.
+     */
+    @NonNull
+    String format(@NonNull final Context context) {
+        final StringBuilder builder = new StringBuilder();
+        if (mArtist != null) builder.append(mArtist);
+        if (mDurationMs != UNKNOWN) {
+            if (builder.length() > 0) builder.append(SEPARATOR);
+            builder.append(DateUtils.formatElapsedTime(Math.max(1, mDurationMs / 1000)));
+        }
+        if (mSizeBytes != UNKNOWN) {
+            if (builder.length() > 0) builder.append(SEPARATOR);
+            builder.append(Formatter.formatShortFileSize(context, mSizeBytes));
+        }
+        return builder.toString();
+    }
+}
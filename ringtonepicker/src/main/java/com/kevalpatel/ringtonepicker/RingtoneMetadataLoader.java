@@ -0,0 +1,260 @@
+/*
+ * Copyright 2017 Keval Patel
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance wit
+ * the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for
+ *  the specific language governing permissions and limitations under the License.
+ */
+
+package com.kevalpatel.ringtonepicker;
+
+import android.content.Context;
+import android.net.Uri;
+import android.os.Handler;
+import android.os.Looper;
+import android.provider.MediaStore;
+import android.util.LruCache;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executor;
+
+/**
+ * Loads the {@link RingtoneMetadata} of the rows on the screen, so the details of the whole list
+ * are never queried at once.
+ * <p>
+ * - Rows are requested by the {@link RingtoneListAdapter} while they are bound. Only the rows of
+ * the {@link MediaStore} tables have the details.
+ * - Requested rows are grouped by their table and loaded with one query for each table on the
+ * executor. Only one batch is loaded at a time. If more rows are requested meanwhile, only the
+ * latest request waits for it and the older ones are dropped, because those rows are already
+ * scrolled away.
+ * - Loaded details are kept in a bounded cache, including the rows which are not found, so a row
+ * is queried only once.
+ * <p>
+ * All the methods must be called on the main thread.
+ *
+ * @author <a href="https://github.com/kevalpatel2106">kevalpatel2106</a>
+ */
+final class RingtoneMetadataLoader {
+
+    /**
+     * Maximum number of the rows to keep the details of.
+     */
+    private static final int MAX_CACHED_ROWS = 1000;
+
+    /**
+     * Start of the uris of the {@link MediaStore} tables.
+     */
+    private static final String MEDIA_STORE_PREFIX = "content://" + MediaStore.AUTHORITY + "/";
+
+    @NonNull
+    private final Context mApplication;
+
+    @NonNull
+    private final Executor mExecutor;
+
+    @NonNull
+    private final Handler mMainHandler = new Handler(Looper.getMainLooper());
+
+    /**
+     * {@link RingtoneMetadata} by the uri of the row.
+     */
+    @NonNull
+    private final LruCache<String, RingtoneMetadata> mCache = new LruCache<>(MAX_CACHED_ROWS);
+
+    /**
+     * Uris of the rows in the loading and the waiting batch, so they are not requested twice.
+     */
+    @NonNull
+    private final HashSet<String> mQueuedUris = new HashSet<>();
+
+    /**
+     * Latest batch waiting for the running batch to finish or null.
+     */
+    @Nullable
+    private Batch mPendingBatch;
+
+    @Nullable
+    private Listener mListener;
+
+    private boolean isLoading = false;
+
+    private boolean isClosed = false;
+
+    /**
+     * @param application application {@link Context}.
+     * @param executor    {@link Executor} to run the queries on.
+     */
+    RingtoneMetadataLoader(@NonNull final Context application, @NonNull final Executor executor) {
+        mApplication = application;
+        mExecutor = executor;
+    }
+
+    /**
+     * @param listener {@link Listener} to get notified when the details are loaded or null.
+     */
+    void setListener(@Nullable final Listener listener) {
+        mListener = listener;
+    }
+
+    /**
+     * @param entries {@link RingtoneEntries} of the row.
+     * @param row     position of the row in the entries.
+     * @return True if the details of the row can be loaded.
+     */
+    boolean hasMetadata(@NonNull final RingtoneEntries entries, final int row) {
+        return entries.getId(row) != RingtoneEntries.NO_ID
+                && entries.getBaseUri(entries.getBaseIndex(row)).startsWith(MEDIA_STORE_PREFIX);
+    }
+
+    /**
+     * @param uriString uri of the row.
+     * @return Loaded {@link RingtoneMetadata} of the row or null if it is not loaded yet.
+     */
+    @Nullable
+    RingtoneMetadata get(@NonNull final String uriString) {
+        return mCache.get(uriString);
+    }
+
+    /**
+     * Load the details of the rows which are not loaded yet. The request replaces the earlier
+     * request which is still waiting.
+     *
+     * @param entries {@link RingtoneEntries} of the rows.
+     * @param rows    positions of the rows in the entries.
+     * @param count   number of the positions to read from the rows.
+     */
+    void request(@NonNull final RingtoneEntries entries, @NonNull final int[] rows, final int count) {
+        if (isClosed) return;
+
+        //Drop the waiting batch. Its rows are requested again if they are still on the screen.
+        if (mPendingBatch != null) {
+            mQueuedUris.removeAll(mPendingBatch.mUris);
+            mPendingBatch = null;
+        }
+
+        final Batch batch = new Batch();
+        for (int i = 0; i < count; i++) {
+            final int row = rows[i];
+            if (!hasMetadata(entries, row)) continue;
+
+            final String uriString = entries.getUriString(row);
+            if (mCache.get(uriString) != null || !mQueuedUris.add(uriString)) continue;
+            batch.add(entries.getBaseUri(entries.getBaseIndex(row)), entries.getId(row), uriString);
+        }
+        if (batch.mUris.isEmpty()) return;
+
+        if (isLoading) {
+            mPendingBatch = batch;
+        } else {
+            load(batch);
+        }
+    }
+
+    /**
+     * Stop loading. Batches which are already running are ignored once they finish.
+     */
+    void close() {
+        isClosed = true;
+        mPendingBatch = null;
+        mListener = null;
+    }
+
+    private void load(@NonNull final Batch batch) {
+        isLoading = true;
+        mExecutor.execute(new Runnable() {
+            @Override
+            public void run() {
+                final HashMap<String, RingtoneMetadata> loaded = new HashMap<>(batch.mUris.size());
+                for (Map.Entry<String, ArrayList<Long>> table : batch.mIdsByTable.entrySet()) {
+                    final String tableUri = table.getKey();
+                    final List<Long> ids = table.getValue();
+
+                    Map<Long, RingtoneMetadata> metadata;
+                    try {
+                        metadata = RingtoneUtils.getRingtoneMetadata(mApplication, Uri.parse(tableUri), ids);
+                    } catch (SecurityException | IllegalArgumentException e) {
+                        //Table cannot be read or doesn't have these columns. Display only the titles.
+                        metadata = new HashMap<>();
+                    }
+
+                    for (Long id : ids) {
+                        final RingtoneMetadata rowMetadata = metadata.get(id);
+                        loaded.put(tableUri + "/" + id, rowMetadata == null ? RingtoneMetadata.EMPTY : rowMetadata);
+                    }
+                }
+
+                mMainHandler.post(new Runnable() {
+                    @Override
+                    public void run() {
+                        onBatchLoaded(batch, loaded);
+                    }
+                });
+            }
+        });
+    }
+
+    private void onBatchLoaded(@NonNull final Batch batch,
+                               @NonNull final Map<String, RingtoneMetadata> loaded) {
+        isLoading = false;
+        if (isClosed) return;
+
+        mQueuedUris.removeAll(batch.mUris);
+        for (Map.Entry<String, RingtoneMetadata> metadata : loaded.entrySet()) {
+            mCache.put(metadata.getKey(), metadata.getValue());
+        }
+        if (mListener != null) mListener.onMetadataLoaded();
+
+        if (mPendingBatch != null) {
+            final Batch next = mPendingBatch;
+            mPendingBatch = null;
+            load(next);
+        }
+    }
+
+    /**
+     * Rows to load together, grouped by their table.
+     */
+    private static final class Batch {
+
+        @NonNull
+        private final HashMap<String, ArrayList<Long>> mIdsByTable = new HashMap<>();
+
+        @NonNull
+        private final ArrayList<String> mUris = new ArrayList<>();
+
+        private void add(@NonNull final String tableUri, final long id, @NonNull final String uriString) {
+            ArrayList<Long> ids = mIdsByTable.get(tableUri);
+            if (ids == null) {
+                ids = new ArrayList<>();
+                mIdsByTable.put(tableUri, ids);
+            }
+            ids.add(id);
+            mUris.add(uriString);
+        }
+    }
+
+    /**
+     * Listener to get notified when the details of the rows are loaded.
+     */
+    interface Listener {
+
+        /**
+         * Called on the main thread after the details of a batch of rows are loaded. Rebind the
+         * rows on the screen to display them.
+         */
+        void onMetadataLoaded();
+    }
+}
@@ -21,14 +21,15 @@ import android.content.Context;
 import android.content.DialogInterface;
 import android.media.RingtoneManager;
 import android.net.Uri;
-import android.os.AsyncTask;
 import android.os.Bundle;
+import android.text.Editable;
+import android.text.TextWatcher;
 import android.util.Pair;
 import android.view.LayoutInflater;
 import android.view.View;
-import android.widget.AdapterView;
-import android.widget.ArrayAdapter;
-import android.widget.ListView;
+import android.view.ViewGroup;
+import android.widget.EditText;
+import android.widget.LinearLayout;
 import android.widget.ViewFlipper;
 
 import androidx.annotation.NonNull;
@@ -36,11 +37,13 @@ import androidx.annotation.Nullable;
 import androidx.annotation.StringRes;
 import androidx.fragment.app.DialogFragment;
 import androidx.fragment.app.FragmentManager;
+import androidx.recyclerview.widget.LinearLayoutManager;
+import androidx.recyclerview.widget.RecyclerView;
+import androidx.tracing.Trace;
 
-import java.io.IOException;
 import java.util.ArrayList;
-import java.util.HashMap;
-import java.util.LinkedHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
 
 /**
  * Created by Keval on 29-Mar-17.
@@ -52,7 +55,8 @@ import java.util.LinkedHashMap;
  * @see Builder
  */
 
-public final class RingtonePickerDialog extends DialogFragment implements RingtoneLoaderTask.LoadCompleteListener {
+public final class RingtonePickerDialog extends DialogFragment
+        implements RingtoneLoaderTask.LoadListener, RingtoneListAdapter.OnRingtoneClickListener {
 
     // Argument names.
     private static final String ARG_DIALOG_TITLE = "arg_dialog_title";
@@ -64,6 +68,16 @@ public final class RingtonePickerDialog extends DialogFragment implements Ringto
     private static final String ARG_IS_PLAY = "arg_is_play";
     private static final String ARG_IS_DISPLAY_DEFAULT = "arg_is_display_default";
     private static final String ARG_IS_DISPLAY_SILENT = "arg_is_display_silent";
+    private static final String ARG_IS_PROGRESSIVE = "arg_is_progressive";
+    private static final String ARG_IS_DISPLAY_SEARCH = "arg_is_display_search";
+    private static final String ARG_IS_DISPLAY_DETAILS = "arg_is_display_details";
+    private static final String ARG_REFRESH_WINDOW = "arg_refresh_window";
+
+    /**
+     * Names of the trace sections.
+     */
+    private static final String TRACE_LOAD_PROGRESS = "RingtonePicker.onLoadProgress";
+    private static final String TRACE_LOAD_COMPLETE = "RingtonePicker.onLoadComplete";
 
     /**
      * {@link Context} of the application. The dialog theme will be derived from this {@link Context}.
@@ -76,10 +90,45 @@ public final class RingtonePickerDialog extends DialogFragment implements Ringto
     private RingtonePickerListener mListener;
 
     /**
-     * {@link java.util.Map} of all the ringtone names and {@link Uri} to display in the dialog.
+     * {@link RingtoneListAdapter} of all the ringtones to display in the dialog. Rows are appended
+     * as the ringtones are loaded. The adapter outlives the dialog view, so the recreated dialog
+     * reloads the ringtones and applies only the changed rows.
+     */
+    @Nullable
+    private RingtoneListAdapter mAdapter;
+
+    /**
+     * True while the ringtones are reloaded for the retained {@link #mAdapter}. The reloaded list
+     * is applied with {@link RingtoneListAdapter#submitEntries(RingtoneEntries, int[], Executor, Runnable)}
+     * instead of being appended.
+     */
+    private boolean isRefreshing;
+
+    /**
+     * Ringtones reloaded while {@link #isRefreshing}.
      */
-    private LinkedHashMap<String, Uri> mRingTones = new LinkedHashMap<>();
-    ;
+    @Nullable
+    private RingtoneEntries mRefreshedEntries;
+
+    /**
+     * {@link RingtoneSectionIndex} of {@link #mRefreshedEntries}.
+     */
+    @Nullable
+    private RingtoneSectionIndex mRefreshedSections;
+
+    /**
+     * {@link RingtoneSectionIndex} of the loaded ringtones in the {@link #mAdapter}, displayed on
+     * the {@link #mFastScroller}. Sections of each loaded chunk are added to it.
+     */
+    @NonNull
+    private RingtoneSectionIndex mSections = new RingtoneSectionIndex();
+
+    /**
+     * {@link RingtoneSearchIndex} of the loaded ringtones. Null until all the ringtones are loaded
+     * or if the search field is not displayed.
+     */
+    @Nullable
+    private RingtoneSearchIndex mSearchIndex;
 
     /**
      * {@link RingTonePlayer} to play sample of the ringtone if {@link #isPlaySample} is true.
@@ -97,6 +146,21 @@ public final class RingtonePickerDialog extends DialogFragment implements Ringto
 
     private boolean isDisplaySilent;
 
+    /**
+     * True to display the rows while the ringtones are still being loaded.
+     */
+    private boolean isProgressive;
+
+    /**
+     * True to display the search field above the list.
+     */
+    private boolean isDisplaySearch;
+
+    /**
+     * True to display the duration, the artist and the size below the title.
+     */
+    private boolean isDisplayDetails;
+
     /**
      * Key-value {@link Pair} of the selected ringtone name and {@link Uri}.
      */
@@ -105,19 +169,95 @@ public final class RingtonePickerDialog extends DialogFragment implements Ringto
 
     private ArrayList<Integer> mRingtoneTypes;
 
+    /**
+     * Custom {@link RingtoneSource}s to load after the {@link #mRingtoneTypes}. These are not part
+     * of the arguments, so they are lost if the process gets recreated.
+     *
+     * @see Builder#addRingtoneSource(RingtoneSource)
+     */
+    @NonNull
+    private ArrayList<RingtoneSource> mRingtoneSources = new ArrayList<>();
+
     /**
      * {@link RingtoneLoaderTask} to load the list of ringtone on background.
      */
     @Nullable
     private RingtoneLoaderTask mLoaderTask;
 
+    /**
+     * {@link Executor} to run the {@link #mLoaderTask}. If this is null, the default background
+     * {@link Executor} will be used. This is not part of the arguments, so it is lost if the process
+     * gets recreated.
+     *
+     * @see Builder#setExecutor(Executor)
+     */
+    @Nullable
+    private Executor mExecutor;
+
+    /**
+     * {@link RingtonePickerMetricsListener} to report the timings to or null. This is not part of
+     * the arguments, so it is lost if the process gets recreated.
+     *
+     * @see Builder#setMetricsListener(RingtonePickerMetricsListener)
+     */
+    @Nullable
+    private RingtonePickerMetricsListener mMetricsListener;
+
+    /**
+     * {@link RingtoneMetadataLoader} to load the details of the rows on the screen or null if the
+     * details are not displayed. It is kept with the retained dialog, so the loaded details
+     * survive the rotation.
+     */
+    @Nullable
+    private RingtoneMetadataLoader mMetadataLoader;
+
+    /**
+     * Time to wait for more changes of the media store before refreshing the open list, in
+     * milliseconds, or {@link Builder#REFRESH_DISABLED}.
+     *
+     * @see Builder#setRefreshWindow(long)
+     */
+    private long mRefreshWindowMs;
+
+    /**
+     * {@link RingtoneRefreshScheduler} to refresh the list when the media store changes or null if
+     * the refresh is disabled.
+     */
+    @Nullable
+    private RingtoneRefreshScheduler mRefreshScheduler;
+
+    /**
+     * True while the ringtones are reloaded because the media store changed. The list on the
+     * screen is kept where it is, instead of scrolling to the checked row.
+     */
+    private boolean isLiveRefresh;
+
+    /**
+     * True if the media store changed while the ringtones were being loaded. The list is refreshed
+     * again once they are applied, as the running load may have missed the change.
+     */
+    private boolean isRefreshPending;
+
+    /**
+     * {@link System#nanoTime()} when the dialog started loading the ringtones.
+     */
+    private long mLoadStartNanos;
+
+    /**
+     * True once the {@link RingtonePickerMetricsListener#onFirstRowsDisplayed(long, int)} is
+     * reported.
+     */
+    private boolean isFirstRowsReported;
+
     //Dialog building parameters.
     private String mDialogTitle;
     private String mPositiveButtonTitle;
     private String mNegativeButtonTitle;
 
-    private ListView mListView;
+    private RecyclerView mListView;
+    private RingtoneFastScroller mFastScroller;
     private ViewFlipper mViewFlipper;
+    private EditText mSearchField;
 
     /**
      * Public constructor.
@@ -128,6 +268,25 @@ public final class RingtonePickerDialog extends DialogFragment implements Ringto
         //Do nothing.
     }
 
+    /**
+     * Start loading the ringtones of the given types on the background, before the dialog is
+     * displayed. Call this when the user is likely to open the picker, such as when the settings
+     * screen is opened. A dialog displayed once the types are loaded shows the ringtones right
+     * away. A dialog displayed while they are still loading waits for the same load instead of
+     * starting a new one.
+     * <p>
+     * The ringtones are kept until the media store changes. Loading errors are ignored, so the
+     * types which need the storage permission are loaded only if the permission is granted.
+     *
+     * @param context Instance of the caller.
+     * @param types   {@link RingtoneTypes} to load.
+     * @throws IllegalArgumentException if any type is invalid.
+     * @see RingtoneCatalog#preload(Context, int...)
+     */
+    public static void prewarm(@NonNull final Context context, @RingtoneTypes final int... types) {
+        RingtoneCatalog.preload(context, types);
+    }
+
     /**
      * Factory method to create and display the {@link RingtonePickerDialog}.
      *
@@ -140,6 +299,14 @@ public final class RingtonePickerDialog extends DialogFragment implements Ringto
      * @param listener           {@link RingtonePickerListener} to get notify when new ringtone is
      *                           selected.
      * @param isPlaySample       True if the dialog should play sample ringtone else false.
+     * @param isProgressive      True to display the rows while the ringtones are being loaded.
+     * @param isDisplaySearch    True to display the search field above the list.
+     * @param isDisplayDetails   True to display the details of the ringtones below the titles.
+     * @param refreshWindowMs    Time to wait for more changes before refreshing the open list or
+     *                           {@link Builder#REFRESH_DISABLED}.
+     * @param executor           {@link Executor} to load the ringtones or null to use default.
+     * @param metricsListener    {@link RingtonePickerMetricsListener} to report the timings to or null.
+     * @param ringtoneSources    List of the custom {@link RingtoneSource}s to display.
      */
     private static void launchRingtonePicker(@NonNull final FragmentManager fragmentManager,
                                              @Nullable final String title,
@@ -150,7 +317,14 @@ public final class RingtonePickerDialog extends DialogFragment implements Ringto
                                              @NonNull final RingtonePickerListener listener,
                                              final boolean isPlaySample,
                                              final boolean isDisplayDefault,
-                                             final boolean isDisplaySilent) {
+                                             final boolean isDisplaySilent,
+                                             final boolean isProgressive,
+                                             final boolean isDisplaySearch,
+                                             final boolean isDisplayDetails,
+                                             final long refreshWindowMs,
+                                             @Nullable final Executor executor,
+                                             @Nullable final RingtonePickerMetricsListener metricsListener,
+                                             @NonNull final ArrayList<RingtoneSource> ringtoneSources) {
 
         // Prepare arguments bundle
         Bundle bundle = new Bundle();
@@ -162,11 +336,18 @@ public final class RingtonePickerDialog extends DialogFragment implements Ringto
         bundle.putBoolean(ARG_IS_PLAY, isPlaySample);
         bundle.putBoolean(ARG_IS_DISPLAY_DEFAULT, isDisplayDefault);
         bundle.putBoolean(ARG_IS_DISPLAY_SILENT, isDisplaySilent);
+        bundle.putBoolean(ARG_IS_PROGRESSIVE, isProgressive);
+        bundle.putBoolean(ARG_IS_DISPLAY_SEARCH, isDisplaySearch);
+        bundle.putBoolean(ARG_IS_DISPLAY_DETAILS, isDisplayDetails);
+        bundle.putLong(ARG_REFRESH_WINDOW, refreshWindowMs);
         bundle.putSerializable(ARG_LISTENER, listener);
 
         RingtonePickerDialog ringtonePickerDialog = new RingtonePickerDialog();
         ringtonePickerDialog.setRetainInstance(true);
         ringtonePickerDialog.setArguments(bundle);
+        ringtonePickerDialog.mExecutor = executor;
+        ringtonePickerDialog.mMetricsListener = metricsListener;
+        ringtonePickerDialog.mRingtoneSources = new ArrayList<>(ringtoneSources);
         ringtonePickerDialog.show(fragmentManager, RingtonePickerDialog.class.getSimpleName());
     }
 
@@ -197,13 +378,10 @@ public final class RingtonePickerDialog extends DialogFragment implements Ringto
             throw new IllegalArgumentException("Callback listener cannot be null.");
         }
 
-        // Get pre selected ringtone
+        // Get pre selected ringtone. The title is resolved by the loader on the background.
         if (getArguments().getString(ARG_CURRENT_URI) != null) {
             Uri currentToneUri = Uri.parse(getArguments().getString(ARG_CURRENT_URI));
-            mCurrentRingTone = new Pair<>(
-                    RingtoneUtils.getRingtoneName(mContext, currentToneUri),
-                    currentToneUri
-            );
+            mCurrentRingTone = new Pair<>(null, currentToneUri);
         }
 
         //Get the dialog parameters
@@ -224,46 +402,140 @@ public final class RingtonePickerDialog extends DialogFragment implements Ringto
         isPlaySample = getArguments().getBoolean(ARG_IS_PLAY, false);
         isDisplayDefault = getArguments().getBoolean(ARG_IS_DISPLAY_DEFAULT, false);
         isDisplaySilent = getArguments().getBoolean(ARG_IS_DISPLAY_SILENT, false);
+        isProgressive = getArguments().getBoolean(ARG_IS_PROGRESSIVE, false);
+        isDisplaySearch = getArguments().getBoolean(ARG_IS_DISPLAY_SEARCH, false);
+        isDisplayDetails = getArguments().getBoolean(ARG_IS_DISPLAY_DETAILS, false);
+        mRefreshWindowMs = getArguments().getLong(ARG_REFRESH_WINDOW, Builder.REFRESH_DISABLED);
 
         //Parse ringtone types.
         mRingtoneTypes = getArguments().getIntegerArrayList(ARG_RINGTONE_TYPES);
 
-        //Initialize media player
-        mRingTonePlayer = new RingTonePlayer(mContext);
+        if (isDisplayDetails) {
+            mMetadataLoader = new RingtoneMetadataLoader(mContext.getApplicationContext(),
+                    mExecutor == null ? RingtoneLoaderTask.getDefaultExecutor() : mExecutor);
+        }
+
+        //Initialize media player.
+        mRingTonePlayer = new RingTonePlayer(mContext, mMetricsListener);
+
+        //Keep the list up to date while the dialog is open.
+        if (mRefreshWindowMs != Builder.REFRESH_DISABLED) {
+            mRefreshScheduler = new RingtoneRefreshScheduler(mContext, mRefreshWindowMs, new Runnable() {
+                @Override
+                public void run() {
+                    refreshRingtoneList();
+                }
+            });
+        }
     }
 
     /**
-     * Prepare the {@link LinkedHashMap} of the items to display in the list. This will prepare
-     * {@link LinkedHashMap} with title of the ringtone as the key and {@link Uri} as the value.
+     * Prepare the {@link RingtoneListAdapter} of the items to display in the list and start loading
+     * the ringtones.
      * <p>
      * - If {@link #isDisplayDefault} is true the first item of the list will have title "Default"
      * and value will be system ringtone {@link Uri}.
      * - If  {@link #isDisplaySilent} is true the second item of the list will have title "Silent"
      * and value will be null.
      *
-     * @param types List {@link RingtoneTypes} to add.
+     * @param types List {@link RingtoneTypes} to add, before the {@link #mRingtoneSources}.
      */
     @SuppressLint("MissingPermission")
-    private void prepareRingtoneList(final ArrayList<Integer> types) {
-        if (types == null || types.isEmpty()) {
-            throw new IllegalArgumentException("At least one ringtone type must be added.");
-        }
+    private void prepareRingtoneList(@Nullable final ArrayList<Integer> types) {
+        final ArrayList<RingtoneSource> sources = getRingtoneSources(types);
+
+        //Reuse the list if the dialog is recreated after all the ringtones were loaded. Otherwise
+        //cancel the previous load and start over.
+        isRefreshing = mAdapter != null && mLoaderTask == null;
+        isLiveRefresh = false;
+        isRefreshPending = false;
+        mRefreshedEntries = null;
+        mRefreshedSections = null;
+        if (mLoaderTask != null) mLoaderTask.cancel();
+
+        if (isRefreshing) {
+            //Search field of the new view is empty.
+            mAdapter.setFilter(null);
+            mListView.setAdapter(mAdapter);
+            mViewFlipper.setDisplayedChild(1);
+            mSearchField.setEnabled(mSearchIndex != null);
+            mFastScroller.setSections(mSections, mAdapter.getTopItemCount());
+            restoreCheckedPosition();
+        } else {
+            mAdapter = new RingtoneListAdapter(this, mMetadataLoader);
+            mListView.setAdapter(mAdapter);
+            mSearchIndex = null;
+            mSections = new RingtoneSectionIndex();
+            mLoadStartNanos = System.nanoTime();
+            isFirstRowsReported = false;
+
+            //Add default item first
+            if (isDisplayDefault) {
+                mAdapter.addTopItem(getString(R.string.title_default_list_item), RingtoneUtils.getSystemRingtoneTone());
+            }
 
-        mRingTones = new LinkedHashMap<>();
+            //Add silent item first
+            if (isDisplaySilent) {
+                mAdapter.addTopItem(getString(R.string.title_silent_list_item), Uri.EMPTY /* No ringtone */);
+            }
 
-        //Add default item first
-        if (isDisplayDefault) {
-            mRingTones.put(getString(R.string.title_default_list_item), RingtoneUtils.getSystemRingtoneTone());
+            //Check if the current ringtone is one of the top items.
+            final Uri currentUri = mCurrentRingTone.second;
+            if (currentUri != null && currentUri != Uri.EMPTY) {
+                mAdapter.setCheckedPosition(mAdapter.indexOfTopItem(currentUri));
+            }
         }
 
-        //Add silent item first
-        if (isDisplaySilent) {
-            mRingTones.put(getString(R.string.title_silent_list_item), Uri.EMPTY /* No ringtone */);
+        //The reloaded list is applied at once, so there is no need to load it progressively.
+        mLoaderTask = new RingtoneLoaderTask(mContext.getApplicationContext(),
+                mExecutor,
+                isProgressive && !isRefreshing,
+                isDisplaySearch,
+                mMetricsListener,
+                this);
+        mLoaderTask.execute(sources, mCurrentRingTone.first == null ? mCurrentRingTone.second : null);
+    }
+
+    /**
+     * Reload the ringtones after the media store changed and apply only the changed rows to the
+     * open list. If the ringtones are still being loaded, the list is refreshed again once they
+     * are applied.
+     */
+    private void refreshRingtoneList() {
+        if (mAdapter == null) return;
+        if (mLoaderTask != null) {
+            isRefreshPending = true;
+            return;
         }
 
-        mLoaderTask = new RingtoneLoaderTask(mContext.getApplicationContext(), this);
-        //noinspection unchecked
-        mLoaderTask.executeOnExecutor(AsyncTask.THREAD_POOL_EXECUTOR, types);
+        isRefreshing = true;
+        isLiveRefresh = true;
+        mRefreshedEntries = null;
+        mRefreshedSections = null;
+        mLoaderTask = new RingtoneLoaderTask(mContext.getApplicationContext(),
+                mExecutor,
+                false,
+                isDisplaySearch,
+                mMetricsListener,
+                this);
+        mLoaderTask.execute(getRingtoneSources(mRingtoneTypes),
+                mCurrentRingTone.first == null ? mCurrentRingTone.second : null);
+    }
+
+    /**
+     * @param types List {@link RingtoneTypes} to load, before the {@link #mRingtoneSources}.
+     * @return {@link RingtoneSource}s to load.
+     */
+    @NonNull
+    private ArrayList<RingtoneSource> getRingtoneSources(@Nullable final ArrayList<Integer> types) {
+        //Builder makes sure there is something to load. If the custom sources are lost with the
+        //process, the list may only have the default and silent items.
+        final ArrayList<RingtoneSource> sources = new ArrayList<>();
+        if (types != null) {
+            for (int type : types) sources.add(new RingtoneTypeSource(type));
+        }
+        sources.addAll(mRingtoneSources);
+        return sources;
     }
 
     @NonNull
@@ -276,32 +548,39 @@ public final class RingtonePickerDialog extends DialogFragment implements Ringto
 
         //Set list
         mListView = customView.findViewById(R.id.ringtone_list);
+        mListView.setLayoutManager(new LinearLayoutManager(mContext));
+        mListView.setHasFixedSize(true);
 
-        mListView.setChoiceMode(ListView.CHOICE_MODE_SINGLE);
-        mListView.setOnItemClickListener(new AdapterView.OnItemClickListener() {
-            @Override
-            public void onItemClick(AdapterView<?> parent, View view, int position, long id) {
-                final String currentToneTitle = (String) mListView.getAdapter().getItem(position);
-                mCurrentRingTone = new Pair<>(
-                        currentToneTitle,
-                        mRingTones.get(currentToneTitle)
-                );
-
-                //Play the tone
-                if (isPlaySample) {
-                    try {
-                        mRingTonePlayer.playRingtone(mCurrentRingTone.second);
-                    } catch (IOException e) {
-                        //Cannot play ringtone
-                        e.printStackTrace();
-                    }
-                }
-            }
-        });
+        //Add the fast scroll rail next to the list.
+        mFastScroller = new RingtoneFastScroller(mContext, mListView);
+        final ViewGroup listContainer = customView.findViewById(R.id.ringtone_list_container);
+        listContainer.addView(mFastScroller, new LinearLayout.LayoutParams(
+                ViewGroup.LayoutParams.WRAP_CONTENT,
+                ViewGroup.LayoutParams.MATCH_PARENT));
 
         mViewFlipper = customView.findViewById(R.id.view_flipper);
         mViewFlipper.setDisplayedChild(0);
 
+        //Set the search field. It is enabled once the search index is loaded.
+        mSearchField = customView.findViewById(R.id.ringtone_search);
+        mSearchField.setVisibility(isDisplaySearch ? View.VISIBLE : View.GONE);
+        mSearchField.addTextChangedListener(new TextWatcher() {
+            @Override
+            public void beforeTextChanged(CharSequence s, int start, int count, int after) {
+                //Do nothing.
+            }
+
+            @Override
+            public void onTextChanged(CharSequence s, int start, int before, int count) {
+                //Do nothing.
+            }
+
+            @Override
+            public void afterTextChanged(Editable s) {
+                applySearch(s.toString(), true);
+            }
+        });
+
         //Load the ringtone
         prepareRingtoneList(mRingtoneTypes);
 
@@ -323,49 +602,255 @@ public final class RingtonePickerDialog extends DialogFragment implements Ringto
                 .create();
     }
 
+    @Override
+    public void onDestroy() {
+        super.onDestroy();
+        if (mLoaderTask != null) mLoaderTask.cancel();
+        if (mMetadataLoader != null) mMetadataLoader.close();
+        if (mRefreshScheduler != null) mRefreshScheduler.stop();
+
+        //Release media player
+        mRingTonePlayer.close();
+    }
+
+    @Override
+    public void onRingtoneClick(int position) {
+        mCurrentRingTone = new Pair<>(
+                mAdapter.getItem(position),
+                mAdapter.getUri(position)
+        );
+        mAdapter.setCheckedPosition(mAdapter.getUnfilteredPosition(position));
+
+        //Play the tone and prepare the tones next to it.
+        if (isPlaySample) {
+            final int[] positions = {position, position + 1, position - 1};
+            final Uri[] uris = new Uri[positions.length];
+            final long[] durations = new long[positions.length];
+            for (int i = 0; i < positions.length; i++) {
+                if (positions[i] < 0 || positions[i] >= mAdapter.getCount()) {
+                    durations[i] = RingTonePlayer.UNKNOWN_DURATION;
+                } else {
+                    uris[i] = mAdapter.getUri(positions[i]);
+                    durations[i] = getPreviewDuration(positions[i]);
+                }
+            }
+            mRingTonePlayer.playRingtone(uris, durations);
+        }
+    }
+
     /**
-     * Get the position of the ringtone in {@link #mRingTones} based on the uri.
+     * Get the duration of the row to choose how the {@link RingTonePlayer} plays it. The duration
+     * is known only if the details of the row are loaded, so the notification and the alarm tones
+     * are taken as short tones without it.
      *
-     * @param ringTones List of ringtone with name and {@link Uri}.
-     * @param uri       Uri of the ringtone to find.
-     * @return position of the uri in {@link #mRingTones} hash map.
-     */
-    private int getUriPosition(@NonNull final HashMap<String, Uri> ringTones,
-                               @Nullable final Uri uri) {
-        if (uri != null && uri != Uri.EMPTY) {
-
-            Uri[] values = ringTones.values().toArray(new Uri[ringTones.size()]);
-            for (int i = 0; i < values.length; i++) {
-                if (values[i].toString().equals(uri.toString())) {
-                    return i;
-                }
+     * @param position position of the row in the list.
+     * @return Duration of the row in milliseconds, {@link RingTonePlayer#UNKNOWN_DURATION} or
+     * {@link RingTonePlayer#UNKNOWN_SHORT_DURATION}.
+     */
+    private long getPreviewDuration(final int position) {
+        final int row = mAdapter.getUnfilteredPosition(position) - mAdapter.getTopItemCount();
+        if (row < 0) return RingTonePlayer.UNKNOWN_DURATION;
+
+        final RingtoneEntries entries = mAdapter.getEntries();
+        if (mMetadataLoader != null) {
+            final RingtoneMetadata metadata = mMetadataLoader.get(entries.getUriString(row));
+            if (metadata != null && metadata.getDurationMs() != RingtoneMetadata.UNKNOWN) {
+                return metadata.getDurationMs();
             }
         }
-        return -1;
+
+        //Ringtones and music are long, even if the same file is listed as a notification too.
+        final int typeFlags = entries.getTypeFlags(row);
+        final boolean isTone = (typeFlags & (RingtoneEntries.FLAG_NOTIFICATION | RingtoneEntries.FLAG_ALARM)) != 0
+                && (typeFlags & (RingtoneEntries.FLAG_RINGTONE | RingtoneEntries.FLAG_MUSIC)) == 0;
+        return isTone ? RingTonePlayer.UNKNOWN_SHORT_DURATION : RingTonePlayer.UNKNOWN_DURATION;
     }
 
     @Override
-    public void onDestroy() {
-        super.onDestroy();
-        if (mLoaderTask != null && !mLoaderTask.isCancelled()) mLoaderTask.cancel(true);
+    public void onLoadProgress(@NonNull RingtoneEntries ringtone, @NonNull RingtoneSectionIndex sections) {
+        if (isRefreshing) {
+            //Applied at once when the load completes.
+            mRefreshedEntries = ringtone;
+            mRefreshedSections = sections;
+            return;
+        }
 
-        //Release media player
-        mRingTonePlayer.close();
+        Trace.beginSection(TRACE_LOAD_PROGRESS);
+        try {
+            final boolean isFirstLoad = mViewFlipper.getDisplayedChild() == 0;
+            mViewFlipper.setDisplayedChild(1);
+
+            final int offset = mAdapter.getUnfilteredCount();
+            mAdapter.append(ringtone);
+
+            mSections.addAll(sections, offset - mAdapter.getTopItemCount());
+            updateFastScroller();
+
+            if (!checkCurrentRingtone(ringtone, offset, true) && isFirstLoad) restoreCheckedPosition();
+        } finally {
+            Trace.endSection();
+        }
+
+        if (mMetricsListener != null && !isFirstRowsReported && ringtone.size() > 0) {
+            isFirstRowsReported = true;
+            mMetricsListener.onFirstRowsDisplayed(getElapsedLoadMs(),
+                    mAdapter.getUnfilteredCount() - mAdapter.getTopItemCount());
+        }
+    }
+
+    /**
+     * @return Time since the dialog started loading the ringtones, in milliseconds.
+     */
+    private long getElapsedLoadMs() {
+        return TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - mLoadStartNanos);
+    }
+
+    /**
+     * Look for the current ringtone in the new rows, until it is found.
+     *
+     * @param ringtone new rows of the list.
+     * @param offset   unfiltered position of the first new row.
+     * @param isScroll true to scroll to the current ringtone once it is found.
+     * @return true if the current ringtone is found in the new rows.
+     */
+    private boolean checkCurrentRingtone(@NonNull final RingtoneEntries ringtone,
+                                         final int offset,
+                                         final boolean isScroll) {
+        final Uri currentUri = mCurrentRingTone.second;
+        if (mAdapter.getCheckedPosition() != -1 || currentUri == null || currentUri == Uri.EMPTY) {
+            return false;
+        }
+
+        final int index = ringtone.indexOf(currentUri.toString());
+        if (index == -1) return false;
+
+        mAdapter.setCheckedPosition(offset + index);
+        if (isScroll) restoreCheckedPosition();
+
+        //Title from the list is good enough, if it is not resolved yet.
+        if (mCurrentRingTone.first == null) {
+            mCurrentRingTone = new Pair<>(ringtone.getTitle(index), currentUri);
+        }
+        return true;
+    }
+
+    /**
+     * Scroll to the checked row.
+     */
+    private void restoreCheckedPosition() {
+        final int position = mAdapter.getPosition(mAdapter.getCheckedPosition());
+        if (position != -1) mListView.scrollToPosition(position);
+    }
+
+    /**
+     * Display only the ringtones matching the query. The checked ringtone stays checked if it
+     * matches the query.
+     *
+     * @param query         text in the search field.
+     * @param isScrollToTop true to scroll to the first matching ringtone.
+     */
+    private void applySearch(@NonNull final String query, final boolean isScrollToTop) {
+        if (mSearchIndex == null) return;
+
+        mAdapter.setFilter(mSearchIndex.search(query));
+        if (isScrollToTop) mListView.scrollToPosition(0);
+        updateFastScroller();
+    }
+
+    /**
+     * Display the {@link #mSections} on the fast scroll rail. The sections point to the unfiltered
+     * positions, so the rail is hidden while the list is filtered.
+     */
+    private void updateFastScroller() {
+        final boolean isFiltered = mAdapter.getCount() != mAdapter.getUnfilteredCount();
+        mFastScroller.setSections(isFiltered ? null : mSections, mAdapter.getTopItemCount());
     }
 
     @Override
-    public void onLoadComplete(@NonNull HashMap<String, Uri> ringtone) {
+    public void onLoadComplete(@Nullable final RingtoneSearchIndex searchIndex) {
+        final boolean wasRefreshing = isRefreshing;
+
+        Trace.beginSection(TRACE_LOAD_COMPLETE);
+        try {
+            applyLoadedRingtones(searchIndex);
+        } finally {
+            Trace.endSection();
+        }
+
+        if (mMetricsListener != null && !wasRefreshing) {
+            mMetricsListener.onLoadComplete(getElapsedLoadMs(),
+                    mAdapter.getUnfilteredCount() - mAdapter.getTopItemCount());
+        }
+    }
+
+    /**
+     * Display the list once all the ringtones are loaded. If the list was reloaded after the dialog
+     * got recreated or the media store changed, only the changed rows are applied.
+     *
+     * @param searchIndex {@link RingtoneSearchIndex} of the loaded ringtones or null.
+     */
+    private void applyLoadedRingtones(@Nullable final RingtoneSearchIndex searchIndex) {
+        mLoaderTask = null;
         mViewFlipper.setDisplayedChild(1);
-        mRingTones.putAll(ringtone);
 
-        final String[] itemTitles = mRingTones.keySet().toArray(new String[mRingTones.size()]);
-        int currentSelectionPos = getUriPosition(mRingTones, mCurrentRingTone.second);
+        final RingtoneEntries refreshedEntries = mRefreshedEntries;
+        final RingtoneSectionIndex refreshedSections = mRefreshedSections;
+        final boolean isScroll = !isLiveRefresh;
+        mRefreshedEntries = null;
+        mRefreshedSections = null;
+        isRefreshing = false;
+        isLiveRefresh = false;
+
+        if (isRefreshPending) {
+            isRefreshPending = false;
+            if (mRefreshScheduler != null) mRefreshScheduler.onCatalogChanged();
+        }
 
-        mListView.setAdapter(new ArrayAdapter<>(mContext,
-                android.R.layout.select_dialog_singlechoice,
-                itemTitles));
-        mListView.setSelection(currentSelectionPos);
-        mListView.setItemChecked(currentSelectionPos, true);
+        if (refreshedEntries == null) {
+            setSearchIndex(searchIndex, true);
+            return;
+        }
+
+        //Apply only the rows changed since the dialog was recreated. Keep the search while the
+        //changes are applied, so the rows it hides are not displayed in between.
+        final int[] filter = searchIndex != null && mSearchField.length() > 0
+                ? searchIndex.search(mSearchField.getText().toString())
+                : null;
+        mAdapter.submitEntries(refreshedEntries,
+                filter,
+                mExecutor == null ? RingtoneLoaderTask.getDefaultExecutor() : mExecutor,
+                new Runnable() {
+                    @Override
+                    public void run() {
+                        if (refreshedSections != null) mSections = refreshedSections;
+                        updateFastScroller();
+                        checkCurrentRingtone(refreshedEntries, mAdapter.getTopItemCount(), isScroll);
+                        setSearchIndex(searchIndex, isScroll);
+                    }
+                });
+    }
+
+    /**
+     * Enable the search field once the {@link RingtoneSearchIndex} of the displayed ringtones is
+     * available and apply the text already typed in the field.
+     *
+     * @param searchIndex   {@link RingtoneSearchIndex} or null if the search is not displayed.
+     * @param isScrollToTop true to scroll to the first matching ringtone.
+     */
+    private void setSearchIndex(@Nullable final RingtoneSearchIndex searchIndex, final boolean isScrollToTop) {
+        mSearchIndex = searchIndex;
+        if (mSearchIndex != null) {
+            mSearchField.setEnabled(true);
+            if (mSearchField.length() > 0) applySearch(mSearchField.getText().toString(), isScrollToTop);
+        }
+    }
+
+    @Override
+    public void onCurrentRingtoneLoaded(@NonNull Uri uri, @Nullable String title) {
+        //Ignore if the user already selected another ringtone.
+        if (mCurrentRingTone.first == null && uri.equals(mCurrentRingTone.second)) {
+            mCurrentRingTone = new Pair<>(title, uri);
+        }
     }
 
     /**
@@ -402,6 +887,22 @@ public final class RingtonePickerDialog extends DialogFragment implements Ringto
          */
         public static final int TYPE_MUSIC = 3746;
 
+        /**
+         * Pass to {@link #setRefreshWindow(long)} to keep the open list as it was loaded when the
+         * media store changes. This is the default.
+         *
+         * @see #setRefreshWindow(long)
+         */
+        public static final long REFRESH_DISABLED = -1;
+
+        /**
+         * Recommended time to wait for more changes of the media store before refreshing the open
+         * list, in milliseconds.
+         *
+         * @see #setRefreshWindow(long)
+         */
+        public static final long RECOMMENDED_REFRESH_WINDOW_MS = 1000;
+
         /**
          * The title of the ringtone picker dialog. This value can be set from {@link #setTitle(String)}.
          *
@@ -431,6 +932,13 @@ public final class RingtonePickerDialog extends DialogFragment implements Ringto
         @NonNull
         private ArrayList<Integer> mRingtoneType = new ArrayList<>();
 
+        /**
+         * List of the custom {@link RingtoneSource}s to display.
+         *
+         * @see #addRingtoneSource(RingtoneSource)
+         */
+        private ArrayList<RingtoneSource> mRingtoneSources = new ArrayList<>();
+
         /**
          * True if the dialog should play sample ringtone else false. Default value is <code>false</code>.
          *
@@ -456,6 +964,14 @@ public final class RingtonePickerDialog extends DialogFragment implements Ringto
          */
         private boolean isDisplaySilent = false;
 
+        /**
+         * True to display the rows while the ringtones are still being loaded. Default value is
+         * <code>false</code>.
+         *
+         * @see #setProgressiveLoading(boolean)
+         */
+        private boolean isProgressive = false;
+
         /**
          * Currently selected ringtone {@link Uri}.
          *
@@ -471,6 +987,44 @@ public final class RingtonePickerDialog extends DialogFragment implements Ringto
          */
         private RingtonePickerListener mListener;
 
+        /**
+         * True to display the search field above the list. Default value is <code>false</code>.
+         *
+         * @see #displaySearchField(boolean)
+         */
+        private boolean isDisplaySearch = false;
+
+        /**
+         * True to display the details of the ringtones. Default value is <code>false</code>.
+         *
+         * @see #displayRingtoneDetails(boolean)
+         */
+        private boolean isDisplayDetails = false;
+
+        /**
+         * Time to wait for more changes before refreshing the open list. Default value is
+         * {@link #REFRESH_DISABLED}.
+         *
+         * @see #setRefreshWindow(long)
+         */
+        private long mRefreshWindowMs = REFRESH_DISABLED;
+
+        /**
+         * {@link Executor} to load the ringtones on.
+         *
+         * @see #setExecutor(Executor)
+         */
+        @Nullable
+        private Executor mExecutor = null;
+
+        /**
+         * {@link RingtonePickerMetricsListener} to report the timings to.
+         *
+         * @see #setMetricsListener(RingtonePickerMetricsListener)
+         */
+        @Nullable
+        private RingtonePickerMetricsListener mMetricsListener = null;
+
         /**
          * Instance of the caller.
          */
@@ -585,6 +1139,23 @@ public final class RingtonePickerDialog extends DialogFragment implements Ringto
             return this;
         }
 
+        /**
+         * Add a custom {@link RingtoneSource} to display in the ringtone selection list, such as
+         * the tones shipped with the application. Ringtones of the sources are listed after the
+         * ringtones of the types, in the order the sources are added. All the types and sources
+         * are loaded at the same time.
+         * <p>
+         * The source is not part of the dialog's arguments. If the process is recreated while the
+         * dialog is displayed, the ringtones of the source are not displayed.
+         *
+         * @param ringtoneSource {@link RingtoneSource} to load.
+         * @return {@link Builder}
+         */
+        public Builder addRingtoneSource(@NonNull final RingtoneSource ringtoneSource) {
+            mRingtoneSources.add(ringtoneSource);
+            return this;
+        }
+
         /**
          * Boolean to indicate weather to play sample of selected ringtone while use select any
          * ringtone from the list or not? Default value is false. This is optional parameter to set.
@@ -655,14 +1226,100 @@ public final class RingtonePickerDialog extends DialogFragment implements Ringto
             return this;
         }
 
+        /**
+         * Display the ringtones while they are still being loaded. When enabled, the list appears
+         * as soon as the first rows of {@link #TYPE_MUSIC} are read and the rest of the rows are
+         * added as they are loaded. This is useful for the large music libraries. This is optional
+         * parameter to set. Default value is false.
+         *
+         * @param progressive True to display the rows while loading.
+         * @return {@link Builder}
+         */
+        public Builder setProgressiveLoading(final boolean progressive) {
+            isProgressive = progressive;
+            return this;
+        }
+
+        /**
+         * Method to add a search field above the list. Typing in the field displays only the
+         * ringtones with the matching title. The field is enabled once all the ringtones are
+         * loaded. This is optional parameter to set. Default value is false.
+         *
+         * @param display True to display the search field.
+         * @return {@link Builder}
+         */
+        public Builder displaySearchField(final boolean display) {
+            isDisplaySearch = display;
+            return this;
+        }
+
+        /**
+         * Method to display the duration, the artist and the size of the ringtones below their
+         * titles. The details are loaded only for the rows on the screen, while the list is
+         * scrolled. Only the ringtones in the media store have the details. This is optional
+         * parameter to set. Default value is false.
+         *
+         * @param display True to display the details.
+         * @return {@link Builder}
+         */
+        public Builder displayRingtoneDetails(final boolean display) {
+            isDisplayDetails = display;
+            return this;
+        }
+
+        /**
+         * Refresh the open list when the media store changes, after waiting the given time for
+         * more changes. When a ringtone is added or removed while the dialog is displayed, the
+         * ringtones are reloaded on the background and only the changed rows are updated. All the
+         * changes within the window, such as a media scan of many files, are applied with one
+         * refresh. This is optional parameter to set. Default value is {@link #REFRESH_DISABLED},
+         * so the list is not refreshed. {@link #RECOMMENDED_REFRESH_WINDOW_MS} is a good window.
+         *
+         * @param windowMs time to wait in milliseconds or {@link #REFRESH_DISABLED} to keep the
+         *                 list as it was loaded.
+         * @return {@link Builder}
+         * @throws IllegalArgumentException if the window is negative and not {@link #REFRESH_DISABLED}.
+         */
+        public Builder setRefreshWindow(final long windowMs) {
+            if (windowMs < 0 && windowMs != REFRESH_DISABLED)
+                throw new IllegalArgumentException("Refresh window cannot be negative.");
+            mRefreshWindowMs = windowMs;
+            return this;
+        }
+
+        /**
+         * Set the {@link Executor} to load the list of ringtones. This is optional parameter to set.
+         * By default ringtones are loaded on the library's own background priority threads.
+         *
+         * @param executor {@link Executor} to run the queries or null to use the default.
+         * @return {@link Builder}
+         */
+        public Builder setExecutor(@Nullable final Executor executor) {
+            mExecutor = executor;
+            return this;
+        }
+
+        /**
+         * Set the {@link RingtonePickerMetricsListener} to get the timings of loading the ringtones
+         * and playing the samples. This is optional parameter to set. Nothing is measured if the
+         * listener is not set.
+         *
+         * @param metricsListener {@link RingtonePickerMetricsListener} or null to stop measuring.
+         * @return {@link Builder}
+         */
+        public Builder setMetricsListener(@Nullable final RingtonePickerMetricsListener metricsListener) {
+            mMetricsListener = metricsListener;
+            return this;
+        }
+
         /**
          * Show {@link RingtonePickerDialog}.
          *
-         * @throws IllegalArgumentException if any ringtone type is not selected.
+         * @throws IllegalArgumentException if no ringtone type or source is added.
          */
         public void show() {
             //Validate the input.
-            if (mRingtoneType.size() == 0)
+            if (mRingtoneType.size() == 0 && mRingtoneSources.size() == 0)
                 throw new IllegalArgumentException("Select at least one ringtone.");
 
             //Launch ringtone picker dialog.
@@ -674,7 +1331,14 @@ public final class RingtonePickerDialog extends DialogFragment implements Ringto
                     mListener,
                     isPlaySample,
                     isDisplayDefault,
-                    isDisplaySilent);
+                    isDisplaySilent,
+                    isProgressive,
+                    isDisplaySearch,
+                    isDisplayDetails,
+                    mRefreshWindowMs,
+                    mExecutor,
+                    mMetricsListener,
+                    mRingtoneSources);
         }
     }
 }
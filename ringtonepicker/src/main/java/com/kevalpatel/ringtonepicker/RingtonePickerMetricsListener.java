@@ -0,0 +1,120 @@
+/*
+ * Copyright 2017 Keval Patel
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance wit
+ * the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for
+ *  the specific language governing permissions and limitations under the License.
+ */
+
+package com.kevalpatel.ringtonepicker;
+
+import android.net.Uri;
+
+import androidx.annotation.IntDef;
+import androidx.annotation.NonNull;
+
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+
+/**
+ * A listener to get the timings of the {@link RingtonePickerDialog}, such as how long it took to
+ * display the first rows or to start playing the sample. Use it to measure the picker in the field.
+ * <p>
+ * All the callbacks are invoked on the main thread, after the measured work is done, so they never
+ * add to the measured time. All the durations are in milliseconds.
+ *
+ * @author <a href="https://github.com/kevalpatel2106">kevalpatel2106</a>
+ * @see RingtonePickerDialog.Builder#setMetricsListener(RingtonePickerMetricsListener)
+ */
+public interface RingtonePickerMetricsListener {
+
+    /**
+     * Type reported for the ringtones of a {@link RingtoneSource}.
+     */
+    int TYPE_CUSTOM_SOURCE = -1;
+
+    /**
+     * Ringtones were already loaded by this process.
+     */
+    int SOURCE_MEMORY_CACHE = 0;
+
+    /**
+     * Ringtones were read from the snapshot saved on the disk by the earlier process.
+     */
+    int SOURCE_SNAPSHOT = 1;
+
+    /**
+     * Ringtones loaded earlier were patched with only the changed rows.
+     */
+    int SOURCE_DELTA_SYNC = 2;
+
+    /**
+     * Ringtones were queried from the content provider.
+     */
+    int SOURCE_QUERY = 3;
+
+    /**
+     * Ringtones were loaded by a {@link RingtoneSource}.
+     */
+    int SOURCE_CUSTOM = 4;
+
+    /**
+     * Called when all the ringtones of a type or a {@link RingtoneSource} are loaded.
+     *
+     * @param type         {@link RingtoneTypes} of the ringtones or {@link #TYPE_CUSTOM_SOURCE}.
+     * @param source       where the ringtones were loaded from. One of {@link #SOURCE_MEMORY_CACHE},
+     *                     {@link #SOURCE_SNAPSHOT}, {@link #SOURCE_DELTA_SYNC}, {@link #SOURCE_QUERY}
+     *                     or {@link #SOURCE_CUSTOM}.
+     * @param rowCount     number of the ringtones of the type.
+     * @param loadMs       total time to load the type.
+     * @param queryMs      time to run the query and get the cursor. 0 unless the source is
+     *                     {@link #SOURCE_QUERY}.
+     * @param cursorWalkMs time to read the rows of the cursor. 0 unless the source is
+     *                     {@link #SOURCE_QUERY}.
+     */
+    void onRingtoneTypeLoaded(int type,
+                              @CatalogSource int source,
+                              int rowCount,
+                              long loadMs,
+                              long queryMs,
+                              long cursorWalkMs);
+
+    /**
+     * Called once when the first ringtones are displayed in the list.
+     *
+     * @param elapsedMs time since the dialog started loading the ringtones.
+     * @param rowCount  number of the ringtones displayed.
+     */
+    void onFirstRowsDisplayed(long elapsedMs, int rowCount);
+
+    /**
+     * Called once when all the ringtones are displayed in the list.
+     *
+     * @param elapsedMs time since the dialog started loading the ringtones.
+     * @param rowCount  number of the ringtones in the list, excluding the default and silent items.
+     */
+    void onLoadComplete(long elapsedMs, int rowCount);
+
+    /**
+     * Called when the sample of the selected ringtone starts playing.
+     *
+     * @param uri         {@link Uri} of the ringtone.
+     * @param latencyMs   time from the request to play, after the selection settled, to the start
+     *                    of the playback.
+     * @param wasPrepared true if the ringtone was already prepared in advance.
+     */
+    void onPreviewStarted(@NonNull Uri uri, long latencyMs, boolean wasPrepared);
+
+    /**
+     * Sources of the loaded ringtones.
+     */
+    @Retention(RetentionPolicy.SOURCE)
+    @IntDef({SOURCE_MEMORY_CACHE, SOURCE_SNAPSHOT, SOURCE_DELTA_SYNC, SOURCE_QUERY, SOURCE_CUSTOM})
+    @interface CatalogSource {
+    }
+}
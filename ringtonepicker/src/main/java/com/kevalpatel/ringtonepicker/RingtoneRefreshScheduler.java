@@ -0,0 +1,99 @@
+/*
+ * Copyright 2017 Keval Patel
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance wit
+ * the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for
+ *  the specific language governing permissions and limitations under the License.
+ */
+
+package com.kevalpatel.ringtonepicker;
+
+import android.content.Context;
+import android.os.Handler;
+import android.os.Looper;
+
+import androidx.annotation.NonNull;
+
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Turns the changes of the media store into the refreshes of the open list.
+ * <p>
+ * The media store notifies for every changed row, so a media scan of a thousand files notifies a
+ * thousand times. The first change schedules a refresh after the window and the changes within
+ * the window join it. Changes after the refresh is started schedule the next one, so a long scan
+ * refreshes the list once every window instead of once for every file.
+ *
+ * @author <a href="https://github.com/kevalpatel2106">kevalpatel2106</a>
+ */
+final class RingtoneRefreshScheduler implements RingtoneCatalogCache.ChangeListener {
+
+    @NonNull
+    private final Handler mMainHandler = new Handler(Looper.getMainLooper());
+
+    @NonNull
+    private final RingtoneCatalogCache mCache;
+
+    /**
+     * Time to wait for more changes before refreshing, in milliseconds.
+     */
+    private final long mWindowMs;
+
+    /**
+     * True while a refresh is posted on the {@link #mMainHandler}.
+     */
+    @NonNull
+    private final AtomicBoolean isScheduled = new AtomicBoolean(false);
+
+    private volatile boolean isStopped = false;
+
+    @NonNull
+    private final Runnable mRefresh;
+
+    @NonNull
+    private final Runnable mDispatch = new Runnable() {
+        @Override
+        public void run() {
+            isScheduled.set(false);
+            if (!isStopped) mRefresh.run();
+        }
+    };
+
+    /**
+     * Start listening to the changes of the media store.
+     *
+     * @param context  instance of the caller.
+     * @param windowMs time to wait for more changes before refreshing, in milliseconds.
+     * @param refresh  {@link Runnable} to run on the main thread to refresh the list.
+     */
+    RingtoneRefreshScheduler(@NonNull final Context context,
+                             final long windowMs,
+                             @NonNull final Runnable refresh) {
+        mWindowMs = windowMs;
+        mRefresh = refresh;
+        mCache = RingtoneCatalogCache.getInstance(context);
+        mCache.addChangeListener(this);
+    }
+
+    @Override
+    public void onCatalogChanged() {
+        if (!isStopped && isScheduled.compareAndSet(false, true)) {
+            mMainHandler.postDelayed(mDispatch, mWindowMs);
+        }
+    }
+
+    /**
+     * Stop listening. The refresh which is already scheduled is dropped. Call this on the main
+     * thread.
+     */
+    void stop() {
+        isStopped = true;
+        mCache.removeChangeListener(this);
+        mMainHandler.removeCallbacks(mDispatch);
+    }
+}
@@ -0,0 +1,373 @@
+/*
+ * Copyright 2017 Keval Patel
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance wit
+ * the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for
+ *  the specific language governing permissions and limitations under the License.
+ */
+
+package com.kevalpatel.ringtonepicker;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import java.text.Normalizer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Locale;
+
+/**
+ * Search index over the titles of the {@link RingtoneEntries}. Build it on the loading thread with
+ * {@link #build(RingtoneEntries)}, then {@link #search(String)} on every key stroke without
+ * scanning all the titles.
+ * <p>
+ * Titles and queries are normalized to the lower case without the accents. Each word of the query
+ * must match the title:
+ * - Words shorter than {@link #GRAM_SIZE} match the start of any word of the title. They are looked
+ * up with the binary search in the sorted words of all the titles.
+ * - Longer words match anywhere in the title. The titles with all the trigrams of the word are
+ * found from the trigram index and then checked for the whole word.
+ * <p>
+ * This class doesn't depend on the Android framework. It is immutable once built.
+ *
+ * @author <a href="https://github.com/kevalpatel2106">kevalpatel2106</a>
+ */
+final class RingtoneSearchIndex {
+
+    /**
+     * Number of the characters in each n-gram of the substring index.
+     */
+    private static final int GRAM_SIZE = 3;
+
+    private static final int[] NO_ROWS = new int[0];
+
+    /**
+     * Key of the empty slots in the trigram table. Trigrams use only the low 48 bits.
+     */
+    private static final long EMPTY_GRAM = -1;
+
+    /**
+     * Normalized title of each row.
+     */
+    @NonNull
+    private final String[] mTitles;
+
+    /**
+     * Distinct words of all the titles in the sorted order.
+     */
+    @NonNull
+    private final String[] mWords;
+
+    /**
+     * Sorted rows of each word in {@link #mWords}.
+     */
+    @NonNull
+    private final int[][] mWordRows;
+
+    /**
+     * Open addressing hash table of the trigrams, packed in a long. The empty slots hold
+     * {@link #EMPTY_GRAM}.
+     */
+    @NonNull
+    private final long[] mGramKeys;
+
+    /**
+     * Sorted rows of the titles containing the trigram in the same slot of {@link #mGramKeys}.
+     */
+    @NonNull
+    private final int[][] mGramRows;
+
+    private RingtoneSearchIndex(@NonNull final String[] titles,
+                                @NonNull final String[] words,
+                                @NonNull final int[][] wordRows,
+                                @NonNull final long[] gramKeys,
+                                @NonNull final int[][] gramRows) {
+        mTitles = titles;
+        mWords = words;
+        mWordRows = wordRows;
+        mGramKeys = gramKeys;
+        mGramRows = gramRows;
+    }
+
+    /**
+     * Build the index of all the titles in the list. This walks every title, so call it on the
+     * background thread.
+     *
+     * @param entries {@link RingtoneEntries} to index.
+     * @return {@link RingtoneSearchIndex} of the entries.
+     */
+    @NonNull
+    static RingtoneSearchIndex build(@NonNull final RingtoneEntries entries) {
+        final int size = entries.size();
+        final String[] titles = new String[size];
+        final HashMap<String, GrowingIntArray> words = new HashMap<>();
+
+        long[] gramKeys = newGramTable(1024);
+        GrowingIntArray[] gramRows = new GrowingIntArray[gramKeys.length];
+        int gramCount = 0;
+
+        for (int row = 0; row < size; row++) {
+            final String title = normalize(entries.getTitle(row));
+            titles[row] = title;
+
+            for (String word : split(title)) {
+                GrowingIntArray rows = words.get(word);
+                if (rows == null) {
+                    rows = new GrowingIntArray();
+                    words.put(word, rows);
+                }
+                rows.addUnlessLast(row);
+            }
+
+            for (int i = 0; i + GRAM_SIZE <= title.length(); i++) {
+                final long gram = gramAt(title, i);
+                int slot = findSlot(gramKeys, gram);
+                if (gramKeys[slot] == EMPTY_GRAM) {
+                    //Keep the table at most half full.
+                    if ((gramCount + 1) * 2 > gramKeys.length) {
+                        final long[] oldKeys = gramKeys;
+                        final GrowingIntArray[] oldRows = gramRows;
+                        gramKeys = newGramTable(oldKeys.length * 2);
+                        gramRows = new GrowingIntArray[gramKeys.length];
+                        for (int j = 0; j < oldKeys.length; j++) {
+                            if (oldKeys[j] == EMPTY_GRAM) continue;
+                            final int newSlot = findSlot(gramKeys, oldKeys[j]);
+                            gramKeys[newSlot] = oldKeys[j];
+                            gramRows[newSlot] = oldRows[j];
+                        }
+                        slot = findSlot(gramKeys, gram);
+                    }
+                    gramKeys[slot] = gram;
+                    gramRows[slot] = new GrowingIntArray();
+                    gramCount++;
+                }
+                gramRows[slot].addUnlessLast(row);
+            }
+        }
+
+        final String[] sortedWords = words.keySet().toArray(new String[0]);
+        Arrays.sort(sortedWords);
+        final int[][] sortedWordRows = new int[sortedWords.length][];
+        for (int i = 0; i < sortedWords.length; i++) {
+            sortedWordRows[i] = words.get(sortedWords[i]).toArray();
+        }
+
+        final int[][] finalGramRows = new int[gramKeys.length][];
+        for (int i = 0; i < gramKeys.length; i++) {
+            if (gramRows[i] != null) finalGramRows[i] = gramRows[i].toArray();
+        }
+        return new RingtoneSearchIndex(titles, sortedWords, sortedWordRows, gramKeys, finalGramRows);
+    }
+
+    /**
+     * Find the rows matching the query.
+     *
+     * @param query text typed by the user.
+     * @return Sorted positions of the matching rows in the indexed {@link RingtoneEntries} or null
+     * if the query has no words, which means every row matches.
+     */
+    @Nullable
+    int[] search(@NonNull final String query) {
+        final ArrayList<String> terms = split(normalize(query));
+        if (terms.isEmpty()) return null;
+
+        int[] result = null;
+        for (String term : terms) {
+            final int[] rows = term.length() < GRAM_SIZE ? searchPrefix(term) : searchSubstring(term);
+            result = result == null ? rows : intersect(result, rows);
+            if (result.length == 0) break;
+        }
+        return result;
+    }
+
+    /**
+     * @return Sorted rows with a word starting with the term.
+     */
+    @NonNull
+    private int[] searchPrefix(@NonNull final String term) {
+        //Find the first word which is not smaller than the term.
+        int low = 0;
+        int high = mWords.length;
+        while (low < high) {
+            final int mid = (low + high) >>> 1;
+            if (mWords[mid].compareTo(term) < 0) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+
+        int count = 0;
+        int[] rows = NO_ROWS;
+        for (int i = low; i < mWords.length && mWords[i].startsWith(term); i++) {
+            final int[] wordRows = mWordRows[i];
+            if (count + wordRows.length > rows.length) {
+                rows = Arrays.copyOf(rows, Math.max(count + wordRows.length, count * 2));
+            }
+            System.arraycopy(wordRows, 0, rows, count, wordRows.length);
+            count += wordRows.length;
+        }
+        return sortUnique(rows, count);
+    }
+
+    /**
+     * @return Sorted rows with the title containing the term.
+     */
+    @NonNull
+    private int[] searchSubstring(@NonNull final String term) {
+        //Start with the rarest trigram, so the intersection stays small.
+        final int gramCount = term.length() - GRAM_SIZE + 1;
+        final int[][] postings = new int[gramCount][];
+        for (int i = 0; i < gramCount; i++) {
+            postings[i] = mGramRows[findSlot(mGramKeys, gramAt(term, i))];
+            if (postings[i] == null) return NO_ROWS;
+        }
+        Arrays.sort(postings, new Comparator<int[]>() {
+            @Override
+            public int compare(int[] rows1, int[] rows2) {
+                return rows1.length - rows2.length;
+            }
+        });
+
+        int[] candidates = postings[0];
+        for (int i = 1; i < postings.length && candidates.length > 0; i++) {
+            candidates = intersect(candidates, postings[i]);
+        }
+
+        //Trigrams may be in the different order in the title. Check the whole term.
+        int count = 0;
+        final int[] rows = new int[candidates.length];
+        for (int row : candidates) {
+            if (gramCount == 1 || mTitles[row].contains(term)) rows[count++] = row;
+        }
+        return count == rows.length ? rows : Arrays.copyOf(rows, count);
+    }
+
+    /**
+     * Convert the text to the lower case without the accents, so that "Café" matches "cafe".
+     */
+    @NonNull
+    static String normalize(@NonNull final String text) {
+        //Most of the titles are plain ASCII. They have no accents to remove.
+        boolean isAscii = true;
+        for (int i = 0; i < text.length() && isAscii; i++) isAscii = text.charAt(i) < 0x80;
+        if (isAscii) return text.toLowerCase(Locale.ROOT);
+
+        final String decomposed = Normalizer.normalize(text, Normalizer.Form.NFD);
+        final StringBuilder normalized = new StringBuilder(decomposed.length());
+        for (int i = 0; i < decomposed.length(); i++) {
+            final char c = decomposed.charAt(i);
+            if (Character.getType(c) != Character.NON_SPACING_MARK) normalized.append(c);
+        }
+        return normalized.toString().toLowerCase(Locale.ROOT);
+    }
+
+    /**
+     * Split the text in to the words made of the letters and the digits.
+     */
+    @NonNull
+    private static ArrayList<String> split(@NonNull final String text) {
+        final ArrayList<String> words = new ArrayList<>();
+        int start = -1;
+        for (int i = 0; i <= text.length(); i++) {
+            final boolean isWordChar = i < text.length() && Character.isLetterOrDigit(text.charAt(i));
+            if (isWordChar && start == -1) {
+                start = i;
+            } else if (!isWordChar && start != -1) {
+                words.add(text.substring(start, i));
+                start = -1;
+            }
+        }
+        return words;
+    }
+
+    private static long gramAt(@NonNull final String text, final int start) {
+        return ((long) text.charAt(start) << 32)
+                | ((long) text.charAt(start + 1) << 16)
+                | text.charAt(start + 2);
+    }
+
+    @NonNull
+    private static long[] newGramTable(final int capacity) {
+        final long[] keys = new long[capacity];
+        Arrays.fill(keys, EMPTY_GRAM);
+        return keys;
+    }
+
+    /**
+     * @return Slot of the trigram in the table or the empty slot where it should be added.
+     */
+    private static int findSlot(@NonNull final long[] keys, final long gram) {
+        final int mask = keys.length - 1;
+        int slot = (int) ((gram * 0x9E3779B97F4A7C15L) >>> 32) & mask;
+        while (keys[slot] != EMPTY_GRAM && keys[slot] != gram) slot = (slot + 1) & mask;
+        return slot;
+    }
+
+    /**
+     * Intersect the two sorted arrays.
+     */
+    @NonNull
+    private static int[] intersect(@NonNull final int[] rows1, @NonNull final int[] rows2) {
+        final int[] result = new int[Math.min(rows1.length, rows2.length)];
+        int count = 0;
+        int i = 0;
+        int j = 0;
+        while (i < rows1.length && j < rows2.length) {
+            if (rows1[i] < rows2[j]) {
+                i++;
+            } else if (rows1[i] > rows2[j]) {
+                j++;
+            } else {
+                result[count++] = rows1[i];
+                i++;
+                j++;
+            }
+        }
+        return count == result.length ? result : Arrays.copyOf(result, count);
+    }
+
+    @NonNull
+    private static int[] sortUnique(@NonNull final int[] rows, final int count) {
+        if (count == 0) return NO_ROWS;
+        Arrays.sort(rows, 0, count);
+
+        int unique = 1;
+        for (int i = 1; i < count; i++) {
+            if (rows[i] != rows[unique - 1]) rows[unique++] = rows[i];
+        }
+        return Arrays.copyOf(rows, unique);
+    }
+
+    /**
+     * Growing array of the sorted rows, used while building the index.
+     */
+    private static final class GrowingIntArray {
+
+        @NonNull
+        private int[] mValues = new int[4];
+
+        private int mSize = 0;
+
+        /**
+         * Add the row unless it is already the last row.
+         */
+        private void addUnlessLast(final int row) {
+            if (mSize > 0 && mValues[mSize - 1] == row) return;
+            if (mSize == mValues.length) mValues = Arrays.copyOf(mValues, mSize * 2);
+            mValues[mSize++] = row;
+        }
+
+        @NonNull
+        private int[] toArray() {
+            return Arrays.copyOf(mValues, mSize);
+        }
+    }
+}
@@ -0,0 +1,213 @@
+/*
+ * Copyright 2017 Keval Patel
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance wit
+ * the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for
+ *  the specific language governing permissions and limitations under the License.
+ */
+
+package com.kevalpatel.ringtonepicker;
+
+import androidx.annotation.NonNull;
+
+import java.text.Collator;
+import java.text.Normalizer;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Locale;
+
+/**
+ * Alphabetical sections of the {@link RingtoneEntries}. Each section is a run of the rows whose
+ * titles start with the same letter, and it remembers the position of its first row. The list of
+ * each {@link RingtoneTypes} is sorted by the title, so every type adds one run per letter.
+ * <p>
+ * The letters are compared with the {@link Collator} of the default locale, so the accented
+ * letters are grouped the way the user expects: "É" goes under "E" in English, while "Å" keeps
+ * its own section in Swedish. Titles starting with a digit or a symbol go under "#".
+ * <p>
+ * The index is built on the background thread along with the rows and the sections of each
+ * loaded chunk are added with {@link #addAll(RingtoneSectionIndex, int)}.
+ *
+ * @author <a href="https://github.com/kevalpatel2106">kevalpatel2106</a>
+ */
+final class RingtoneSectionIndex {
+
+    /**
+     * Section of the titles which don't start with a letter.
+     */
+    static final String OTHER_LABEL = "#";
+
+    @NonNull
+    private String[] mLabels;
+
+    @NonNull
+    private int[] mPositions;
+
+    private int mSectionCount = 0;
+
+    /**
+     * Number of the rows covered by the sections.
+     */
+    private int mRowCount = 0;
+
+    RingtoneSectionIndex() {
+        mLabels = new String[8];
+        mPositions = new int[8];
+    }
+
+    /**
+     * Build the sections of the rows. This reads every title, so call it on the background thread.
+     *
+     * @param entries {@link RingtoneEntries} to index.
+     * @param locale  {@link Locale} to compare the letters with.
+     * @return {@link RingtoneSectionIndex} of the entries.
+     */
+    @NonNull
+    static RingtoneSectionIndex build(@NonNull final RingtoneEntries entries, @NonNull final Locale locale) {
+        final RingtoneSectionIndex index = new RingtoneSectionIndex();
+        final Labeler labeler = new Labeler(locale);
+        for (int i = 0; i < entries.size(); i++) {
+            index.add(labeler.getLabel(entries.getTitle(i)), i);
+        }
+        index.mRowCount = entries.size();
+        return index;
+    }
+
+    /**
+     * Add the sections of the rows appended after the rows of this index.
+     *
+     * @param sections {@link RingtoneSectionIndex} of the appended rows.
+     * @param offset   position of the first appended row in this index.
+     */
+    void addAll(@NonNull final RingtoneSectionIndex sections, final int offset) {
+        for (int i = 0; i < sections.mSectionCount; i++) {
+            add(sections.mLabels[i], offset + sections.mPositions[i]);
+        }
+        mRowCount = Math.max(mRowCount, offset + sections.mRowCount);
+    }
+
+    /**
+     * @return Number of the sections.
+     */
+    int getSectionCount() {
+        return mSectionCount;
+    }
+
+    /**
+     * @return Number of the rows covered by the sections.
+     */
+    int getRowCount() {
+        return mRowCount;
+    }
+
+    /**
+     * @param section index of the section.
+     * @return Label of the section to display.
+     */
+    @NonNull
+    String getLabel(final int section) {
+        return mLabels[section];
+    }
+
+    /**
+     * @param section index of the section.
+     * @return Position of the first row of the section.
+     */
+    int getPosition(final int section) {
+        return mPositions[section];
+    }
+
+    /**
+     * Find the section of the row.
+     *
+     * @param position position of the row.
+     * @return index of the section containing the row or -1 if there are no sections.
+     */
+    int getSectionForPosition(final int position) {
+        if (mSectionCount == 0) return -1;
+
+        final int index = Arrays.binarySearch(mPositions, 0, mSectionCount, position);
+        return index >= 0 ? index : Math.max(0, -index - 2);
+    }
+
+    private void add(@NonNull final String label, final int position) {
+        //Continue the last section if the label is the same.
+        if (mSectionCount > 0 && mLabels[mSectionCount - 1].equals(label)) return;
+
+        if (mSectionCount == mLabels.length) {
+            mLabels = Arrays.copyOf(mLabels, mSectionCount * 2);
+            mPositions = Arrays.copyOf(mPositions, mSectionCount * 2);
+        }
+        mLabels[mSectionCount] = label;
+        mPositions[mSectionCount] = position;
+        mSectionCount++;
+    }
+
+    /**
+     * Finds the section label of the titles. The label of each first letter is computed once, as
+     * the collator is slow compared to walking the titles.
+     */
+    private static final class Labeler {
+
+        @NonNull
+        private final Locale mLocale;
+
+        @NonNull
+        private final Collator mCollator;
+
+        @NonNull
+        private final HashMap<Integer, String> mLabels = new HashMap<>();
+
+        private Labeler(@NonNull final Locale locale) {
+            mLocale = locale;
+            mCollator = Collator.getInstance(locale);
+
+            //Only the base letters matter. Case and accents are ignored.
+            mCollator.setStrength(Collator.PRIMARY);
+        }
+
+        @NonNull
+        private String getLabel(@NonNull final String title) {
+            //Skip the leading spaces and punctuation, such as the quotes.
+            int codePoint = -1;
+            for (int i = 0; i < title.length(); i += Character.charCount(codePoint)) {
+                codePoint = title.codePointAt(i);
+                if (Character.isLetterOrDigit(codePoint)) break;
+            }
+            if (codePoint == -1 || !Character.isLetter(codePoint)) return OTHER_LABEL;
+
+            String label = mLabels.get(codePoint);
+            if (label == null) {
+                label = computeLabel(codePoint);
+                mLabels.put(codePoint, label);
+            }
+            return label;
+        }
+
+        @NonNull
+        private String computeLabel(final int codePoint) {
+            String letter = new String(Character.toChars(codePoint)).toUpperCase(mLocale);
+
+            //Some letters turn in to two letters, such as "ß" to "SS". Keep them as a single letter.
+            if (letter.codePointCount(0, letter.length()) != 1) {
+                letter = new String(Character.toChars(Character.toUpperCase(codePoint)));
+            }
+
+            //Use the base letter if the locale treats the accented letter as the same letter.
+            final String decomposed = Normalizer.normalize(letter, Normalizer.Form.NFD);
+            final StringBuilder base = new StringBuilder(decomposed.length());
+            for (int i = 0; i < decomposed.length(); i++) {
+                final char c = decomposed.charAt(i);
+                if (Character.getType(c) != Character.NON_SPACING_MARK) base.append(c);
+            }
+            return base.length() > 0 && mCollator.compare(base.toString(), letter) == 0
+                    ? base.toString()
+                    : letter;
+        }
+    }
+}
@@ -0,0 +1,376 @@
+/*
+ * Copyright 2017 Keval Patel
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance wit
+ * the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for
+ *  the specific language governing permissions and limitations under the License.
+ */
+
+package com.kevalpatel.ringtonepicker;
+
+import android.annotation.SuppressLint;
+import android.content.Context;
+import android.database.Cursor;
+import android.net.Uri;
+import android.os.Build;
+import android.provider.MediaStore;
+import android.util.Log;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Locale;
+import java.util.Set;
+import java.util.TreeSet;
+
+/**
+ * Stores the loaded {@link RingtoneEntries} of each {@link RingtoneTypes} in the cache directory,
+ * so that the first dialog after the process restart doesn't have to query the content providers.
+ * <p>
+ * Every snapshot is stamped with the state of the {@link MediaStore} when it was loaded. The
+ * snapshot is used only while the stamp matches the current state. On API 30 and above, the stamp
+ * is made of the {@link MediaStore} version and the generation of each volume, which changes on
+ * every update of a row.
+ * <p>
+ * The older versions have no generation, so only {@link RingtonePickerDialog.Builder#TYPE_MUSIC}
+ * is snapshotted. Its stamp is made of the {@link MediaStore} version and the count, the largest
+ * row id and the latest modification date of the music rows, each read with a single row query.
+ * The tone types are not snapshotted there, as a re-flagged or renamed tone doesn't change any of
+ * these. Their lists are small, so they are queried instead.
+ * <p>
+ * The stamp also holds whether the storage permission is granted. The music is readable only with
+ * the permission, so its snapshot is never read or written without it and is deleted instead.
+ * <p>
+ * Snapshot file layout, in the big endian order:
+ * <pre>
+ * int     magic, format version, ringtone type
+ * int+utf stamp
+ * int     base uri count, followed by int+utf for each base uri
+ * int     row count (n)
+ * long[n] row ids
+ * int[n]  base indexes
+ * int[n+1] offsets of the titles in the title block
+ * byte[]  title block, UTF-8
+ * </pre>
+ * The file is read through a memory mapped buffer, so the arrays are copied straight out of the
+ * page cache.
+ *
+ * @author <a href="https://github.com/kevalpatel2106">kevalpatel2106</a>
+ */
+final class RingtoneSnapshot {
+
+    private static final int MAGIC = 0x52545043;
+
+    /**
+     * Version of the file layout. Increment it whenever the layout changes, so that the old files
+     * are ignored.
+     */
+    private static final int FORMAT_VERSION = 1;
+
+    private static final String DIRECTORY_NAME = "ringtonepicker";
+
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+    @NonNull
+    private final File mDirectory;
+
+    /**
+     * Stamp computed for the {@link #sStampGeneration} of the {@link RingtoneCatalogCache}. It is
+     * computed once for all the types which can be snapshotted.
+     */
+    @Nullable
+    private static String sStamp;
+
+    private static int sStampGeneration = -1;
+
+    RingtoneSnapshot(@NonNull final Context application) {
+        this(new File(application.getCacheDir(), DIRECTORY_NAME));
+    }
+
+    /**
+     * @param directory directory to store the snapshots in. It is created on the first write.
+     */
+    RingtoneSnapshot(@NonNull final File directory) {
+        mDirectory = directory;
+    }
+
+    /**
+     * Get the stamp of the current state of the {@link MediaStore} for the type.
+     *
+     * @param type       {@link RingtoneTypes} to snapshot.
+     * @param generation generation of the {@link RingtoneCatalogCache}. The stamp is reused until
+     *                   the cache gets invalidated.
+     * @return stamp or null if the type cannot be snapshotted or the state cannot be read.
+     * Snapshots cannot be used without a stamp.
+     */
+    @Nullable
+    static String getStamp(@NonNull final Context context,
+                           @RingtoneTypes final int type,
+                           final int generation) {
+        if (Build.VERSION.SDK_INT < Build.VERSION_CODES.R
+                && type != RingtonePickerDialog.Builder.TYPE_MUSIC) {
+            return null;
+        }
+
+        //Permission can be granted without restarting the process, so it is not kept with the stamp.
+        final boolean isPermissionGranted = RingtoneUtils.checkForStorageReadPermission(context);
+        if (type == RingtonePickerDialog.Builder.TYPE_MUSIC && !isPermissionGranted) return null;
+
+        String stamp;
+        final boolean isCached;
+        synchronized (RingtoneSnapshot.class) {
+            stamp = sStamp;
+            isCached = sStampGeneration == generation;
+        }
+
+        if (!isCached) {
+            try {
+                stamp = computeStamp(context);
+            } catch (RuntimeException e) {
+                //Storage permission is not granted or the provider is not available.
+                stamp = null;
+            }
+
+            synchronized (RingtoneSnapshot.class) {
+                sStamp = stamp;
+                sStampGeneration = generation;
+            }
+        }
+        return stamp == null ? null : stamp + (isPermissionGranted ? "|storage" : "|no-storage");
+    }
+
+    @SuppressLint("NewApi")
+    @Nullable
+    private static String computeStamp(@NonNull final Context context) {
+        if (Build.VERSION.SDK_INT < Build.VERSION_CODES.JELLY_BEAN_MR1) return null;
+
+        final StringBuilder stamp = new StringBuilder(MediaStore.getVersion(context))
+                .append('|')
+                .append(Locale.getDefault());
+
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.R) {
+            stamp.append('|').append(MediaStore.getGeneration(context, MediaStore.VOLUME_INTERNAL));
+
+            //Sort the volumes, so the stamp doesn't depend on the order of the volumes.
+            final Set<String> volumes = new TreeSet<>(MediaStore.getExternalVolumeNames(context));
+            for (String volume : volumes) {
+                stamp.append('|').append(volume)
+                        .append(':').append(MediaStore.getGeneration(context, volume));
+            }
+        } else {
+            //Only the music is snapshotted, so only the music rows are read.
+            final Uri tableUri = MediaStore.Audio.Media.EXTERNAL_CONTENT_URI;
+            stamp.append('|').append(RingtoneUtils.countRows(context, tableUri, RingtoneUtils.MUSIC_SELECTION, null))
+                    .append(':').append(readLatest(context, tableUri, MediaStore.Audio.Media._ID))
+                    .append(':').append(readLatest(context, tableUri, MediaStore.Audio.Media.DATE_MODIFIED));
+        }
+        return stamp.toString();
+    }
+
+    /**
+     * Read the largest value of the column among the music rows. Only the first row of the sorted
+     * rows is returned, so the table is not walked.
+     *
+     * @return largest value or 0 if there are no rows.
+     */
+    private static long readLatest(@NonNull final Context context,
+                                   @NonNull final Uri tableUri,
+                                   @NonNull final String column) {
+        final Cursor cursor = context.getContentResolver().query(tableUri,
+                new String[]{column},
+                RingtoneUtils.MUSIC_SELECTION,
+                null,
+                column + " DESC LIMIT 1");
+        if (cursor == null) throw new IllegalStateException("Cannot query " + tableUri);
+
+        try {
+            return cursor.moveToFirst() ? cursor.getLong(0) : 0;
+        } finally {
+            cursor.close();
+        }
+    }
+
+    /**
+     * Read the snapshot of the type.
+     *
+     * @param type  {@link RingtoneTypes} to read.
+     * @param stamp current stamp from {@link #getStamp(Context, int, int)}.
+     * @return {@link RingtoneEntries} of the type or null if there is no snapshot or the snapshot
+     * was stamped with a different stamp.
+     */
+    @Nullable
+    RingtoneEntries read(@RingtoneTypes final int type, @NonNull final String stamp) {
+        final File file = getFile(type);
+        if (!file.exists()) return null;
+
+        FileInputStream inputStream = null;
+        try {
+            inputStream = new FileInputStream(file);
+            final FileChannel channel = inputStream.getChannel();
+            final ByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+
+            if (buffer.getInt() != MAGIC
+                    || buffer.getInt() != FORMAT_VERSION
+                    || buffer.getInt() != type
+                    || !stamp.equals(readString(buffer))) {
+                return null;
+            }
+
+            final int baseCount = buffer.getInt();
+            final ArrayList<String> baseUris = new ArrayList<>(baseCount);
+            for (int i = 0; i < baseCount; i++) baseUris.add(readString(buffer));
+
+            final int size = buffer.getInt();
+            final long[] ids = new long[size];
+            buffer.asLongBuffer().get(ids);
+            buffer.position(buffer.position() + size * 8);
+
+            final int[] baseIndexes = new int[size];
+            buffer.asIntBuffer().get(baseIndexes);
+            buffer.position(buffer.position() + size * 4);
+
+            final int[] offsets = new int[size + 1];
+            buffer.asIntBuffer().get(offsets);
+            buffer.position(buffer.position() + (size + 1) * 4);
+
+            final byte[] titleBlock = new byte[offsets[size]];
+            buffer.get(titleBlock);
+
+            final String[] titles = new String[size];
+            for (int i = 0; i < size; i++) {
+                if (baseIndexes[i] < 0 || baseIndexes[i] >= baseCount) return null;
+                titles[i] = new String(titleBlock, offsets[i], offsets[i + 1] - offsets[i], UTF_8);
+            }
+            //Every row of the snapshot belongs to its type.
+            final int[] typeFlags = new int[size];
+            Arrays.fill(typeFlags, RingtoneTypeSource.typeFlagOf(type));
+            return RingtoneEntries.of(baseUris, titles, ids, baseIndexes, typeFlags);
+        } catch (IOException | BufferUnderflowException | IndexOutOfBoundsException
+                | IllegalArgumentException | NegativeArraySizeException e) {
+            //Snapshot is corrupted. It will be replaced after the next load.
+            Log.w(RingtoneSnapshot.class.getName(), "Cannot read the snapshot of " + type, e);
+            return null;
+        } finally {
+            closeQuietly(inputStream);
+        }
+    }
+
+    /**
+     * Write the snapshot of the type. The snapshot is written to a temporary file first and then
+     * renamed, so the readers never see a partially written snapshot.
+     *
+     * @param type    {@link RingtoneTypes} of the ringtones.
+     * @param entries {@link RingtoneEntries} of the type.
+     * @param stamp   stamp from {@link #getStamp(Context, int, int)}, read before the load started.
+     */
+    void write(@RingtoneTypes final int type,
+               @NonNull final RingtoneEntries entries,
+               @NonNull final String stamp) {
+        if (!mDirectory.exists() && !mDirectory.mkdirs()) return;
+
+        File tempFile = null;
+        DataOutputStream outputStream = null;
+        try {
+            tempFile = File.createTempFile("catalog_" + type, ".tmp", mDirectory);
+            outputStream = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tempFile)));
+
+            outputStream.writeInt(MAGIC);
+            outputStream.writeInt(FORMAT_VERSION);
+            outputStream.writeInt(type);
+            writeString(outputStream, stamp);
+
+            outputStream.writeInt(entries.getBaseUriCount());
+            for (int i = 0; i < entries.getBaseUriCount(); i++) {
+                writeString(outputStream, entries.getBaseUri(i));
+            }
+
+            final int size = entries.size();
+            outputStream.writeInt(size);
+            for (int i = 0; i < size; i++) outputStream.writeLong(entries.getId(i));
+            for (int i = 0; i < size; i++) outputStream.writeInt(entries.getBaseIndex(i));
+
+            final byte[][] titles = new byte[size][];
+            int offset = 0;
+            outputStream.writeInt(offset);
+            for (int i = 0; i < size; i++) {
+                titles[i] = entries.getTitle(i).getBytes(UTF_8);
+                offset += titles[i].length;
+                outputStream.writeInt(offset);
+            }
+            for (byte[] title : titles) outputStream.write(title);
+
+            outputStream.close();
+            outputStream = null;
+
+            if (!tempFile.renameTo(getFile(type))) {
+                Log.w(RingtoneSnapshot.class.getName(), "Cannot save the snapshot of " + type);
+            }
+        } catch (IOException e) {
+            Log.w(RingtoneSnapshot.class.getName(), "Cannot write the snapshot of " + type, e);
+        } finally {
+            closeQuietly(outputStream);
+            if (tempFile != null && tempFile.exists()) {
+                //noinspection ResultOfMethodCallIgnored
+                tempFile.delete();
+            }
+        }
+    }
+
+    /**
+     * Delete the snapshot of the type, such as when the rows of the type are no longer readable.
+     *
+     * @param type {@link RingtoneTypes} of the snapshot.
+     */
+    void delete(@RingtoneTypes final int type) {
+        final File file = getFile(type);
+        if (file.exists() && !file.delete()) {
+            Log.w(RingtoneSnapshot.class.getName(), "Cannot delete the snapshot of " + type);
+        }
+    }
+
+    @NonNull
+    private File getFile(@RingtoneTypes final int type) {
+        return new File(mDirectory, "catalog_" + type + ".bin");
+    }
+
+    @NonNull
+    private static String readString(@NonNull final ByteBuffer buffer) {
+        final byte[] bytes = new byte[buffer.getInt()];
+        buffer.get(bytes);
+        return new String(bytes, UTF_8);
+    }
+
+    private static void writeString(@NonNull final DataOutputStream outputStream,
+                                    @NonNull final String value) throws IOException {
+        final byte[] bytes = value.getBytes(UTF_8);
+        outputStream.writeInt(bytes.length);
+        outputStream.write(bytes);
+    }
+
+    private static void closeQuietly(@Nullable final Closeable closeable) {
+        if (closeable == null) return;
+        try {
+            closeable.close();
+        } catch (IOException e) {
+            //Nothing to do.
+        }
+    }
+}
@@ -0,0 +1,72 @@
+/*
+ * Copyright 2017 Keval Patel
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance wit
+ * the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for
+ *  the specific language governing permissions and limitations under the License.
+ */
+
+package com.kevalpatel.ringtonepicker;
+
+import android.content.Context;
+import android.net.Uri;
+
+import androidx.annotation.NonNull;
+
+/**
+ * Source of the ringtones to display in the {@link RingtonePickerDialog}, such as the tones
+ * shipped in the application's raw resources or stored in its private storage. Add the source
+ * with {@link RingtonePickerDialog.Builder#addRingtoneSource(RingtoneSource)}.
+ * <p>
+ * Every source is loaded on its own background thread, at the same time as the other sources and
+ * the {@link RingtoneTypes}. The ringtones of the sources are listed after the ringtones of the
+ * types, in the order the sources were added. A ringtone which is already listed by an earlier
+ * type or source is not listed again.
+ * <p>
+ * Ringtones of the sources are not cached, so the source is loaded every time the dialog is
+ * displayed. Implement {@link CacheableRingtoneSource} to keep them in the memory.
+ *
+ * @author <a href="https://github.com/kevalpatel2106">kevalpatel2106</a>
+ */
+public interface RingtoneSource {
+
+    /**
+     * Load the ringtones of this source and add them to the collector. This is called on a
+     * background thread, so it can read the disk or query the content providers.
+     * <p>
+     * Ringtones are displayed in the order they are added. Add them sorted by the title, so they
+     * can be reached with the fast scroll rail.
+     *
+     * @param context   application {@link Context}.
+     * @param collector {@link Collector} to add the ringtones to.
+     */
+    void loadRingtones(@NonNull Context context, @NonNull Collector collector);
+
+    /**
+     * Receives the ringtones of a {@link RingtoneSource} while it is being loaded.
+     */
+    interface Collector {
+
+        /**
+         * Add the ringtone to the list. Once the dialog is closed, this throws
+         * {@link androidx.core.os.OperationCanceledException} to stop the source. Let the exception
+         * pass through.
+         *
+         * @param title title of the ringtone to display.
+         * @param uri   {@link Uri} of the ringtone to play and to pass to the
+         *              {@link RingtonePickerListener}.
+         */
+        void add(@NonNull String title, @NonNull Uri uri);
+
+        /**
+         * @return True if the dialog is closed and the ringtones are not needed anymore. Check this
+         * before any slow work, such as opening a file.
+         */
+        boolean isCancelled();
+    }
+}
@@ -0,0 +1,145 @@
+/*
+ * Copyright 2017 Keval Patel
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance wit
+ * the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for
+ *  the specific language governing permissions and limitations under the License.
+ */
+
+package com.kevalpatel.ringtonepicker;
+
+import android.annotation.SuppressLint;
+import android.content.Context;
+import android.net.Uri;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+import androidx.core.os.CancellationSignal;
+import androidx.core.os.OperationCanceledException;
+
+/**
+ * Built-in {@link CacheableRingtoneSource} of the ringtones of a {@link RingtoneTypes}, read with
+ * {@link RingtoneUtils}.
+ * <p>
+ * The types are cached like any other {@link CacheableRingtoneSource}, but
+ * {@link RingtoneLoaderTask} doesn't go through the {@link RingtoneSource.Collector} to read them.
+ * It calls {@link #load(Context, CancellationSignal, RingtoneUtils.ChunkListener, int,
+ * RingtoneUtils.QueryTimings)} directly, so the rows can be read from the {@link RingtoneSnapshot}
+ * or patched by the {@link MusicDeltaSync} and delivered in chunks.
+ *
+ * @author <a href="https://github.com/kevalpatel2106">kevalpatel2106</a>
+ */
+final class RingtoneTypeSource implements CacheableRingtoneSource {
+
+    @RingtoneTypes
+    private final int mType;
+
+    /**
+     * @param type {@link RingtoneTypes} to load.
+     * @throws IllegalArgumentException if the type is invalid.
+     */
+    RingtoneTypeSource(@RingtoneTypes final int type) {
+        switch (type) {
+            case RingtonePickerDialog.Builder.TYPE_RINGTONE:
+            case RingtonePickerDialog.Builder.TYPE_ALARM:
+            case RingtonePickerDialog.Builder.TYPE_MUSIC:
+            case RingtonePickerDialog.Builder.TYPE_NOTIFICATION:
+                mType = type;
+                break;
+            default:
+                throw new IllegalArgumentException("Invalid ringtone type.");
+        }
+    }
+
+    @RingtoneTypes
+    int getType() {
+        return mType;
+    }
+
+    @NonNull
+    @Override
+    public String getCacheKey() {
+        return cacheKeyOf(mType);
+    }
+
+    /**
+     * @param type {@link RingtoneTypes} of the rows.
+     * @return Key of the rows of the type in the {@link RingtoneCatalogCache}. It cannot be the
+     * same as the key of any custom source, which should start with its own package name.
+     */
+    @NonNull
+    static String cacheKeyOf(@RingtoneTypes final int type) {
+        return "com.kevalpatel.ringtonepicker.type/" + type;
+    }
+
+    /**
+     * @param type {@link RingtoneTypes} of the rows.
+     * @return Type flag of the rows of the type, such as {@link RingtoneEntries#FLAG_RINGTONE}.
+     * @throws IllegalArgumentException if the type is invalid.
+     */
+    static int typeFlagOf(@RingtoneTypes final int type) {
+        switch (type) {
+            case RingtonePickerDialog.Builder.TYPE_RINGTONE:
+                return RingtoneEntries.FLAG_RINGTONE;
+            case RingtonePickerDialog.Builder.TYPE_NOTIFICATION:
+                return RingtoneEntries.FLAG_NOTIFICATION;
+            case RingtonePickerDialog.Builder.TYPE_ALARM:
+                return RingtoneEntries.FLAG_ALARM;
+            case RingtonePickerDialog.Builder.TYPE_MUSIC:
+                return RingtoneEntries.FLAG_MUSIC;
+            default:
+                throw new IllegalArgumentException("Invalid ringtone type.");
+        }
+    }
+
+    @SuppressLint("MissingPermission")
+    @Override
+    public void loadRingtones(@NonNull final Context context, @NonNull final Collector collector) {
+        final RingtoneEntries ringtones = load(context, null, null, 0, null);
+        for (int i = 0; i < ringtones.size(); i++) {
+            collector.add(ringtones.getTitle(i), Uri.parse(ringtones.getUriString(i)));
+        }
+    }
+
+    /**
+     * Query the ringtones of the type.
+     *
+     * @param context            instance of the caller.
+     * @param cancellationSignal {@link CancellationSignal} to abort the query.
+     * @param chunkListener      {@link RingtoneUtils.ChunkListener} to get the rows while querying
+     *                           or null. Only {@link RingtonePickerDialog.Builder#TYPE_MUSIC} is
+     *                           delivered in chunks.
+     * @param chunkSize          number of rows in each chunk.
+     * @param timings            {@link RingtoneUtils.QueryTimings} to record the time spent or null.
+     * @return {@link RingtoneEntries} of all the ringtone of the type.
+     * @throws OperationCanceledException if the query is cancelled.
+     */
+    @SuppressLint("MissingPermission")
+    @NonNull
+    RingtoneEntries load(@NonNull final Context context,
+                         @Nullable final CancellationSignal cancellationSignal,
+                         @Nullable final RingtoneUtils.ChunkListener chunkListener,
+                         final int chunkSize,
+                         @Nullable final RingtoneUtils.QueryTimings timings) {
+        switch (mType) {
+            case RingtonePickerDialog.Builder.TYPE_RINGTONE:
+                return RingtoneUtils.getRingTone(context, cancellationSignal, timings);
+            case RingtonePickerDialog.Builder.TYPE_ALARM:
+                return RingtoneUtils.getAlarmTones(context, cancellationSignal, timings);
+            case RingtonePickerDialog.Builder.TYPE_MUSIC:
+                return RingtoneUtils.getMusic(context,
+                        cancellationSignal,
+                        chunkListener,
+                        chunkSize,
+                        timings);
+            case RingtonePickerDialog.Builder.TYPE_NOTIFICATION:
+            default:
+                return RingtoneUtils.getNotificationTones(context, cancellationSignal, timings);
+        }
+    }
+}
@@ -16,20 +16,34 @@ package com.kevalpatel.ringtonepicker;
 
 import android.Manifest;
 import android.annotation.SuppressLint;
+import android.content.ContentResolver;
 import android.content.Context;
 import android.content.pm.PackageManager;
 import android.database.Cursor;
 import android.media.Ringtone;
 import android.media.RingtoneManager;
 import android.net.Uri;
+import android.os.Build;
+import android.os.Bundle;
 import android.provider.MediaStore;
+import android.provider.Settings;
 import androidx.annotation.CheckResult;
 import androidx.annotation.NonNull;
 import androidx.annotation.Nullable;
 import androidx.annotation.RequiresPermission;
 import androidx.core.app.ActivityCompat;
+import androidx.core.content.ContentResolverCompat;
+import androidx.core.os.CancellationSignal;
+import androidx.core.os.OperationCanceledException;
+import androidx.tracing.Trace;
 
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
 import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
 
 /**
  * Created by Keval on 20-Feb-17.
@@ -40,110 +54,295 @@ import java.util.LinkedHashMap;
 public final class RingtoneUtils {
 
     /**
-     * Load the list of all the ringtone registered using {@link RingtoneManager}. It will add title
-     * as the key and uri of the sound as value in given {@link LinkedHashMap}.
+     * Maximum number of the row ids to query at once. SQLite doesn't accept more than 999
+     * arguments in one query.
+     */
+    private static final int MAX_IDS_PER_QUERY = 500;
+
+    /**
+     * Selection of the rows of the {@link RingtonePickerDialog.Builder#TYPE_MUSIC} list.
+     */
+    static final String MUSIC_SELECTION = MediaStore.Audio.Media.IS_MUSIC + "!= 0";
+
+    /**
+     * Order of the {@link RingtonePickerDialog.Builder#TYPE_MUSIC} list. The rows with the same
+     * title are sorted by the id, so {@link MusicDeltaSync} can merge the changed rows in the same
+     * order.
+     */
+    static final String MUSIC_SORT_ORDER = MediaStore.Audio.Media.TITLE + " ASC, " + MediaStore.Audio.Media._ID + " ASC";
+
+    /**
+     * Names of the trace sections. These are constants, so nothing is allocated if the tracing is
+     * off.
+     */
+    private static final String TRACE_GET_TONE = "RingtonePicker.getTone";
+    private static final String TRACE_GET_MUSIC = "RingtonePicker.getMusic";
+
+    /**
+     * Load the list of all the ringtone registered using {@link RingtoneManager}.
      *
-     * @param context instance of the caller.
-     * @return {@link LinkedHashMap} of the title-{@link Uri} pair of all the ringtone.
+     * @param context            instance of the caller.
+     * @param cancellationSignal {@link CancellationSignal} to abort the query.
+     * @param timings            {@link QueryTimings} to record the time spent or null.
+     * @return {@link RingtoneEntries} of all the ringtone.
+     * @throws OperationCanceledException if the query is cancelled.
      */
     @NonNull
     @CheckResult
-    static LinkedHashMap<String, Uri> getRingTone(@NonNull final Context context) {
-        return getTone(context, RingtoneManager.TYPE_RINGTONE);
+    static RingtoneEntries getRingTone(@NonNull final Context context,
+                                       @Nullable final CancellationSignal cancellationSignal,
+                                       @Nullable final QueryTimings timings) {
+        return getTone(context, RingtoneManager.TYPE_RINGTONE, cancellationSignal, timings);
     }
 
     /**
-     * Load the list of all the notification tones registered using {@link RingtoneManager}. It will add title as the key and
-     * uri of the sound as value in given {@link LinkedHashMap}.
+     * Load the list of all the notification tones registered using {@link RingtoneManager}.
      *
-     * @param context instance of the caller.
-     * @return {@link LinkedHashMap} of the title-{@link Uri} pair of all the notification tone.
+     * @param context            instance of the caller.
+     * @param cancellationSignal {@link CancellationSignal} to abort the query.
+     * @param timings            {@link QueryTimings} to record the time spent or null.
+     * @return {@link RingtoneEntries} of all the notification tone.
+     * @throws OperationCanceledException if the query is cancelled.
      */
     @NonNull
     @CheckResult
-    static LinkedHashMap<String, Uri> getNotificationTones(@NonNull final Context context) {
-        return getTone(context, RingtoneManager.TYPE_NOTIFICATION);
+    static RingtoneEntries getNotificationTones(@NonNull final Context context,
+                                                @Nullable final CancellationSignal cancellationSignal,
+                                                @Nullable final QueryTimings timings) {
+        return getTone(context, RingtoneManager.TYPE_NOTIFICATION, cancellationSignal, timings);
     }
 
     /**
-     * Load the list of all the alarm tones registered using {@link RingtoneManager}. It will add
-     * title as the key and uri of the sound as value in given {@link LinkedHashMap}.
+     * Load the list of all the alarm tones registered using {@link RingtoneManager}.
      *
-     * @param context instance of the caller.
-     * @return {@link LinkedHashMap} of the title-{@link Uri} pair of all the alarm tone.
+     * @param context            instance of the caller.
+     * @param cancellationSignal {@link CancellationSignal} to abort the query.
+     * @param timings            {@link QueryTimings} to record the time spent or null.
+     * @return {@link RingtoneEntries} of all the alarm tone.
+     * @throws OperationCanceledException if the query is cancelled.
      */
     @NonNull
     @CheckResult
-    static LinkedHashMap<String, Uri> getAlarmTones(@NonNull final Context context) {
-        return getTone(context, RingtoneManager.TYPE_ALARM);
+    static RingtoneEntries getAlarmTones(@NonNull final Context context,
+                                         @Nullable final CancellationSignal cancellationSignal,
+                                         @Nullable final QueryTimings timings) {
+        return getTone(context, RingtoneManager.TYPE_ALARM, cancellationSignal, timings);
     }
 
     /**
-     * Get the tone from {@link RingtoneManager} for any given type. It will add title as the key and
-     * uri of the sound as value in given {@link LinkedHashMap}.
+     * Get the tone from {@link RingtoneManager} for any given type. Every row of the cursor is
+     * kept, even if the title is the same as the title of another row. The rows are stored by their
+     * table uri and row id, so no {@link Uri} is created while reading the cursor.
      *
-     * @param context instance of the caller
-     * @param type    type of the ringtone from {@link RingtonePickerDialog.Builder#TYPE_NOTIFICATION},
-     *                {@link RingtonePickerDialog.Builder#TYPE_RINGTONE} or
-     *                {@link RingtonePickerDialog.Builder#TYPE_ALARM}.
-     * @return {@link LinkedHashMap} of the title-{@link Uri} pair of all the ringtone of given type.
+     * {@link RingtoneManager} doesn't accept the {@link CancellationSignal}, so the signal is
+     * checked while walking the cursor.
+     *
+     * @param context            instance of the caller
+     * @param type               type of the ringtone from {@link RingtonePickerDialog.Builder#TYPE_NOTIFICATION},
+     *                           {@link RingtonePickerDialog.Builder#TYPE_RINGTONE} or
+     *                           {@link RingtonePickerDialog.Builder#TYPE_ALARM}.
+     * @param cancellationSignal {@link CancellationSignal} to abort the query.
+     * @param timings            {@link QueryTimings} to record the time spent or null.
+     * @return {@link RingtoneEntries} of all the ringtone of given type.
+     * @throws OperationCanceledException if the query is cancelled.
      */
     @CheckResult
     @NonNull
-    private static LinkedHashMap<String, Uri> getTone(@NonNull final Context context, final int type) {
-        final LinkedHashMap<String, Uri> ringToneList = new LinkedHashMap<>();
+    private static RingtoneEntries getTone(@NonNull final Context context,
+                                           final int type,
+                                           @Nullable final CancellationSignal cancellationSignal,
+                                           @Nullable final QueryTimings timings) {
+        Trace.beginSection(TRACE_GET_TONE);
+        try {
+            final RingtoneEntries ringToneList = new RingtoneEntries();
+            final int typeFlag = RingtoneTypeSource.typeFlagOf(type);
 
-        final RingtoneManager ringtoneManager = new RingtoneManager(context);
-        ringtoneManager.setType(type);
+            final long queryStart = System.nanoTime();
+            final RingtoneManager ringtoneManager = new RingtoneManager(context);
+            ringtoneManager.setType(type);
 
-        final Cursor ringsCursor = ringtoneManager.getCursor();
-        while (ringsCursor.moveToNext()) {
-            ringToneList.put(ringsCursor.getString(RingtoneManager.TITLE_COLUMN_INDEX),
-                    Uri.parse(ringsCursor.getString(RingtoneManager.URI_COLUMN_INDEX) + "/"
-                            + ringsCursor.getString(RingtoneManager.ID_COLUMN_INDEX)));
+            final Cursor ringsCursor = ringtoneManager.getCursor();
+            final long walkStart = System.nanoTime();
+            try {
+                while (ringsCursor.moveToNext()) {
+                    if (cancellationSignal != null) cancellationSignal.throwIfCanceled();
+
+                    ringToneList.add(ringsCursor.getString(RingtoneManager.TITLE_COLUMN_INDEX),
+                            ringsCursor.getString(RingtoneManager.URI_COLUMN_INDEX),
+                            ringsCursor.getLong(RingtoneManager.ID_COLUMN_INDEX),
+                            typeFlag);
+                }
+            } finally {
+                ringsCursor.close();
+                if (timings != null) timings.record(queryStart, walkStart);
+            }
+            return ringToneList;
+        } finally {
+            Trace.endSection();
         }
-        ringsCursor.close();
-        return ringToneList;
     }
 
     /**
-     * Get the list of the music (sound) files from the phone storage. It will add title as the key and
-     * uri of the sound as value in given {@link LinkedHashMap}.
+     * Get the list of the music (sound) files from the phone storage. Only the title and the row id
+     * of each track are read, the {@link Uri} of the track is built by {@link RingtoneEntries}
+     * when it is needed.
      *
-     * @param context instance of the caller.
-     * @return {@link LinkedHashMap} of the title-{@link Uri} pair of all the music tracks.
-     * @throws IllegalStateException If storage read permission is not available.
+     * @param context            instance of the caller.
+     * @param cancellationSignal {@link CancellationSignal} to abort the query.
+     * @return {@link RingtoneEntries} of all the music tracks.
+     * @throws IllegalStateException      If storage read permission is not available.
+     * @throws OperationCanceledException if the query is cancelled.
+     */
+    @NonNull
+    @CheckResult
+    @RequiresPermission(anyOf = {Manifest.permission.READ_EXTERNAL_STORAGE, Manifest.permission.WRITE_EXTERNAL_STORAGE})
+    static RingtoneEntries getMusic(@NonNull final Context context,
+                                    @Nullable final CancellationSignal cancellationSignal) {
+        return getMusic(context, cancellationSignal, null, 0, null);
+    }
+
+    /**
+     * Get the list of the music (sound) files from the phone storage. While the cursor is being read,
+     * every chunkSize rows are also delivered to the {@link ChunkListener}. The last chunk may be
+     * smaller, so all the chunks together contain every row of the returned {@link RingtoneEntries}.
+     *
+     * @param context            instance of the caller.
+     * @param cancellationSignal {@link CancellationSignal} to abort the query.
+     * @param chunkListener      {@link ChunkListener} to get the rows while loading or null.
+     * @param chunkSize          number of rows in each chunk.
+     * @param timings            {@link QueryTimings} to record the time spent or null.
+     * @return {@link RingtoneEntries} of all the music tracks.
+     * @throws IllegalStateException      If storage read permission is not available.
+     * @throws OperationCanceledException if the query is cancelled.
      */
     @NonNull
     @CheckResult
     @SuppressLint("InlinedApi")
     @RequiresPermission(anyOf = {Manifest.permission.READ_EXTERNAL_STORAGE, Manifest.permission.WRITE_EXTERNAL_STORAGE})
-    static LinkedHashMap<String, Uri> getMusic(@NonNull final Context context) {
-        final LinkedHashMap<String, Uri> ringToneList = new LinkedHashMap<>();
-
-        //Check for the read permission
-        if (!RingtoneUtils.checkForStorageReadPermission(context)) {
-            throw new IllegalStateException("Storage permission is not available.");
-        }
-
-        //Prepare query
-        final Cursor mediaCursor = context.getContentResolver()
-                .query(MediaStore.Audio.Media.EXTERNAL_CONTENT_URI,
-                        new String[]{MediaStore.Audio.Media.TITLE, MediaStore.Audio.Media._ID},
-                        MediaStore.Audio.Media.IS_MUSIC + "!= 0",
-                        null,
-                        MediaStore.Audio.Media.TITLE + " ASC");
-
-        if (mediaCursor != null) {
-            while (mediaCursor.moveToNext()) {
-                ringToneList.put(mediaCursor.getString(mediaCursor.getColumnIndex(MediaStore.Audio.Media.TITLE)),
-                        Uri.parse(MediaStore.Audio.Media.EXTERNAL_CONTENT_URI + "/"
-                                + mediaCursor.getString(mediaCursor.getColumnIndex(MediaStore.Audio.Media._ID))));
+    static RingtoneEntries getMusic(@NonNull final Context context,
+                                    @Nullable final CancellationSignal cancellationSignal,
+                                    @Nullable final ChunkListener chunkListener,
+                                    final int chunkSize,
+                                    @Nullable final QueryTimings timings) {
+        Trace.beginSection(TRACE_GET_MUSIC);
+        try {
+            final RingtoneEntries ringToneList = new RingtoneEntries();
+
+            //Check for the read permission
+            if (!RingtoneUtils.checkForStorageReadPermission(context)) {
+                throw new IllegalStateException("Storage permission is not available.");
+            }
+
+            //Prepare query
+            final long queryStart = System.nanoTime();
+            final Cursor mediaCursor = ContentResolverCompat.query(context.getContentResolver(),
+                    MediaStore.Audio.Media.EXTERNAL_CONTENT_URI,
+                    new String[]{MediaStore.Audio.Media.TITLE, MediaStore.Audio.Media._ID},
+                    MUSIC_SELECTION,
+                    null,
+                    MUSIC_SORT_ORDER,
+                    cancellationSignal);
+            final long walkStart = System.nanoTime();
+
+            if (mediaCursor != null) {
+                try {
+                    final String baseUri = MediaStore.Audio.Media.EXTERNAL_CONTENT_URI.toString();
+                    final int titleColumn = mediaCursor.getColumnIndex(MediaStore.Audio.Media.TITLE);
+                    final int idColumn = mediaCursor.getColumnIndex(MediaStore.Audio.Media._ID);
+                    int delivered = 0;
+
+                    while (mediaCursor.moveToNext()) {
+                        if (cancellationSignal != null) cancellationSignal.throwIfCanceled();
+
+                        ringToneList.add(mediaCursor.getString(titleColumn),
+                                baseUri,
+                                mediaCursor.getLong(idColumn),
+                                RingtoneEntries.FLAG_MUSIC);
+
+                        if (chunkListener != null && ringToneList.size() - delivered >= chunkSize) {
+                            chunkListener.onChunkLoaded(ringToneList.copyOfRange(delivered, ringToneList.size()));
+                            delivered = ringToneList.size();
+                        }
+                    }
+
+                    //Deliver the remaining rows.
+                    if (chunkListener != null && ringToneList.size() > delivered) {
+                        chunkListener.onChunkLoaded(ringToneList.copyOfRange(delivered, ringToneList.size()));
+                    }
+                } finally {
+                    mediaCursor.close();
+                }
             }
-            mediaCursor.close();
+            if (timings != null) timings.record(queryStart, walkStart);
+
+            return ringToneList;
+        } finally {
+            Trace.endSection();
+        }
+    }
+
+    /**
+     * Count the rows of the table without reading them. Below {@link Build.VERSION_CODES#R}, the
+     * provider counts the rows with <code>COUNT(*)</code> and returns a single row. The
+     * {@link MediaStore} of {@link Build.VERSION_CODES#R} and later rejects the expressions in the
+     * projection, so only the row ids are queried and counted by the provider.
+     *
+     * @param context            instance of the caller.
+     * @param tableUri           {@link Uri} of the table.
+     * @param selection          selection of the rows to count or null to count all the rows.
+     * @param cancellationSignal {@link CancellationSignal} to abort the query.
+     * @return Number of the rows.
+     * @throws IllegalStateException      if the table cannot be queried.
+     * @throws OperationCanceledException if the query is cancelled.
+     */
+    @SuppressLint("InlinedApi")
+    static int countRows(@NonNull final Context context,
+                         @NonNull final Uri tableUri,
+                         @Nullable final String selection,
+                         @Nullable final CancellationSignal cancellationSignal) {
+        if (Build.VERSION.SDK_INT < Build.VERSION_CODES.R) {
+            try {
+                final Cursor cursor = queryCount(context, tableUri, new String[]{"COUNT(*)"}, selection,
+                        cancellationSignal);
+                try {
+                    return cursor.moveToFirst() ? cursor.getInt(0) : 0;
+                } finally {
+                    cursor.close();
+                }
+            } catch (IllegalArgumentException e) {
+                //Provider doesn't accept the expression. Count the row ids instead.
+            }
+        }
+
+        final Cursor cursor = queryCount(context, tableUri, new String[]{MediaStore.Audio.Media._ID}, selection,
+                cancellationSignal);
+        try {
+            //Providers which page the rows report the number of all the rows in the extras.
+            final Bundle extras = cursor.getExtras();
+            if (extras != null && extras.containsKey(ContentResolver.EXTRA_TOTAL_COUNT)) {
+                return extras.getInt(ContentResolver.EXTRA_TOTAL_COUNT, 0);
+            }
+            return cursor.getCount();
+        } finally {
+            cursor.close();
         }
+    }
 
-        return ringToneList;
+    @NonNull
+    private static Cursor queryCount(@NonNull final Context context,
+                                     @NonNull final Uri tableUri,
+                                     @NonNull final String[] projection,
+                                     @Nullable final String selection,
+                                     @Nullable final CancellationSignal cancellationSignal) {
+        final Cursor cursor = ContentResolverCompat.query(context.getContentResolver(),
+                tableUri,
+                projection,
+                selection,
+                null,
+                null,
+                cancellationSignal);
+        if (cursor == null) throw new IllegalStateException("Cannot query " + tableUri);
+        return cursor;
     }
 
     /**
@@ -180,7 +379,11 @@ public final class RingtoneUtils {
     }
 
     /**
-     * Get the title of the ringtone from the uri of ringtone.
+     * Get the title of the ringtone from the uri of ringtone. Once the ringtone picker or the
+     * {@link RingtoneCatalog} loaded the ringtones, titles are cached, so calling this method again
+     * for the same uri doesn't query the content provider until the ringtones change.
+     * <p>
+     * This method may query the content provider, so avoid calling it on the main thread.
      *
      * @param context instance of the caller
      * @param uri     uri of the tone to search
@@ -189,6 +392,248 @@ public final class RingtoneUtils {
     @Nullable
     public static String getRingtoneName(@NonNull final Context context,
                                          @NonNull final Uri uri) {
+        //Don't register the observers of the cache just for this title.
+        final RingtoneCatalogCache cache = RingtoneCatalogCache.peekInstance();
+        if (cache == null) return loadRingtoneName(context, uri);
+
+        final String cachedTitle = cache.getTitle(uri);
+        if (cachedTitle != null) return cachedTitle;
+
+        final int generation = cache.getGeneration();
+        final String title = loadRingtoneName(context, uri);
+
+        //Title of the default ringtone changes with the settings. Don't cache it.
+        if (title != null && !Settings.AUTHORITY.equals(uri.getAuthority())) {
+            cache.putTitle(uri, title, generation);
+        }
+        return title;
+    }
+
+    /**
+     * Get the titles of many ringtones at once. Titles in the cache are returned without querying,
+     * see {@link #getRingtoneName(Context, Uri)}.
+     * {@link MediaStore} uris are grouped by their table and resolved with one query for every
+     * {@link #MAX_IDS_PER_QUERY} rows. Other uris are resolved one by one, same as
+     * {@link #getRingtoneName(Context, Uri)}.
+     * <p>
+     * This method queries the content providers, so avoid calling it on the main thread.
+     *
+     * @param context instance of the caller
+     * @param uris    uris of the tones to search
+     * @return {@link Map} of the uri and the title of the tone, in the order of the given uris. The
+     * uris of the tones which are not found are not in the map.
+     */
+    @NonNull
+    public static Map<Uri, String> getRingtoneNames(@NonNull final Context context,
+                                                    @NonNull final Collection<Uri> uris) {
+        //Don't register the observers of the cache just for these titles.
+        final RingtoneCatalogCache cache = RingtoneCatalogCache.peekInstance();
+        final int generation = cache == null ? 0 : cache.getGeneration();
+
+        //Resolve the cached titles and group the remaining media uris by their table.
+        final HashMap<Uri, String> titles = new HashMap<>(uris.size());
+        final HashMap<Uri, ArrayList<Uri>> mediaUris = new HashMap<>();
+        final ArrayList<Uri> otherUris = new ArrayList<>();
+        for (Uri uri : new LinkedHashSet<>(uris)) {
+            if (uri == null) continue;
+
+            final String cachedTitle = cache == null ? null : cache.getTitle(uri);
+            if (cachedTitle != null) {
+                titles.put(uri, cachedTitle);
+            } else if (MediaStore.AUTHORITY.equals(uri.getAuthority()) && isRowUri(uri)) {
+                final Uri tableUri = getTableUri(uri);
+                ArrayList<Uri> tableUris = mediaUris.get(tableUri);
+                if (tableUris == null) {
+                    tableUris = new ArrayList<>();
+                    mediaUris.put(tableUri, tableUris);
+                }
+                tableUris.add(uri);
+            } else {
+                otherUris.add(uri);
+            }
+        }
+
+        for (Map.Entry<Uri, ArrayList<Uri>> table : mediaUris.entrySet()) {
+            final ArrayList<Uri> tableUris = table.getValue();
+            for (int start = 0; start < tableUris.size(); start += MAX_IDS_PER_QUERY) {
+                final List<Uri> batch = tableUris.subList(start,
+                        Math.min(start + MAX_IDS_PER_QUERY, tableUris.size()));
+                try {
+                    loadRingtoneNames(context, table.getKey(), batch, titles);
+                } catch (SecurityException | IllegalArgumentException e) {
+                    //Table cannot be read directly or is not an audio table. Let the RingtoneManager
+                    //resolve them.
+                    otherUris.addAll(batch);
+                }
+            }
+        }
+
+        for (Uri uri : otherUris) {
+            final String title = loadRingtoneName(context, uri);
+            if (title != null) titles.put(uri, title);
+        }
+
+        //Cache the new titles and keep the order of the given uris.
+        final LinkedHashMap<Uri, String> result = new LinkedHashMap<>(titles.size());
+        for (Uri uri : uris) {
+            final String title = titles.get(uri);
+            if (title == null) continue;
+
+            result.put(uri, title);
+            if (cache != null && !Settings.AUTHORITY.equals(uri.getAuthority())) {
+                cache.putTitle(uri, title, generation);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Query the titles of the rows of one {@link MediaStore} table in a single query.
+     *
+     * @param context  instance of the caller
+     * @param tableUri uri of the table
+     * @param uris     uris of the rows in the table. Must not be more than {@link #MAX_IDS_PER_QUERY}.
+     * @param titles   {@link Map} to add the titles to.
+     */
+    private static void loadRingtoneNames(@NonNull final Context context,
+                                          @NonNull final Uri tableUri,
+                                          @NonNull final List<Uri> uris,
+                                          @NonNull final Map<Uri, String> titles) {
+        final HashMap<String, Uri> uriById = new HashMap<>(uris.size());
+        final StringBuilder selection = new StringBuilder(MediaStore.Audio.Media._ID + " IN (");
+        for (int i = 0; i < uris.size(); i++) {
+            if (i > 0) selection.append(',');
+            selection.append('?');
+            uriById.put(uris.get(i).getLastPathSegment(), uris.get(i));
+        }
+        selection.append(')');
+
+        final Cursor cursor = context.getContentResolver().query(tableUri,
+                new String[]{MediaStore.Audio.Media._ID, MediaStore.Audio.Media.TITLE},
+                selection.toString(),
+                uriById.keySet().toArray(new String[0]),
+                null);
+        if (cursor == null) return;
+
+        try {
+            final int idColumn = cursor.getColumnIndex(MediaStore.Audio.Media._ID);
+            final int titleColumn = cursor.getColumnIndex(MediaStore.Audio.Media.TITLE);
+            while (cursor.moveToNext()) {
+                final Uri uri = uriById.get(cursor.getString(idColumn));
+                final String title = cursor.getString(titleColumn);
+                if (uri != null && title != null) titles.put(uri, title);
+            }
+        } finally {
+            cursor.close();
+        }
+    }
+
+    /**
+     * Query the duration, the artist and the size of the rows of one {@link MediaStore} table. Rows
+     * are queried with one query for every {@link #MAX_IDS_PER_QUERY} ids.
+     * <p>
+     * This method queries the content provider, so avoid calling it on the main thread.
+     *
+     * @param context  instance of the caller
+     * @param tableUri uri of the table
+     * @param ids      row ids of the rows in the table.
+     * @return {@link Map} of the row id and the {@link RingtoneMetadata}. The rows which are not
+     * found are not in the map.
+     * @throws SecurityException if the table cannot be read.
+     */
+    @NonNull
+    static Map<Long, RingtoneMetadata> getRingtoneMetadata(@NonNull final Context context,
+                                                           @NonNull final Uri tableUri,
+                                                           @NonNull final List<Long> ids) {
+        final HashMap<Long, RingtoneMetadata> metadata = new HashMap<>(ids.size());
+        for (int start = 0; start < ids.size(); start += MAX_IDS_PER_QUERY) {
+            loadRingtoneMetadata(context,
+                    tableUri,
+                    ids.subList(start, Math.min(start + MAX_IDS_PER_QUERY, ids.size())),
+                    metadata);
+        }
+        return metadata;
+    }
+
+    /**
+     * Query the metadata of the rows of one {@link MediaStore} table in a single query.
+     *
+     * @param context  instance of the caller
+     * @param tableUri uri of the table
+     * @param ids      row ids of the rows. Must not be more than {@link #MAX_IDS_PER_QUERY}.
+     * @param metadata {@link Map} to add the metadata to.
+     */
+    private static void loadRingtoneMetadata(@NonNull final Context context,
+                                             @NonNull final Uri tableUri,
+                                             @NonNull final List<Long> ids,
+                                             @NonNull final Map<Long, RingtoneMetadata> metadata) {
+        final String[] selectionArgs = new String[ids.size()];
+        final StringBuilder selection = new StringBuilder(MediaStore.Audio.Media._ID + " IN (");
+        for (int i = 0; i < ids.size(); i++) {
+            if (i > 0) selection.append(',');
+            selection.append('?');
+            selectionArgs[i] = String.valueOf(ids.get(i));
+        }
+        selection.append(')');
+
+        final Cursor cursor = context.getContentResolver().query(tableUri,
+                new String[]{MediaStore.Audio.Media._ID,
+                        MediaStore.Audio.Media.DURATION,
+                        MediaStore.Audio.Media.ARTIST,
+                        MediaStore.Audio.Media.SIZE},
+                selection.toString(),
+                selectionArgs,
+                null);
+        if (cursor == null) return;
+
+        try {
+            final int idColumn = cursor.getColumnIndex(MediaStore.Audio.Media._ID);
+            final int durationColumn = cursor.getColumnIndex(MediaStore.Audio.Media.DURATION);
+            final int artistColumn = cursor.getColumnIndex(MediaStore.Audio.Media.ARTIST);
+            final int sizeColumn = cursor.getColumnIndex(MediaStore.Audio.Media.SIZE);
+            while (cursor.moveToNext()) {
+                String artist = artistColumn < 0 ? null : cursor.getString(artistColumn);
+
+                //Media scanner stores "<unknown>" if the file has no artist.
+                if (MediaStore.UNKNOWN_STRING.equals(artist)) artist = null;
+
+                metadata.put(cursor.getLong(idColumn), new RingtoneMetadata(
+                        durationColumn < 0 ? RingtoneMetadata.UNKNOWN : cursor.getLong(durationColumn),
+                        artist,
+                        sizeColumn < 0 ? RingtoneMetadata.UNKNOWN : cursor.getLong(sizeColumn)));
+            }
+        } finally {
+            cursor.close();
+        }
+    }
+
+    /**
+     * @return True if the last segment of the uri is the row id.
+     */
+    private static boolean isRowUri(@NonNull final Uri uri) {
+        final String lastSegment = uri.getLastPathSegment();
+        if (lastSegment == null || lastSegment.isEmpty() || uri.getQuery() != null) return false;
+
+        for (int i = 0; i < lastSegment.length(); i++) {
+            if (!Character.isDigit(lastSegment.charAt(i))) return false;
+        }
+        return true;
+    }
+
+    /**
+     * @return Uri of the table, i.e. the given uri without the row id.
+     */
+    @NonNull
+    private static Uri getTableUri(@NonNull final Uri uri) {
+        final List<String> segments = uri.getPathSegments();
+        final Uri.Builder builder = uri.buildUpon().path(null);
+        for (int i = 0; i < segments.size() - 1; i++) builder.appendPath(segments.get(i));
+        return builder.build();
+    }
+
+    @Nullable
+    private static String loadRingtoneName(@NonNull final Context context,
+                                           @NonNull final Uri uri) {
         final Ringtone ringtone = RingtoneManager.getRingtone(context, uri);
         if (ringtone != null) {
             return ringtone.getTitle(context);
@@ -203,13 +648,51 @@ public final class RingtoneUtils {
 
             String title = null;
             if (cur != null) {
-                title = cur.getString(cur.getColumnIndex(MediaStore.Audio.Media.TITLE));
+                if (cur.moveToFirst()) {
+                    title = cur.getString(cur.getColumnIndex(MediaStore.Audio.Media.TITLE));
+                }
                 cur.close();
             }
             return title;
         }
     }
 
+    /**
+     * Listener to get the rows of the cursor while it is still being read.
+     *
+     * @see #getMusic(Context, CancellationSignal, ChunkListener, int, QueryTimings)
+     */
+    interface ChunkListener {
+
+        /**
+         * Called on the loading thread whenever a chunk of rows is read.
+         *
+         * @param chunk {@link RingtoneEntries} of the rows in the chunk.
+         */
+        void onChunkLoaded(@NonNull RingtoneEntries chunk);
+    }
+
+    /**
+     * Time spent by the last query, split in to running the query and walking the cursor.
+     */
+    static final class QueryTimings {
+
+        /**
+         * Time to run the query and get the cursor, in nanoseconds.
+         */
+        long mQueryNanos;
+
+        /**
+         * Time to read the rows of the cursor, in nanoseconds.
+         */
+        long mWalkNanos;
+
+        private void record(final long queryStart, final long walkStart) {
+            mQueryNanos = walkStart - queryStart;
+            mWalkNanos = System.nanoTime() - walkStart;
+        }
+    }
+
     /**
      * Check if the {@link Manifest.permission#WRITE_EXTERNAL_STORAGE} permission is granted?
      *
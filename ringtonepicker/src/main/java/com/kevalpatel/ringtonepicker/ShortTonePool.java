@@ -0,0 +1,320 @@
+/*
+ * Copyright 2017 Keval Patel
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance wit
+ * the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for
+ *  the specific language governing permissions and limitations under the License.
+ */
+
+package com.kevalpatel.ringtonepicker;
+
+import android.content.Context;
+import android.content.res.AssetFileDescriptor;
+import android.media.AudioAttributes;
+import android.media.AudioManager;
+import android.media.SoundPool;
+import android.net.Uri;
+import android.os.Build;
+import android.util.Log;
+import android.util.SparseArray;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import java.io.IOException;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Plays the short tones such as notification and alarm tones from a {@link SoundPool}. Each tone
+ * is decoded once and the decoded samples are kept in the least recently used order, within
+ * {@link #BYTE_BUDGET}. Playing the same tone again starts immediately without decoding it.
+ * <p>
+ * Tones which cannot be decoded, or whose duration is not known and whose file is too large to be
+ * a short tone, are reported to the {@link Listener}, so the caller can play them in the other way.
+ * <p>
+ * This class is not thread safe. Create and use it on the thread with a
+ * {@link android.os.Looper}, the load callbacks are delivered on the same thread.
+ *
+ * @author <a href="https://github.com/kevalpatel2106">kevalpatel2106</a>
+ */
+final class ShortTonePool {
+
+    /**
+     * Longest tone to play from the {@link SoundPool}. Many {@link SoundPool} implementations cannot
+     * hold more than 1MB of the decoded audio per sample, that is about 5 seconds of the 16 bit
+     * stereo audio at 44.1kHz.
+     */
+    static final long MAX_DURATION_MS = 5000;
+
+    /**
+     * Duration of the tones which are expected to be short, but whose duration is not known.
+     */
+    static final long UNKNOWN_DURATION = -1;
+
+    /**
+     * Largest file of the tones whose duration is not known. The compressed tones of
+     * {@link #MAX_DURATION_MS} fit in this, while the longer tones, such as the most of the alarm
+     * sounds, don't.
+     */
+    private static final long MAX_UNKNOWN_FILE_BYTES = 256 * 1024;
+
+    /**
+     * Maximum estimated size of all the decoded samples.
+     */
+    private static final long BYTE_BUDGET = 4 * 1024 * 1024;
+
+    /**
+     * Estimated size of one second of the decoded audio. 16 bit stereo audio at 44.1kHz.
+     */
+    private static final long BYTES_PER_SECOND = 44100 * 2 * 2;
+
+    @NonNull
+    private final Context mContext;
+
+    @NonNull
+    private final SoundPool mSoundPool;
+
+    /**
+     * Loaded samples keyed by the {@link Uri} of the tone, in the least recently used order.
+     */
+    @NonNull
+    private final LinkedHashMap<Uri, Sample> mSamples = new LinkedHashMap<>(16, 0.75f, true);
+
+    /**
+     * Loaded samples keyed by the {@link SoundPool} sample id.
+     */
+    @NonNull
+    private final SparseArray<Sample> mSampleIds = new SparseArray<>();
+
+    /**
+     * Estimated size of all the samples in {@link #mSamples}.
+     */
+    private long mUsedBytes = 0;
+
+    /**
+     * Id of the stream that is playing or 0.
+     */
+    private int mStreamId = 0;
+
+    /**
+     * {@link Listener} to notify when a tone starts or cannot be decoded.
+     */
+    @NonNull
+    private final Listener mListener;
+
+    @SuppressWarnings("deprecation")
+    ShortTonePool(@NonNull final Context context, @NonNull final Listener listener) {
+        mContext = context;
+        mListener = listener;
+
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.LOLLIPOP) {
+            mSoundPool = new SoundPool.Builder()
+                    .setMaxStreams(1)
+                    .setAudioAttributes(new AudioAttributes.Builder()
+                            .setUsage(AudioAttributes.USAGE_MEDIA)
+                            .setContentType(AudioAttributes.CONTENT_TYPE_SONIFICATION)
+                            .build())
+                    .build();
+        } else {
+            mSoundPool = new SoundPool(1, AudioManager.STREAM_MUSIC, 0);
+        }
+
+        mSoundPool.setOnLoadCompleteListener(new SoundPool.OnLoadCompleteListener() {
+            @Override
+            public void onLoadComplete(SoundPool soundPool, int sampleId, int status) {
+                final Sample sample = mSampleIds.get(sampleId);
+                if (sample == null) return;
+
+                if (status != 0) {
+                    Log.e(ShortTonePool.class.getName(), "Cannot decode " + sample.mUri);
+                    remove(sample);
+                    mListener.onLoadFailed(sample.mUri, sample.isStartPending, sample.mRequestNanos);
+                    return;
+                }
+
+                sample.isLoaded = true;
+                if (sample.isStartPending) {
+                    sample.isStartPending = false;
+                    mStreamId = mSoundPool.play(sampleId, 1f, 1f, 1, 0, 1f);
+                    if (mStreamId != 0) mListener.onStarted(sample.mUri, sample.mRequestNanos, false);
+                }
+            }
+        });
+    }
+
+    /**
+     * Play the tone. If the tone is not decoded yet, it starts once it is decoded.
+     *
+     * @param uri          {@link Uri} of the tone.
+     * @param durationMs   duration of the tone or {@link #UNKNOWN_DURATION}. This must not be more
+     *                     than {@link #MAX_DURATION_MS}.
+     * @param requestNanos {@link System#nanoTime()} when the tone was requested, to pass to the
+     *                     {@link Listener}.
+     */
+    void play(@NonNull final Uri uri, final long durationMs, final long requestNanos) {
+        final Sample sample = load(uri, durationMs);
+        if (sample == null) {
+            mListener.onLoadFailed(uri, true, requestNanos);
+            return;
+        }
+
+        if (sample.isLoaded) {
+            mStreamId = mSoundPool.play(sample.mSampleId, 1f, 1f, 1, 0, 1f);
+            if (mStreamId != 0) mListener.onStarted(uri, requestNanos, true);
+        } else {
+            sample.isStartPending = true;
+            sample.mRequestNanos = requestNanos;
+        }
+    }
+
+    /**
+     * Decode the tone in advance, without playing it.
+     *
+     * @param uri        {@link Uri} of the tone.
+     * @param durationMs duration of the tone or {@link #UNKNOWN_DURATION}. This must not be more
+     *                   than {@link #MAX_DURATION_MS}.
+     */
+    void preload(@NonNull final Uri uri, final long durationMs) {
+        if (load(uri, durationMs) == null) mListener.onLoadFailed(uri, false, 0);
+    }
+
+    /**
+     * Stop the tone that is playing and cancel the pending starts.
+     */
+    void stop() {
+        if (mStreamId != 0) {
+            mSoundPool.stop(mStreamId);
+            mStreamId = 0;
+        }
+        for (Sample sample : mSamples.values()) sample.isStartPending = false;
+    }
+
+    /**
+     * Release the {@link SoundPool} and all the decoded samples.
+     */
+    void release() {
+        mSoundPool.release();
+        mSamples.clear();
+        mSampleIds.clear();
+        mUsedBytes = 0;
+    }
+
+    @Nullable
+    private Sample load(@NonNull final Uri uri, final long durationMs) {
+        final Sample cached = mSamples.get(uri);
+        if (cached != null) return cached;
+
+        //Make room for the new sample. Tones of the unknown duration may be as long as the longest tone.
+        final long size = (durationMs == UNKNOWN_DURATION ? MAX_DURATION_MS : durationMs)
+                * BYTES_PER_SECOND / 1000;
+        final Iterator<Map.Entry<Uri, Sample>> iterator = mSamples.entrySet().iterator();
+        while (mUsedBytes + size > BYTE_BUDGET && iterator.hasNext()) {
+            final Sample eldest = iterator.next().getValue();
+            iterator.remove();
+            mSampleIds.remove(eldest.mSampleId);
+            mSoundPool.unload(eldest.mSampleId);
+            mUsedBytes -= eldest.mSize;
+        }
+
+        final int sampleId;
+        try {
+            final AssetFileDescriptor descriptor = mContext.getContentResolver().openAssetFileDescriptor(uri, "r");
+            if (descriptor == null) return null;
+
+            //SoundPool keeps its own copy of the file descriptor.
+            try {
+                //Length is unknown for the pipes. Don't decode the tone which may be long then.
+                final long length = descriptor.getLength();
+                if (durationMs == UNKNOWN_DURATION
+                        && (length == AssetFileDescriptor.UNKNOWN_LENGTH || length > MAX_UNKNOWN_FILE_BYTES)) {
+                    return null;
+                }
+                sampleId = mSoundPool.load(descriptor, 1);
+            } finally {
+                descriptor.close();
+            }
+        } catch (IOException | SecurityException | IllegalArgumentException e) {
+            Log.e(ShortTonePool.class.getName(), "Cannot load " + uri, e);
+            return null;
+        }
+
+        final Sample sample = new Sample(uri, sampleId, size);
+        mSamples.put(uri, sample);
+        mSampleIds.put(sampleId, sample);
+        mUsedBytes += size;
+        return sample;
+    }
+
+    private void remove(@NonNull final Sample sample) {
+        if (mSamples.remove(sample.mUri) != null) mUsedBytes -= sample.mSize;
+        mSampleIds.remove(sample.mSampleId);
+        mSoundPool.unload(sample.mSampleId);
+    }
+
+    /**
+     * Sample in the {@link SoundPool} with its state.
+     */
+    private static final class Sample {
+
+        @NonNull
+        private final Uri mUri;
+
+        private final int mSampleId;
+
+        /**
+         * Estimated size of the decoded sample.
+         */
+        private final long mSize;
+
+        private boolean isLoaded = false;
+
+        /**
+         * True to play the sample as soon as it is decoded.
+         */
+        private boolean isStartPending = false;
+
+        /**
+         * {@link System#nanoTime()} when the pending start was requested.
+         */
+        private long mRequestNanos;
+
+        private Sample(@NonNull final Uri uri, final int sampleId, final long size) {
+            mUri = uri;
+            mSampleId = sampleId;
+            mSize = size;
+        }
+    }
+
+    /**
+     * Listener to get notified when a tone starts playing or cannot be played from the pool.
+     */
+    interface Listener {
+
+        /**
+         * Called on the thread of the {@link ShortTonePool} when a tone starts.
+         *
+         * @param uri          {@link Uri} of the tone.
+         * @param requestNanos {@link System#nanoTime()} when the tone was requested.
+         * @param wasLoaded    true if the tone was already decoded when it was requested.
+         */
+        void onStarted(@NonNull Uri uri, long requestNanos, boolean wasLoaded);
+
+        /**
+         * Called on the thread of the {@link ShortTonePool} when a tone cannot be opened or
+         * decoded. The tone is not kept in the pool.
+         *
+         * @param uri             {@link Uri} of the tone.
+         * @param wasStartPending true if the tone was requested to play. Play it in the other way
+         *                        then. False if it was only preloaded.
+         * @param requestNanos    {@link System#nanoTime()} when the tone was requested to play.
+         */
+        void onLoadFailed(@NonNull Uri uri, boolean wasStartPending, long requestNanos);
+    }
+}
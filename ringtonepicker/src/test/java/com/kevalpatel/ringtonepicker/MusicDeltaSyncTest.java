@@ -0,0 +1,165 @@
+/*
+ * Copyright 2017 Keval Patel
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance wit
+ * the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for
+ *  the specific language governing permissions and limitations under the License.
+ */
+
+
+package com.kevalpatel.ringtonepicker;
+
+import android.provider.MediaStore;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests of {@link MusicDeltaSync} which don't query the media store.
+ *
+ * @author <a href="https://github.com/kevalpatel2106">kevalpatel2106</a>
+ */
+public class MusicDeltaSyncTest {
+
+    private static final String BASE_URI = "content://media/external/audio/media";
+
+    @Test
+    public void compareRows_comparesTitlesThenIds() {
+        assertTrue(MusicDeltaSync.compareRows("A", 9, "B", 1) < 0);
+        assertTrue(MusicDeltaSync.compareRows("B", 1, "A", 9) > 0);
+        assertTrue(MusicDeltaSync.compareRows("Same", 1, "Same", 2) < 0);
+        assertEquals(0, MusicDeltaSync.compareRows("Same", 2, "Same", 2));
+
+        //Shorter title comes first.
+        assertTrue(MusicDeltaSync.compareRows("Ab", 1, "A", 2) > 0);
+    }
+
+    @Test
+    public void compareRows_comparesCodePointsLikeSqlite() {
+        //Binary collation is case sensitive.
+        assertTrue(MusicDeltaSync.compareRows("a", 1, "B", 2) > 0);
+        assertTrue(MusicDeltaSync.compareRows("é", 1, "z", 2) > 0);
+
+        //U+1F3B5 is above U+FFFD, although its first UTF-16 char is below it.
+        assertTrue(MusicDeltaSync.compareRows("\uD83C\uDFB5", 1, "\uFFFD", 2) > 0);
+        assertTrue(MusicDeltaSync.compareRows("\uFFFD", 1, "\uD83C\uDFB5", 2) < 0);
+    }
+
+    @Test
+    public void isSorted_checksOrderOfRows() {
+        assertTrue(MusicDeltaSync.isSorted(entries("A:1", "A:2", "B:1", "a:1")));
+        assertFalse(MusicDeltaSync.isSorted(entries("A:2", "A:1")));
+        assertFalse(MusicDeltaSync.isSorted(entries("b:1", "C:2")));
+    }
+
+    @Test
+    public void merge_insertsChangedRowsInOrder() {
+        final RingtoneEntries stale = entries("Alpha:1", "Charlie:3", "Echo:5", "Foxtrot:9");
+
+        //Row 3 is renamed, row 2 is new and row 9 is no longer music.
+        final ArrayList<MusicDeltaSync.ChangedRow> changedRows = new ArrayList<>();
+        changedRows.add(new MusicDeltaSync.ChangedRow("Bravo", 2));
+        changedRows.add(new MusicDeltaSync.ChangedRow("Delta", 3));
+        changedRows.add(new MusicDeltaSync.ChangedRow("Zulu", 10));
+        final HashSet<Long> changedIds = new HashSet<>(Arrays.asList(2L, 3L, 9L, 10L));
+
+        final RingtoneEntries merged = MusicDeltaSync.merge(stale, changedRows, changedIds, BASE_URI);
+
+        assertEquals(Arrays.asList("Alpha:1", "Bravo:2", "Delta:3", "Echo:5", "Zulu:10"), rowsOf(merged));
+        assertTrue(MusicDeltaSync.isSorted(merged));
+        for (int i = 0; i < merged.size(); i++) {
+            assertEquals(RingtoneEntries.FLAG_MUSIC, merged.getTypeFlags(i));
+            assertEquals(BASE_URI + "/" + merged.getId(i), merged.getUriString(i));
+        }
+
+        //Stale list is shared with the other callers, so it is not modified.
+        assertEquals(4, stale.size());
+    }
+
+    @Test
+    public void merge_ordersEqualTitlesById() {
+        final RingtoneEntries stale = entries("Song:1", "Song:5");
+        final ArrayList<MusicDeltaSync.ChangedRow> changedRows = new ArrayList<>();
+        changedRows.add(new MusicDeltaSync.ChangedRow("Song", 3));
+        changedRows.add(new MusicDeltaSync.ChangedRow("Song", 7));
+
+        final RingtoneEntries merged = MusicDeltaSync.merge(stale,
+                changedRows,
+                new HashSet<>(Arrays.asList(3L, 7L)),
+                BASE_URI);
+
+        assertEquals(Arrays.asList("Song:1", "Song:3", "Song:5", "Song:7"), rowsOf(merged));
+    }
+
+    @Test
+    public void buildSelection_selectsRowsChangedSinceCapture() {
+        final ArrayList<String> args = new ArrayList<>();
+        final String selection = new MusicDeltaSync(1000, null).buildSelection(args);
+
+        assertEquals(MediaStore.MediaColumns.DATE_ADDED + ">=? OR "
+                + MediaStore.MediaColumns.DATE_MODIFIED + ">=?", selection);
+        assertEquals(Arrays.asList("1000", "1000"), args);
+    }
+
+    @Test
+    public void buildSelection_selectsRowsChangedSinceGenerations() {
+        final HashMap<String, Long> generations = new HashMap<>();
+        generations.put("external_primary", 42L);
+
+        final ArrayList<String> args = new ArrayList<>();
+        final String selection = new MusicDeltaSync(1000, generations).buildSelection(args);
+
+        assertEquals("(" + MediaStore.MediaColumns.VOLUME_NAME + "=? AND "
+                + MediaStore.MediaColumns.GENERATION_MODIFIED + ">?) OR "
+                + MediaStore.MediaColumns.VOLUME_NAME + " NOT IN (?)", selection);
+        assertEquals(Arrays.asList("external_primary", "42", "external_primary"), args);
+    }
+
+    @Test
+    public void buildSelection_hasArgumentForEveryVolume() {
+        final HashMap<String, Long> generations = new HashMap<>();
+        generations.put("external_primary", 42L);
+        generations.put("1234-abcd", 7L);
+
+        final ArrayList<String> args = new ArrayList<>();
+        final String selection = new MusicDeltaSync(1000, generations).buildSelection(args);
+
+        assertTrue(selection.endsWith(" NOT IN (?,?)"));
+        assertEquals(selection.length() - selection.replace("?", "").length(), args.size());
+        assertEquals(6, args.size());
+    }
+
+    /**
+     * @param rows rows as "title:id".
+     */
+    private static RingtoneEntries entries(final String... rows) {
+        final RingtoneEntries entries = new RingtoneEntries();
+        for (String row : rows) {
+            final int separator = row.lastIndexOf(':');
+            entries.add(row.substring(0, separator),
+                    BASE_URI,
+                    Long.parseLong(row.substring(separator + 1)),
+                    RingtoneEntries.FLAG_MUSIC);
+        }
+        return entries;
+    }
+
+    private static ArrayList<String> rowsOf(final RingtoneEntries entries) {
+        final ArrayList<String> rows = new ArrayList<>();
+        for (int i = 0; i < entries.size(); i++) rows.add(entries.getTitle(i) + ":" + entries.getId(i));
+        return rows;
+    }
+}
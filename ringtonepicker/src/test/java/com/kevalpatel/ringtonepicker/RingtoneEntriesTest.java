@@ -0,0 +1,242 @@
+/*
+ * Copyright 2017 Keval Patel
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance wit
+ * the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for
+ *  the specific language governing permissions and limitations under the License.
+ */
+
+
+package com.kevalpatel.ringtonepicker;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests of {@link RingtoneEntries}.
+ *
+ * @author <a href="https://github.com/kevalpatel2106">kevalpatel2106</a>
+ */
+public class RingtoneEntriesTest {
+
+    private static final String INTERNAL = "content://media/internal/audio/media";
+    private static final String EXTERNAL = "content://media/external/audio/media";
+
+    @Test
+    public void add_splitsRowIdFromUri() {
+        final RingtoneEntries entries = new RingtoneEntries();
+        entries.add("Beep", INTERNAL + "/12");
+
+        assertEquals(12, entries.getId(0));
+        assertEquals(INTERNAL, entries.getBaseUri(entries.getBaseIndex(0)));
+        assertEquals(INTERNAL + "/12", entries.getUriString(0));
+    }
+
+    @Test
+    public void add_keepsWholeUriWithoutRowId() {
+        final String[] uris = {
+                "file:///sdcard/tone.mp3",
+                INTERNAL + "/012",
+                INTERNAL + "/",
+                INTERNAL + "/1234567890123456789",
+                "tone"
+        };
+
+        final RingtoneEntries entries = new RingtoneEntries();
+        for (String uri : uris) entries.add("Tone", uri);
+
+        for (int i = 0; i < uris.length; i++) {
+            assertEquals(RingtoneEntries.NO_ID, entries.getId(i));
+            assertEquals(uris[i], entries.getUriString(i));
+        }
+    }
+
+    @Test
+    public void indexOf_findsRowsWithAndWithoutIndex() {
+        final RingtoneEntries entries = new RingtoneEntries();
+        for (int i = 0; i < 100; i++) entries.add("Tone " + i, EXTERNAL + "/" + (i * 7));
+        entries.add("File", "file:///sdcard/tone.mp3");
+        entries.add("Same tone", EXTERNAL + "/14");
+
+        for (int pass = 0; pass < 2; pass++) {
+            assertEquals(0, entries.indexOf(EXTERNAL + "/0"));
+            assertEquals(99, entries.indexOf(EXTERNAL + "/693"));
+            assertEquals(100, entries.indexOf("file:///sdcard/tone.mp3"));
+
+            //First row with the uri.
+            assertEquals(2, entries.indexOf(EXTERNAL + "/14"));
+
+            assertEquals(-1, entries.indexOf(EXTERNAL + "/1"));
+            assertEquals(-1, entries.indexOf(INTERNAL + "/0"));
+            assertEquals(-1, entries.indexOf(EXTERNAL + "/014"));
+            assertEquals(-1, entries.indexOf(EXTERNAL));
+
+            entries.buildIndex();
+        }
+    }
+
+    @Test
+    public void indexOf_findsIdsTooLargeForTheIndex() {
+        final RingtoneEntries entries = new RingtoneEntries();
+        entries.add("Small", EXTERNAL + "/1");
+        entries.add("Large", EXTERNAL + "/" + (1L << 41));
+        entries.buildIndex();
+
+        assertEquals(0, entries.indexOf(EXTERNAL + "/1"));
+        assertEquals(1, entries.indexOf(EXTERNAL + "/" + (1L << 41)));
+        assertEquals(-1, entries.indexOf(EXTERNAL + "/2"));
+    }
+
+    @Test
+    public void add_dropsIndex() {
+        final RingtoneEntries entries = new RingtoneEntries();
+        entries.add("First", EXTERNAL + "/1");
+        entries.buildIndex();
+        entries.add("Second", EXTERNAL + "/2");
+
+        assertEquals(1, entries.indexOf(EXTERNAL + "/2"));
+    }
+
+    @Test
+    public void sameHashBaseUris_rowsStayDifferent() {
+        //"Aa" and "BB" have the same String.hashCode().
+        final RingtoneEntries first = new RingtoneEntries();
+        first.add("Aa", "file:///Aa");
+        final RingtoneEntries second = new RingtoneEntries();
+        second.add("BB", "file:///BB");
+
+        assertFalse(first.isSameRow(0, second, 0));
+
+        final RingtoneEntries merged = RingtoneEntries.merge(new RingtoneEntries[]{first, second});
+        merged.buildIndex();
+        assertEquals(2, merged.size());
+        assertEquals(0, merged.indexOf("file:///Aa"));
+        assertEquals(1, merged.indexOf("file:///BB"));
+
+        final RingtoneEntries.RowSet seenRows = new RingtoneEntries.RowSet();
+        assertSame(first, first.withoutSeen(seenRows));
+        assertSame(second, second.withoutSeen(seenRows));
+    }
+
+    @Test
+    public void isSameRow_comparesUris() {
+        final RingtoneEntries first = new RingtoneEntries();
+        first.add("One", INTERNAL + "/1");
+        first.add("Two", INTERNAL + "/2");
+        final RingtoneEntries second = new RingtoneEntries();
+        second.add("Other", EXTERNAL + "/1");
+        second.add("Renamed", INTERNAL + "/1");
+
+        assertFalse(first.isSameRow(0, second, 0));
+        assertTrue(first.isSameRow(0, second, 1));
+        assertFalse(first.isSameRow(1, second, 1));
+    }
+
+    @Test
+    public void merge_keepsFirstRowAndCombinesFlags() {
+        final RingtoneEntries ringtones = new RingtoneEntries();
+        ringtones.add("Ring", INTERNAL, 1, RingtoneEntries.FLAG_RINGTONE);
+        ringtones.add("Both", INTERNAL, 2, RingtoneEntries.FLAG_RINGTONE);
+        final RingtoneEntries alarms = new RingtoneEntries();
+        alarms.add("Both", INTERNAL, 2, RingtoneEntries.FLAG_ALARM);
+        alarms.add("Alarm", INTERNAL, 3, RingtoneEntries.FLAG_ALARM);
+        final RingtoneEntries custom = new RingtoneEntries();
+        custom.add("Custom", "file:///sdcard/custom.mp3");
+        custom.add("Ring copy", INTERNAL + "/1");
+
+        final RingtoneEntries merged = RingtoneEntries.merge(new RingtoneEntries[]{ringtones, alarms, custom});
+
+        assertEquals(4, merged.size());
+        assertEquals("Ring", merged.getTitle(0));
+        assertEquals("Both", merged.getTitle(1));
+        assertEquals("Alarm", merged.getTitle(2));
+        assertEquals("Custom", merged.getTitle(3));
+        assertEquals(RingtoneEntries.FLAG_RINGTONE, merged.getTypeFlags(0));
+        assertEquals(RingtoneEntries.FLAG_RINGTONE | RingtoneEntries.FLAG_ALARM, merged.getTypeFlags(1));
+        assertEquals(RingtoneEntries.FLAG_ALARM, merged.getTypeFlags(2));
+        assertEquals(0, merged.getTypeFlags(3));
+        assertEquals("file:///sdcard/custom.mp3", merged.getUriString(3));
+    }
+
+    @Test
+    public void withoutSeen_dropsRowsOfEarlierLists() {
+        final RingtoneEntries.RowSet seenRows = new RingtoneEntries.RowSet();
+        final RingtoneEntries ringtones = new RingtoneEntries();
+        ringtones.add("One", INTERNAL, 1, RingtoneEntries.FLAG_RINGTONE);
+        ringtones.add("Two", INTERNAL, 2, RingtoneEntries.FLAG_RINGTONE);
+        assertSame(ringtones, ringtones.withoutSeen(seenRows));
+
+        final RingtoneEntries alarms = new RingtoneEntries();
+        alarms.add("Three", INTERNAL, 3, RingtoneEntries.FLAG_ALARM);
+        alarms.add("Two", INTERNAL, 2, RingtoneEntries.FLAG_ALARM);
+        alarms.add("Four", INTERNAL, 4, RingtoneEntries.FLAG_ALARM);
+        alarms.add("Three again", INTERNAL, 3, RingtoneEntries.FLAG_ALARM);
+
+        final RingtoneEntries unique = alarms.withoutSeen(seenRows);
+        assertEquals(2, unique.size());
+        assertEquals("Three", unique.getTitle(0));
+        assertEquals("Four", unique.getTitle(1));
+        assertEquals(RingtoneEntries.FLAG_ALARM, unique.getTypeFlags(1));
+
+        //Source list is not modified.
+        assertEquals(4, alarms.size());
+    }
+
+    @Test
+    public void addAll_remapsBaseUris() {
+        final RingtoneEntries entries = new RingtoneEntries();
+        entries.add("External", EXTERNAL + "/1");
+        final RingtoneEntries other = new RingtoneEntries();
+        other.add("Internal", INTERNAL + "/2");
+        other.add("External", EXTERNAL + "/3");
+
+        entries.addAll(other);
+
+        assertEquals(3, entries.size());
+        assertEquals(2, entries.getBaseUriCount());
+        assertEquals(INTERNAL + "/2", entries.getUriString(1));
+        assertEquals(EXTERNAL + "/3", entries.getUriString(2));
+    }
+
+    @Test
+    public void indexOf_findsRowsOfManyBaseUris() {
+        final RingtoneEntries entries = new RingtoneEntries();
+        for (int i = 0; i < 100; i++) entries.add("Custom " + i, "file:///sdcard/tone" + i + ".ogg");
+        entries.add("External", EXTERNAL + "/5");
+
+        assertEquals(101, entries.getBaseUriCount());
+        assertEquals(42, entries.indexOf("file:///sdcard/tone42.ogg"));
+        assertEquals(100, entries.indexOf(EXTERNAL + "/5"));
+        assertEquals(-1, entries.indexOf("file:///sdcard/tone100.ogg"));
+
+        entries.buildIndex();
+        assertEquals(99, entries.indexOf("file:///sdcard/tone99.ogg"));
+    }
+
+    @Test
+    public void copyOfRange_copiesOnlyUsedBaseUris() {
+        final RingtoneEntries entries = new RingtoneEntries();
+        entries.add("Custom", "file:///sdcard/custom.ogg");
+        entries.add("Internal", INTERNAL + "/1");
+        entries.add("External", EXTERNAL + "/2");
+        entries.add("Internal", INTERNAL + "/3");
+
+        final RingtoneEntries copy = entries.copyOfRange(1, 3);
+
+        assertEquals(2, copy.size());
+        assertEquals(2, copy.getBaseUriCount());
+        assertEquals(INTERNAL + "/1", copy.getUriString(0));
+        assertEquals(EXTERNAL + "/2", copy.getUriString(1));
+        assertEquals(1, copy.indexOf(EXTERNAL + "/2"));
+        assertEquals(-1, copy.indexOf("file:///sdcard/custom.ogg"));
+    }
+}
@@ -0,0 +1,101 @@
+/*
+ * Copyright 2017 Keval Patel
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance wit
+ * the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for
+ *  the specific language governing permissions and limitations under the License.
+ */
+
+
+package com.kevalpatel.ringtonepicker;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+/**
+ * Tests of {@link RingtoneSearchIndex}.
+ *
+ * @author <a href="https://github.com/kevalpatel2106">kevalpatel2106</a>
+ */
+public class RingtoneSearchIndexTest {
+
+    @Test
+    public void search_returnsNullWithoutWords() {
+        final RingtoneSearchIndex index = build("Morning Alarm", "Ring ring");
+
+        assertNull(index.search(""));
+        assertNull(index.search("  - "));
+    }
+
+    @Test
+    public void search_matchesStartOfWordsForShortTerms() {
+        final RingtoneSearchIndex index = build("Morning Alarm", "Café del Mar", "Ring ring", "Marimba");
+
+        assertArrayEquals(new int[]{1, 3}, index.search("ma"));
+        assertArrayEquals(new int[]{0}, index.search("Mo"));
+        assertArrayEquals(new int[]{1}, index.search("d"));
+
+        //Middle of the word is not matched by the short terms.
+        assertArrayEquals(new int[0], index.search("ar"));
+    }
+
+    @Test
+    public void search_matchesAnywhereForLongTerms() {
+        final RingtoneSearchIndex index = build("Morning Alarm", "Café del Mar", "Ring ring", "Marimba");
+
+        assertArrayEquals(new int[]{0}, index.search("arm"));
+        assertArrayEquals(new int[]{3}, index.search("rimb"));
+        assertArrayEquals(new int[]{0, 2}, index.search("ing"));
+        assertArrayEquals(new int[0], index.search("xyz"));
+    }
+
+    @Test
+    public void search_checksWholeTermAfterTrigrams() {
+        //The title has both the trigrams of "abca", but not the term itself.
+        final RingtoneSearchIndex index = build("bcabc", "xabcay");
+
+        assertArrayEquals(new int[]{1}, index.search("abca"));
+    }
+
+    @Test
+    public void search_ignoresCaseAndAccents() {
+        final RingtoneSearchIndex index = build("Café del Mar", "Résumé", "Plain");
+
+        assertArrayEquals(new int[]{0}, index.search("cafe"));
+        assertArrayEquals(new int[]{0}, index.search("CAFÉ"));
+        assertArrayEquals(new int[]{1}, index.search("resume"));
+        assertArrayEquals(new int[]{1}, index.search("ré"));
+    }
+
+    @Test
+    public void search_intersectsAllTheWords() {
+        final RingtoneSearchIndex index = build("Morning Alarm", "Ring ring", "Morning Ring", "Alarm");
+
+        assertArrayEquals(new int[]{0, 2}, index.search("morning"));
+        assertArrayEquals(new int[]{2}, index.search("ring mor"));
+        assertArrayEquals(new int[]{0}, index.search("al mo"));
+        assertArrayEquals(new int[0], index.search("ring alarm xyz"));
+    }
+
+    @Test
+    public void normalize_removesAccents() {
+        assertEquals("creme brulee", RingtoneSearchIndex.normalize("Crème Brûlée"));
+        assertEquals("plain", RingtoneSearchIndex.normalize("PLAIN"));
+    }
+
+    private static RingtoneSearchIndex build(final String... titles) {
+        final RingtoneEntries entries = new RingtoneEntries();
+        for (int i = 0; i < titles.length; i++) {
+            entries.add(titles[i], "content://media/internal/audio/media", i);
+        }
+        return RingtoneSearchIndex.build(entries);
+    }
+}
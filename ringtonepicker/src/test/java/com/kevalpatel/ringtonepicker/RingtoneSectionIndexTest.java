@@ -0,0 +1,86 @@
+/*
+ * Copyright 2017 Keval Patel
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance wit
+ * the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for
+ *  the specific language governing permissions and limitations under the License.
+ */
+
+
+package com.kevalpatel.ringtonepicker;
+
+import org.junit.Test;
+
+import java.util.Locale;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Tests of {@link RingtoneSectionIndex}.
+ *
+ * @author <a href="https://github.com/kevalpatel2106">kevalpatel2106</a>
+ */
+public class RingtoneSectionIndexTest {
+
+    @Test
+    public void build_groupsRunsOfFirstLetters() {
+        final RingtoneSectionIndex index = build(Locale.ENGLISH,
+                "alpha", "Apple", "Éclair", "echo", "1st", "\"Quoted", "zulu");
+
+        assertSections(index, new String[]{"A", "E", "#", "Q", "Z"}, new int[]{0, 2, 4, 5, 6});
+        assertEquals(7, index.getRowCount());
+    }
+
+    @Test
+    public void build_keepsLettersOfTheLocale() {
+        final RingtoneSectionIndex english = build(Locale.ENGLISH, "Alarm", "Ångström");
+        final RingtoneSectionIndex swedish = build(new Locale("sv"), "Alarm", "Ångström");
+
+        assertSections(english, new String[]{"A"}, new int[]{0});
+        assertSections(swedish, new String[]{"A", "Å"}, new int[]{0, 1});
+    }
+
+    @Test
+    public void addAll_offsetsSectionsOfAppendedRows() {
+        final RingtoneSectionIndex index = build(Locale.ENGLISH, "Alarm", "Bell");
+        index.addAll(build(Locale.ENGLISH, "Beep", "Chime"), 2);
+
+        //Appended "Beep" continues the last section.
+        assertSections(index, new String[]{"A", "B", "C"}, new int[]{0, 1, 3});
+        assertEquals(4, index.getRowCount());
+    }
+
+    @Test
+    public void getSectionForPosition_findsSectionOfEveryRow() {
+        final RingtoneSectionIndex index = build(Locale.ENGLISH, "Alarm", "Bell", "Beep", "Chime");
+
+        assertEquals(0, index.getSectionForPosition(0));
+        assertEquals(1, index.getSectionForPosition(1));
+        assertEquals(1, index.getSectionForPosition(2));
+        assertEquals(2, index.getSectionForPosition(3));
+        assertEquals(-1, new RingtoneSectionIndex().getSectionForPosition(0));
+    }
+
+    private static RingtoneSectionIndex build(final Locale locale, final String... titles) {
+        final RingtoneEntries entries = new RingtoneEntries();
+        for (int i = 0; i < titles.length; i++) {
+            entries.add(titles[i], "content://media/internal/audio/media", i);
+        }
+        return RingtoneSectionIndex.build(entries, locale);
+    }
+
+    private static void assertSections(final RingtoneSectionIndex index,
+                                       final String[] labels,
+                                       final int[] positions) {
+        assertEquals(labels.length, index.getSectionCount());
+        for (int i = 0; i < labels.length; i++) {
+            assertEquals(labels[i], index.getLabel(i));
+            assertEquals(positions[i], index.getPosition(i));
+        }
+    }
+}
@@ -0,0 +1,130 @@
+/*
+ * Copyright 2017 Keval Patel
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance wit
+ * the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for
+ *  the specific language governing permissions and limitations under the License.
+ */
+
+
+package com.kevalpatel.ringtonepicker;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests of the {@link RingtoneSnapshot} files.
+ *
+ * @author <a href="https://github.com/kevalpatel2106">kevalpatel2106</a>
+ */
+public class RingtoneSnapshotTest {
+
+    private static final int TYPE_MUSIC = RingtonePickerDialog.Builder.TYPE_MUSIC;
+
+    @Rule
+    public TemporaryFolder mFolder = new TemporaryFolder();
+
+    private RingtoneSnapshot mSnapshot;
+
+    @Before
+    public void setUp() {
+        //Directory is created on the first write.
+        mSnapshot = new RingtoneSnapshot(new File(mFolder.getRoot(), "snapshots"));
+    }
+
+    @Test
+    public void read_returnsWrittenRows() {
+        final RingtoneEntries entries = new RingtoneEntries();
+        entries.add("Alpha", "content://media/external/audio/media", 1, RingtoneEntries.FLAG_MUSIC);
+        entries.add("Caf\u00e9 \u2615", "content://media/external/audio/media", 1L << 35, RingtoneEntries.FLAG_MUSIC);
+        entries.add("\uD83C\uDFB5 Note", "content://media/external_primary/audio/media", 7, RingtoneEntries.FLAG_MUSIC);
+        entries.add("", "content://media/external/audio/media", 3, RingtoneEntries.FLAG_MUSIC);
+        entries.add("File", "file:///sdcard/Music/song.mp3");
+
+        mSnapshot.write(TYPE_MUSIC, entries, "stamp");
+        final RingtoneEntries read = mSnapshot.read(TYPE_MUSIC, "stamp");
+
+        assertNotNull(read);
+        assertEquals(entries.size(), read.size());
+        for (int i = 0; i < entries.size(); i++) {
+            assertEquals(entries.getTitle(i), read.getTitle(i));
+            assertEquals(entries.getId(i), read.getId(i));
+            assertEquals(entries.getUriString(i), read.getUriString(i));
+            assertTrue(entries.isSameRow(i, read, i));
+
+            //Every row of the snapshot belongs to its type.
+            assertEquals(RingtoneEntries.FLAG_MUSIC, read.getTypeFlags(i));
+        }
+
+        read.buildIndex();
+        assertEquals(2, read.indexOf("content://media/external_primary/audio/media/7"));
+    }
+
+    @Test
+    public void read_returnsEmptyList() {
+        mSnapshot.write(TYPE_MUSIC, new RingtoneEntries(), "stamp");
+        final RingtoneEntries read = mSnapshot.read(TYPE_MUSIC, "stamp");
+
+        assertNotNull(read);
+        assertEquals(0, read.size());
+    }
+
+    @Test
+    public void read_ignoresSnapshotOfOtherStamp() {
+        final RingtoneEntries entries = new RingtoneEntries();
+        entries.add("Alpha", "content://media/external/audio/media", 1, RingtoneEntries.FLAG_MUSIC);
+        mSnapshot.write(TYPE_MUSIC, entries, "old stamp");
+
+        assertNull(mSnapshot.read(TYPE_MUSIC, "new stamp"));
+        assertNull(mSnapshot.read(RingtonePickerDialog.Builder.TYPE_ALARM, "old stamp"));
+    }
+
+    @Test
+    public void delete_removesSnapshotOfType() {
+        final RingtoneEntries entries = new RingtoneEntries();
+        entries.add("Alpha", "content://media/external/audio/media", 1, RingtoneEntries.FLAG_MUSIC);
+        mSnapshot.write(TYPE_MUSIC, entries, "stamp");
+        mSnapshot.write(RingtonePickerDialog.Builder.TYPE_ALARM, entries, "stamp");
+
+        mSnapshot.delete(TYPE_MUSIC);
+
+        assertNull(mSnapshot.read(TYPE_MUSIC, "stamp"));
+        assertNotNull(mSnapshot.read(RingtonePickerDialog.Builder.TYPE_ALARM, "stamp"));
+
+        //Nothing to delete.
+        mSnapshot.delete(TYPE_MUSIC);
+    }
+
+    @Test
+    public void write_replacesEarlierSnapshot() {
+        final RingtoneEntries first = new RingtoneEntries();
+        first.add("Alpha", "content://media/external/audio/media", 1, RingtoneEntries.FLAG_MUSIC);
+        final RingtoneEntries second = new RingtoneEntries();
+        second.add("Bravo", "content://media/external/audio/media", 2, RingtoneEntries.FLAG_MUSIC);
+
+        mSnapshot.write(TYPE_MUSIC, first, "first");
+        mSnapshot.write(TYPE_MUSIC, second, "second");
+
+        assertNull(mSnapshot.read(TYPE_MUSIC, "first"));
+        final RingtoneEntries read = mSnapshot.read(TYPE_MUSIC, "second");
+        assertNotNull(read);
+        assertEquals("Bravo", read.getTitle(0));
+
+        //Only the snapshot file is left behind.
+        assertEquals(1, new File(mFolder.getRoot(), "snapshots").list().length);
+    }
+}